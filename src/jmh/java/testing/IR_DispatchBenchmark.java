@@ -0,0 +1,52 @@
+package testing;
+
+import dtool.DtoolRuntime;
+import dtool.io.ProjectFolder;
+import language.backend.compiler.CompileType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// runs a bench program through the dispatch loop, compiled once per fork
+// the fork logs its compilations, VirtualMachine::run should show up there at level 4 (C2)
+// usage: gradlew jmh, the log lands in build/jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {
+        "-XX:+UnlockDiagnosticVMOptions",
+        "-XX:+LogCompilation",
+        "-XX:LogFile=build/jmh/compilation-%p.log"
+})
+public class IR_DispatchBenchmark {
+
+    @Param({"calls", "typed", "switches"})
+    public String main;
+
+    private DtoolRuntime runtime;
+
+    @Setup(Level.Trial)
+    public void compile() {
+        runtime = DtoolRuntime
+                .create(ProjectFolder.of("test_space_bench"));
+
+        runtime.init();
+        runtime.setMain(main);
+        // frontend
+        runtime.processLexer();
+        runtime.processParser();
+        // backend
+        runtime.processPreCompiler();
+        runtime.processCompiler(CompileType.CUSTOM_IR);
+        // finish
+        runtime.processFinalize();
+    }
+
+    @Benchmark
+    public void run() {
+        runtime.runTest(new String[]{"benchmark"});
+    }
+
+}
@@ -1,6 +1,7 @@
 package dtool;
 
 import dtool.config.DtoolConfig;
+import dtool.config.syntax.tree.ProjectProperties;
 import dtool.io.ProjectFolder;
 import dtool.io.tree.FileTree;
 import dtool.io.walker.FileWalker;
@@ -15,8 +16,11 @@ import dtool.utils.DynamicOptional;
 import language.backend.compiler.AbstractCompiler;
 import language.backend.compiler.CompileType;
 import language.backend.compiler.bytecode.ChunkBuilder;
+import language.backend.compiler.bytecode.ChunkOptimizer;
 import language.backend.compiler.bytecode.ir.Compressor;
 import language.backend.compiler.bytecode.values.bytecode.ByteCode;
+import language.backend.compiler.register.RegisterCompiler;
+import language.backend.compiler.register.RegisterProgram;
 import language.backend.precompiler.MacroPreProcessor;
 import language.backend.precompiler.PreProcessor;
 import language.backend.precompiler.TestPreProcessor;
@@ -27,6 +31,8 @@ import language.frontend.parser.nodes.Node;
 import language.frontend.parser.nodes.expressions.BodyNode;
 import language.frontend.parser.results.ParseResult;
 import language.frontend.parser.units.Linker;
+import language.vm.OpcodeHistogram;
+import language.vm.RegisterMachine;
 import language.vm.VirtualMachine;
 import language.vm.VirtualMachineResult;
 
@@ -61,6 +67,8 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
     };
 
     private Path sourcePath;
+    // set by REGISTER_IR, the register program is only kept in memory and runTest runs it instead of out.dem
+    private RegisterProgram registerProgram;
 
     public DefaultDtoolRuntime(final ProjectFolder projectFolder) {
         this.projectFolder = projectFolder;
@@ -233,6 +241,9 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
                 }
             }
             case CUSTOM_IR -> {
+                ProjectProperties properties = config.getConfigTree().getProjectProperties();
+                ChunkOptimizer.level = Integer.parseInt(properties.getOrDefault("optimize", String.valueOf(ChunkOptimizer.FULL)));
+                ChunkOptimizer.resetStatistics();
 
                 for (SourceFile source : sources) {
 
@@ -243,6 +254,9 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
                     source.getDumpedByteCode().setValue(compiled);
                 }
 
+                if (properties.getOrDefault("optimizeStats", "false").equals("true"))
+                    LOGGER.warn(ChunkOptimizer.statistics());
+
                 String mainClass = config.getConfigTree().getProjectProperties()
                         .getOrDefault("main", "?");
 
@@ -285,6 +299,40 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
                 }
             }
 
+            case REGISTER_IR -> {
+                String mainClass = config.getConfigTree().getProjectProperties()
+                        .getOrDefault("main", "?");
+
+                SourceFile mainEntry = null;
+                for (SourceFile source : sources) {
+                    if (source.getFileName().equalsIgnoreCase(mainClass)) {
+                        mainEntry = source;
+                        break;
+                    }
+                }
+
+                if (mainEntry == null)
+                    throw new RuntimeException("Unable to find main class by name: " + mainClass);
+
+                // the register compiler does no type checking of its own, the bytecode compiler checks the
+                // main file first and fails the build on a type error just as it does for CUSTOM_IR
+                CompileType.CUSTOM_IR.constructCompiler()
+                        .compile(mainEntry.getSource(), mainEntry.getAst().getValue());
+
+                RegisterCompiler compiler = (RegisterCompiler) compileType.constructCompiler();
+                byte[] listing = compiler.compile(mainEntry.getSource(), mainEntry.getAst().getValue());
+                registerProgram = compiler.getProgram();
+
+                // the listing is for reading only, nothing loads it back
+                final File outFile = new File(Path.of(this.projectFolder.projectRoot(),
+                        DEFAULT_BUILD_FOLDER).toFile(), "out.reg");
+                try {
+                    Files.write(outFile.toPath(), listing);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
         }
     }
 
@@ -317,8 +365,18 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
 
     }
 
+    @Override
+    public void setMain(final String main) {
+        config.getConfigTree().getProjectProperties().put("main", main);
+    }
+
     @Override
     public void runTest(final String[] args) {
+        if (registerProgram != null) {
+            new RegisterMachine(registerProgram).trace("out.reg").run();
+            return;
+        }
+
         final Path buildPath = Path.of(this.projectFolder.projectRoot().toString(),
                 DEFAULT_BUILD_FOLDER);
 
@@ -334,12 +392,29 @@ public class DefaultDtoolRuntime extends DtoolRuntime {
         byte[] finalArr = arr;
         ByteCode func = ChunkBuilder.build(finalArr);
 
+        VirtualMachine.lazyImports = config.getConfigTree().getProjectProperties()
+                .getOrDefault("imports", "eager").equals("lazy");
+        VirtualMachine.quicken = !config.getConfigTree().getProjectProperties()
+                .getOrDefault("quicken", "true").equals("false");
+
+        // project.histogram = "file" records the opcode sequences the run dispatches into that file
+        String histogram = config.getConfigTree().getProjectProperties().get("histogram");
+        VirtualMachine.histogram = histogram != null ? new OpcodeHistogram() : null;
 
         final VirtualMachine virtualMachine = new VirtualMachine(func).trace(outFile.toString());
 
         VirtualMachineResult res = virtualMachine.run();
-        if (res == VirtualMachineResult.ERROR) return;
-        virtualMachine.finish(args);
+        if (res != VirtualMachineResult.ERROR)
+            virtualMachine.finish(args);
+
+        if (histogram != null) {
+            try {
+                VirtualMachine.histogram.dump(Path.of(this.projectFolder.projectRoot().toString(), histogram));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            VirtualMachine.histogram = null;
+        }
 
     }
 
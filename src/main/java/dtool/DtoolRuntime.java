@@ -31,6 +31,8 @@ public abstract class DtoolRuntime {
 
     public abstract void processFinalize();
 
+    public abstract void setMain(final String main);
+
     abstract DtoolConfig getConfig();
 
     public abstract void runTest(String[] args);
@@ -110,7 +110,7 @@ public class ImplLogger implements Logger {
     @Override
     public String toString(Object text, boolean stringInner) {
         if (text instanceof Value val) {
-            if (val.isList) {
+            if (val.isList()) {
                 StringBuilder sb = new StringBuilder();
                 List<Value> l = val.asList();
 
@@ -120,7 +120,7 @@ public class ImplLogger implements Logger {
                     } else sb.append(toString(l.get(i), true)).append(", ");
 
                 return "[ " + sb + "len=" + l.size() + " ]";
-            } else if (val.isMap) {
+            } else if (val.isMap()) {
                 StringBuilder sb = new StringBuilder();
                 Map<Value, Value> d = val.asMap();
 
@@ -132,9 +132,9 @@ public class ImplLogger implements Logger {
                             .append(toString(d.get(keys[i]), true)).append(", ");
 
                 return "{ " + sb + "len=" + keys.length + " }";
-            } else if (val.isNull) {
+            } else if (val.isNull()) {
                 return "null";
-            } else if (val.isString && stringInner) {
+            } else if (val.isString() && stringInner) {
                 return "\"" + val.asString() + "\"";
             }
             return val.asString();
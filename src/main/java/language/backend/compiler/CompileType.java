@@ -3,6 +3,7 @@ package language.backend.compiler;
 import language.backend.compiler.asm.ASM64x86Compiler;
 import language.backend.compiler.bytecode.ByteCodeCompiler;
 import language.backend.compiler.llvm.LLVMCompiler;
+import language.backend.compiler.register.RegisterCompiler;
 
 public enum CompileType {
 
@@ -13,7 +14,8 @@ public enum CompileType {
     LLVM(LLVMCompiler.class, true),
 
     // ir
-    CUSTOM_IR(ByteCodeCompiler.class, false);
+    CUSTOM_IR(ByteCodeCompiler.class, false),
+    REGISTER_IR(RegisterCompiler.class, false);
 
     private final Class<? extends AbstractCompiler> compiler;
     private final boolean asm;
@@ -74,5 +74,49 @@ public interface ByteCodeOpCode {
     int Header =                0x47;
     int Destruct =              0x48;
     int PatternVars =           0x49;
+    int SetGlobalSlot =         0x4A;
+    int DefineGlobalSlot =      0x4B;
+    int GetGlobalSlot =         0x4C;
+    int MakeIter =              0x4D;
+    int Convert =               0x4E;
+    int NumAdd =                0x4F;
+    int NumSubtract =           0x50;
+    int NumMultiply =           0x51;
+    int NumLessThan =           0x52;
+    int NumGreaterThan =        0x53;
+    int NumJumpIfNotLess =      0x54;
+    int StrConcat =             0x55;
+    int TableSwitch =           0x56;
+
+    // superinstructions, only ChunkOptimizer emits these
+    int SetLocalPop =           0x57;
+    int ReturnConstant =        0x58;
+    int AddLocalConstant =      0x59;
+    int LocalsLessJump =        0x5A;
+
+    // quickened forms, only the VM writes these and only into codeArray
+    int QuickGetGlobal =        0x5B;
+    int QuickCallClosure =      0x5C;
+    int QuickCallNative =       0x5D;
+    int QuickIntAdd =           0x5E;
+    int QuickIntSubtract =      0x5F;
+    int QuickIntLessThan =      0x60;
+    int QuickIntGreaterThan =   0x61;
+
+    // locals no closure captures, the slot holds the value itself instead of a Var
+    // each has the layout of its Var form so the compiler can box a local in place once it is captured
+    int GetSlot =               0x62;
+    int SetSlot =               0x63;
+    int DefineSlot =            0x64;
+    int KeepSlot =              0x65;
+    int ForSlot =               0x66;
+    int SetSlotPop =            0x67;
+    int AddSlotConstant =       0x68;
+    int SlotsLessJump =         0x69;
+
+    // typed + - * with an l64 or i64 operand, two integers wrap around at 64 bits like a java long
+    int LongAdd =               0x6A;
+    int LongSubtract =          0x6B;
+    int LongMultiply =          0x6C;
 
 }                                                   
@@ -3,8 +3,12 @@ package language.backend.compiler.bytecode;
 import language.backend.compiler.bytecode.types.Type;
 import language.backend.compiler.bytecode.values.Value;
 import language.backend.compiler.bytecode.values.ValueArray;
+import language.vm.GlobalTable;
+import language.vm.InlineCache;
+import language.vm.SwitchTable;
 
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 public class Chunk {
     List<Integer> code;
@@ -14,12 +18,22 @@ public class Chunk {
     ValueArray constants;
     final String source;
     public Map<String, Type> globals;
+    public List<String> globalNames;
+    public int[] globalSlots;
+    private InlineCache[] inlineCaches;
+    private SwitchTable[] switchTables;
+
+    // a site that misses this often keeps its generic opcode for good
+    public static final int MAX_QUICK_MISSES = 4;
+    private Object[] quickOperands;
+    private byte[] quickMisses;
 
     public Chunk(String source) {
         this.code = new ArrayList<>();
         this.constants = new ValueArray();
         this.source = source;
         this.globals = new HashMap<>();
+        this.globalNames = new ArrayList<>();
     }
 
     public void write(int b) {
@@ -32,6 +46,68 @@ public class Chunk {
             codeArray[index] = code.get(index);
         }
         constants.compile();
+        link();
+    }
+
+    public int globalSlot(String name) {
+        int index = globalNames.indexOf(name);
+        if (index == -1) {
+            globalNames.add(name);
+            index = globalNames.size() - 1;
+        }
+        return index;
+    }
+
+    public InlineCache inlineCache(int site) {
+        if (inlineCaches == null)
+            inlineCaches = new InlineCache[codeArray.length];
+        InlineCache cache = inlineCaches[site];
+        if (cache == null)
+            cache = inlineCaches[site] = new InlineCache();
+        return cache;
+    }
+
+    public SwitchTable switchTable(int site, UnaryOperator<Value> resolve) {
+        if (switchTables == null)
+            switchTables = new SwitchTable[codeArray.length];
+        SwitchTable table = switchTables[site];
+        if (table == null)
+            table = switchTables[site] = SwitchTable.of(codeArray, constants.valuesArray, site, resolve);
+        return table;
+    }
+
+    // quickening rewrites codeArray in place, a ByteCode copy shares that array but not these operands
+    // every quick opcode checks its operand before trusting it, so a VM that sees the opcode without
+    // the operand it was quickened with only takes a miss and puts the generic opcode back
+    public Object quickOperand(int site) {
+        Object[] operands = quickOperands;
+        return operands != null ? operands[site] : null;
+    }
+
+    public void quicken(int site, int op, Object operand) {
+        if (quickMisses != null && quickMisses[site] >= MAX_QUICK_MISSES)
+            return;
+        if (operand != null) {
+            if (quickOperands == null)
+                quickOperands = new Object[codeArray.length];
+            quickOperands[site] = operand;
+        }
+        codeArray[site] = op;
+    }
+
+    public void dequicken(int site, int op) {
+        if (quickMisses == null)
+            quickMisses = new byte[codeArray.length];
+        if (quickMisses[site] < MAX_QUICK_MISSES)
+            quickMisses[site]++;
+        codeArray[site] = op;
+    }
+
+    public void link() {
+        globalSlots = new int[globalNames.size()];
+        for (int index = 0; index < globalSlots.length; index++) {
+            globalSlots[index] = GlobalTable.slot(globalNames.get(index));
+        }
     }
 
     public int addConstant(Value value) {
@@ -71,6 +147,9 @@ public class Chunk {
             Value.addAllString(list, entry.getKey());
             list.addAll(entry.getValue().dumpList());
         }
+        list.add(globalNames.size());
+        for (String name : globalNames)
+            Value.addAllString(list, name);
         list.add(codeArray.length);
         for (int index : codeArray)
             list.add(index);
@@ -266,6 +266,18 @@ public class ChunkBuilder {
         return bb.getDouble(0);
     }
 
+    private long readLong() throws IOException {
+        if (code[position] != ChunkCode.Integer)
+            throw new IOException("not integer");
+        position++;
+        int a = code[position++];
+        int b = code[position++];
+        ByteBuffer bb = ByteBuffer.allocate(8);
+        bb.putInt(a);
+        bb.putInt(b);
+        return bb.getLong(0);
+    }
+
     private LanguageEnum readEnum() throws IOException {
         if (code[position] != ChunkCode.Enum)
             throw new IOException("not enum");
@@ -336,6 +348,8 @@ public class ChunkBuilder {
                 return new Value(readBoolean());
             case ChunkCode.Number:
                 return new Value(readDouble());
+            case ChunkCode.Integer:
+                return Value.integer(readLong());
             case ChunkCode.String:
                 return new Value(readString());
             case ChunkCode.Enum:
@@ -377,6 +391,12 @@ public class ChunkBuilder {
 
         Map<String, Type> globals = reader.readAttributes();
 
+        int globalCount = code[position++];
+        List<String> globalNames = new ArrayList<>();
+        for (int j = 0; j < globalCount; j++) {
+            globalNames.add(readString());
+        }
+
         int bytecodeCount = code[position++];
         int[] bytecodes = new int[bytecodeCount];
         for (int j = 0; j < bytecodeCount; j++) {
@@ -394,6 +414,8 @@ public class ChunkBuilder {
         chunk.code = code;
         chunk.constants = values;
         chunk.globals = globals;
+        chunk.globalNames = globalNames;
+        chunk.link();
         return chunk;
     }
 
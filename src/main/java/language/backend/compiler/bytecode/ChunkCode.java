@@ -9,4 +9,5 @@ public class ChunkCode {
     public static final int Func = 5;
     public static final int Type = 6;
     public static final int Chunk = 7;
+    public static final int Integer = 8;
 }
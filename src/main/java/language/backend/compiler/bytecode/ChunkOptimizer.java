@@ -0,0 +1,536 @@
+package language.backend.compiler.bytecode;
+
+import language.backend.compiler.bytecode.values.Value;
+import language.backend.compiler.bytecode.values.ValueArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// rewrites a finished chunk before Chunk.compile turns it into the code array
+//   level 0  leaves the chunk as the compiler emitted it
+//   level 1  folds instruction pairs and threads jumps through other jumps
+//   level 2  also drops unreachable code and constants nothing reads any more
+// at level 1 and up the hottest straight-line sequences are then fused into superinstructions
+// a chunk the decoder does not fully understand is left untouched
+public class ChunkOptimizer {
+    public static final int NONE = 0;
+    public static final int PEEPHOLE = 1;
+    public static final int FULL = 2;
+
+    public static int level = FULL;
+
+    // totals over every chunk optimized since the last reset
+    public static int chunks;
+    public static int instructionsBefore;
+    public static int instructionsAfter;
+    public static int constantsRemoved;
+    public static int superinstructions;
+
+    private static final int[] NO_SLOTS = new int[0];
+    private static final int[] FIRST_SLOT = new int[] { 0 };
+
+    private static class Instruction {
+        int op;
+        int[] operands;
+        Instruction[] targets;
+        int index;
+        int offset;
+        boolean dead;
+        boolean target;
+        boolean reached;
+
+        Instruction(int op, int[] operands) {
+            this.op = op;
+            this.operands = operands;
+        }
+    }
+
+    private final Chunk chunk;
+    private List<Instruction> instructions;
+
+    private ChunkOptimizer(Chunk chunk) {
+        this.chunk = chunk;
+    }
+
+    public static void resetStatistics() {
+        chunks = 0;
+        instructionsBefore = 0;
+        instructionsAfter = 0;
+        constantsRemoved = 0;
+        superinstructions = 0;
+    }
+
+    public static String statistics() {
+        int removed = instructionsBefore - instructionsAfter;
+        return String.format("optimizer (level %d): %d chunks, %d of %d instructions removed, %d constants removed, %d superinstructions",
+                level, chunks, removed, instructionsBefore, constantsRemoved, superinstructions);
+    }
+
+    public static void optimize(Chunk chunk) {
+        if (level <= NONE)
+            return;
+        new ChunkOptimizer(chunk).run();
+    }
+
+    private void run() {
+        instructions = decode();
+        if (instructions == null)
+            return;
+        int before = instructions.size();
+
+        boolean changed = true;
+        for (int pass = 0; changed && pass < 8; pass++) {
+            markTargets();
+            changed = peephole();
+            changed |= thread();
+            if (level >= FULL)
+                changed |= unreachable();
+            changed |= dropEmptyJumps();
+        }
+        int after = live().size();
+
+        markTargets();
+        fuse();
+        encode();
+        if (level >= FULL)
+            compactConstants();
+
+        chunks++;
+        instructionsBefore += before;
+        instructionsAfter += after;
+    }
+
+    // operand count of the instruction at offset, -1 for anything the VM would not read the same way
+    private int operandCount(List<Integer> code, int offset) {
+        int op = code.get(offset);
+        return switch (op) {
+            case ByteCodeOpCode.Return, ByteCodeOpCode.Negate, ByteCodeOpCode.Increment, ByteCodeOpCode.Decrement,
+                 ByteCodeOpCode.Add, ByteCodeOpCode.Subtract, ByteCodeOpCode.Multiply, ByteCodeOpCode.Divide,
+                 ByteCodeOpCode.Modulo, ByteCodeOpCode.Power, ByteCodeOpCode.EQUAL, ByteCodeOpCode.LessThan,
+                 ByteCodeOpCode.GreaterThan, ByteCodeOpCode.Not, ByteCodeOpCode.Pop, ByteCodeOpCode.StartCache,
+                 ByteCodeOpCode.CollectLoop, ByteCodeOpCode.FlushLoop, ByteCodeOpCode.Null, ByteCodeOpCode.Assert,
+                 ByteCodeOpCode.Throw, ByteCodeOpCode.BitAnd, ByteCodeOpCode.BitOr, ByteCodeOpCode.BitXor,
+                 ByteCodeOpCode.BitCompl, ByteCodeOpCode.LeftShift, ByteCodeOpCode.RightShift,
+                 ByteCodeOpCode.SignRightShift, ByteCodeOpCode.Copy, ByteCodeOpCode.Spread, ByteCodeOpCode.Ref,
+                 ByteCodeOpCode.Deref, ByteCodeOpCode.SetRef, ByteCodeOpCode.ToBytes, ByteCodeOpCode.FromBytes,
+                 ByteCodeOpCode.Chain, ByteCodeOpCode.MakeIter, ByteCodeOpCode.Get, ByteCodeOpCode.Index,
+                 ByteCodeOpCode.NumAdd, ByteCodeOpCode.NumSubtract, ByteCodeOpCode.NumMultiply,
+                 ByteCodeOpCode.NumLessThan, ByteCodeOpCode.NumGreaterThan, ByteCodeOpCode.StrConcat,
+                 ByteCodeOpCode.LongAdd, ByteCodeOpCode.LongSubtract, ByteCodeOpCode.LongMultiply -> 0;
+            case ByteCodeOpCode.Constant, ByteCodeOpCode.SetGlobal, ByteCodeOpCode.GetGlobal, ByteCodeOpCode.GetLocal,
+                 ByteCodeOpCode.SetLocal, ByteCodeOpCode.Jump, ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue,
+                 ByteCodeOpCode.Loop, ByteCodeOpCode.NumJumpIfNotLess, ByteCodeOpCode.PatternVars,
+                 ByteCodeOpCode.GetUpvalue, ByteCodeOpCode.SetUpvalue, ByteCodeOpCode.MakeArray,
+                 ByteCodeOpCode.MakeMap, ByteCodeOpCode.Access, ByteCodeOpCode.SetAttr, ByteCodeOpCode.GetAttr,
+                 ByteCodeOpCode.DropGlobal, ByteCodeOpCode.DropLocal, ByteCodeOpCode.DropUpvalue,
+                 ByteCodeOpCode.SetGlobalSlot, ByteCodeOpCode.GetGlobalSlot, ByteCodeOpCode.Convert,
+                 ByteCodeOpCode.SetLocalPop, ByteCodeOpCode.ReturnConstant, ByteCodeOpCode.GetSlot,
+                 ByteCodeOpCode.SetSlot, ByteCodeOpCode.SetSlotPop -> 1;
+            case ByteCodeOpCode.For, ByteCodeOpCode.Enum, ByteCodeOpCode.Import, ByteCodeOpCode.MakeVar,
+                 ByteCodeOpCode.AddLocalConstant, ByteCodeOpCode.DefineSlot, ByteCodeOpCode.KeepSlot,
+                 ByteCodeOpCode.ForSlot, ByteCodeOpCode.AddSlotConstant -> 2;
+            case ByteCodeOpCode.Iter, ByteCodeOpCode.LocalsLessJump, ByteCodeOpCode.SlotsLessJump -> 3;
+            case ByteCodeOpCode.Method -> 4;
+            case ByteCodeOpCode.DefineLocal -> code.get(offset + 2) == 1 ? 4 : 2;
+            case ByteCodeOpCode.DefineGlobal, ByteCodeOpCode.DefineGlobalSlot -> code.get(offset + 3) == 1 ? 5 : 3;
+            case ByteCodeOpCode.Pattern -> 1 + code.get(offset + 1);
+            case ByteCodeOpCode.Destruct -> code.get(offset + 1) == -1 ? 1 : 1 + code.get(offset + 1);
+            case ByteCodeOpCode.Header -> 2 + code.get(offset + 2);
+            case ByteCodeOpCode.Call -> 2 + code.get(offset + 2);
+            case ByteCodeOpCode.TableSwitch -> 2 + code.get(offset + 1) * 2;
+            case ByteCodeOpCode.Closure -> {
+                Value func = chunk.constants.values.get(code.get(offset + 1));
+                yield func.isFunc() ? 2 + func.asFunc().upvalueCount * 2 : -1;
+            }
+            case ByteCodeOpCode.Class -> {
+                int attributes = code.get(offset + 3);
+                yield 4 + attributes * 3 + code.get(offset + 4 + attributes * 3);
+            }
+            default -> -1;
+        };
+    }
+
+    // operands holding a jump distance, counted from the end of the instruction
+    private static int[] jumpSlots(Instruction instruction) {
+        return switch (instruction.op) {
+            case ByteCodeOpCode.Jump, ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue,
+                 ByteCodeOpCode.NumJumpIfNotLess, ByteCodeOpCode.Loop -> FIRST_SLOT;
+            case ByteCodeOpCode.For, ByteCodeOpCode.ForSlot -> new int[] { 1 };
+            case ByteCodeOpCode.Iter, ByteCodeOpCode.LocalsLessJump, ByteCodeOpCode.SlotsLessJump -> new int[] { 2 };
+            case ByteCodeOpCode.TableSwitch -> {
+                int count = instruction.operands[0];
+                int[] slots = new int[count + 1];
+                for (int i = 0; i < count; i++)
+                    slots[i] = 2 + i * 2;
+                slots[count] = 1 + count * 2;
+                yield slots;
+            }
+            default -> NO_SLOTS;
+        };
+    }
+
+    // operands holding an index into the constant pool
+    private static int[] constantSlots(Instruction instruction) {
+        int[] operands = instruction.operands;
+        List<Integer> slots = new ArrayList<>();
+        switch (instruction.op) {
+            case ByteCodeOpCode.Constant, ByteCodeOpCode.SetGlobal, ByteCodeOpCode.GetGlobal,
+                 ByteCodeOpCode.PatternVars, ByteCodeOpCode.Access, ByteCodeOpCode.SetAttr, ByteCodeOpCode.GetAttr,
+                 ByteCodeOpCode.DropGlobal, ByteCodeOpCode.DefineGlobal, ByteCodeOpCode.Enum,
+                 ByteCodeOpCode.Method, ByteCodeOpCode.ReturnConstant -> slots.add(0);
+            case ByteCodeOpCode.AddLocalConstant, ByteCodeOpCode.AddSlotConstant -> slots.add(1);
+            case ByteCodeOpCode.Import -> {
+                slots.add(0);
+                slots.add(1);
+            }
+            case ByteCodeOpCode.Closure -> {
+                slots.add(0);
+                // a global upvalue names its variable through a constant
+                for (int i = 2; i < operands.length; i += 2)
+                    if (operands[i] == 2)
+                        slots.add(i + 1);
+            }
+            case ByteCodeOpCode.Class -> {
+                slots.add(0);
+                int attributes = operands[2];
+                for (int i = 0; i < attributes; i++)
+                    slots.add(3 + i * 3);
+                for (int i = 4 + attributes * 3; i < operands.length; i++)
+                    slots.add(i);
+            }
+            case ByteCodeOpCode.Pattern, ByteCodeOpCode.Destruct -> {
+                for (int i = 1; i < operands.length; i++)
+                    slots.add(i);
+            }
+            case ByteCodeOpCode.Header, ByteCodeOpCode.Call -> {
+                for (int i = 2; i < operands.length; i++)
+                    slots.add(i);
+            }
+            case ByteCodeOpCode.TableSwitch -> {
+                for (int i = 0; i < operands[0]; i++)
+                    slots.add(1 + i * 2);
+            }
+        }
+        return slots.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private List<Instruction> decode() {
+        try {
+            return decode(chunk.code);
+        } catch (IndexOutOfBoundsException e) {
+            // an operand count that runs past the end, the chunk is not in a shape we can rewrite
+            return null;
+        }
+    }
+
+    private List<Instruction> decode(List<Integer> code) {
+        List<Instruction> decoded = new ArrayList<>();
+        Instruction[] at = new Instruction[code.size() + 1];
+
+        int offset = 0;
+        while (offset < code.size()) {
+            int count = operandCount(code, offset);
+            if (count < 0 || offset + 1 + count > code.size())
+                return null;
+            int[] operands = new int[count];
+            for (int i = 0; i < count; i++)
+                operands[i] = code.get(offset + 1 + i);
+            Instruction instruction = new Instruction(code.get(offset), operands);
+            instruction.index = decoded.size();
+            instruction.offset = offset;
+            at[offset] = instruction;
+            decoded.add(instruction);
+            offset += 1 + count;
+        }
+        // every jump then lands on an instruction that stays, the closing Return at worst
+        if (decoded.isEmpty() || decoded.get(decoded.size() - 1).op != ByteCodeOpCode.Return)
+            return null;
+
+        for (Instruction instruction : decoded) {
+            int[] slots = jumpSlots(instruction);
+            instruction.targets = new Instruction[slots.length];
+            int end = instruction.offset + 1 + instruction.operands.length;
+            for (int i = 0; i < slots.length; i++) {
+                int distance = instruction.operands[slots[i]];
+                int target = instruction.op == ByteCodeOpCode.Loop ? end - distance : end + distance;
+                // a jump to the very end of the chunk or between instructions is not ours to move
+                if (target < 0 || target >= code.size() || at[target] == null)
+                    return null;
+                instruction.targets[i] = at[target];
+            }
+        }
+        return decoded;
+    }
+
+    private List<Instruction> live() {
+        List<Instruction> live = new ArrayList<>(instructions.size());
+        for (Instruction instruction : instructions)
+            if (!instruction.dead)
+                live.add(instruction);
+        return live;
+    }
+
+    private void markTargets() {
+        for (Instruction instruction : instructions)
+            instruction.target = false;
+        for (Instruction instruction : instructions)
+            if (!instruction.dead)
+                for (Instruction target : instruction.targets)
+                    resolve(target).target = true;
+    }
+
+    // first live instruction at or after this one
+    private Instruction resolve(Instruction instruction) {
+        int index = instruction.index;
+        while (index < instructions.size() && instructions.get(index).dead)
+            index++;
+        return index < instructions.size() ? instructions.get(index) : null;
+    }
+
+    private Instruction next(List<Instruction> live, int index) {
+        return index + 1 < live.size() ? live.get(index + 1) : null;
+    }
+
+    private static boolean pushesOnly(int op) {
+        return op == ByteCodeOpCode.Constant || op == ByteCodeOpCode.Null || op == ByteCodeOpCode.GetLocal
+                || op == ByteCodeOpCode.GetSlot;
+    }
+
+    private boolean peephole() {
+        boolean changed = false;
+        List<Instruction> live = live();
+        for (int i = 0; i < live.size(); i++) {
+            Instruction instruction = live.get(i);
+            Instruction next = next(live, i);
+            // a parameter nothing captured needs no prologue at all
+            if (!instruction.dead && instruction.op == ByteCodeOpCode.KeepSlot) {
+                instruction.dead = true;
+                changed = true;
+                continue;
+            }
+
+            if (instruction.dead || next == null || next.target)
+                continue;
+
+            // a value pushed only to be popped again
+            if (pushesOnly(instruction.op) && next.op == ByteCodeOpCode.Pop) {
+                instruction.dead = true;
+                next.dead = true;
+                changed = true;
+                continue;
+            }
+
+            // != and other negated conditions, when both ways out pop the condition its sense does not matter
+            if (instruction.op == ByteCodeOpCode.Not
+                    && (next.op == ByteCodeOpCode.JumpIfFalse || next.op == ByteCodeOpCode.JumpIfTrue)) {
+                Instruction after = next(live, i + 1);
+                Instruction target = resolve(next.targets[0]);
+                if (after != null && after.op == ByteCodeOpCode.Pop && target != null && target.op == ByteCodeOpCode.Pop) {
+                    next.op = next.op == ByteCodeOpCode.JumpIfFalse ? ByteCodeOpCode.JumpIfTrue : ByteCodeOpCode.JumpIfFalse;
+                    instruction.dead = true;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    // follows each jump through the jumps it lands on
+    private boolean thread() {
+        boolean changed = false;
+        for (Instruction instruction : instructions) {
+            if (instruction.dead)
+                continue;
+            boolean conditional = instruction.op == ByteCodeOpCode.JumpIfFalse || instruction.op == ByteCodeOpCode.JumpIfTrue;
+            if (instruction.op != ByteCodeOpCode.Jump && !conditional)
+                continue;
+
+            Instruction target = resolve(instruction.targets[0]);
+            for (int hops = 0; target != null && hops < 16; hops++) {
+                Instruction next;
+                if (target.op == ByteCodeOpCode.Jump) {
+                    next = target.targets[0];
+                } else if (conditional && target.op == instruction.op) {
+                    // the condition is still on the stack, so the second test goes the same way
+                    next = target.targets[0];
+                } else if (conditional && (target.op == ByteCodeOpCode.JumpIfFalse || target.op == ByteCodeOpCode.JumpIfTrue)) {
+                    next = instructions.get(target.index + 1);
+                } else {
+                    break;
+                }
+                next = resolve(next);
+                if (next == null || next == target || next.offset < target.offset)
+                    break;
+                target = next;
+            }
+
+            if (target != null && target != resolve(instruction.targets[0])) {
+                instruction.targets[0] = target;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private boolean unreachable() {
+        for (Instruction instruction : instructions)
+            instruction.reached = false;
+
+        List<Instruction> work = new ArrayList<>();
+        Instruction entry = resolve(instructions.get(0));
+        if (entry == null)
+            return false;
+        work.add(entry);
+        entry.reached = true;
+        while (!work.isEmpty()) {
+            Instruction instruction = work.remove(work.size() - 1);
+            List<Instruction> successors = new ArrayList<>();
+            for (Instruction target : instruction.targets)
+                successors.add(resolve(target));
+            if (!terminates(instruction.op)) {
+                if (instruction.index + 1 < instructions.size())
+                    successors.add(resolve(instructions.get(instruction.index + 1)));
+            }
+            for (Instruction successor : successors) {
+                if (successor != null && !successor.reached) {
+                    successor.reached = true;
+                    work.add(successor);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (Instruction instruction : instructions) {
+            if (!instruction.dead && !instruction.reached) {
+                instruction.dead = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean terminates(int op) {
+        return op == ByteCodeOpCode.Return || op == ByteCodeOpCode.ReturnConstant || op == ByteCodeOpCode.Jump || op == ByteCodeOpCode.Loop
+                || op == ByteCodeOpCode.Throw || op == ByteCodeOpCode.TableSwitch;
+    }
+
+    // a jump to the instruction right after it does nothing, the conditional ones only peek at the stack
+    private boolean dropEmptyJumps() {
+        boolean changed = false;
+        List<Instruction> live = live();
+        for (int i = 0; i < live.size(); i++) {
+            Instruction instruction = live.get(i);
+            boolean jump = instruction.op == ByteCodeOpCode.Jump || instruction.op == ByteCodeOpCode.JumpIfFalse
+                    || instruction.op == ByteCodeOpCode.JumpIfTrue;
+            if (jump && resolve(instruction.targets[0]) == next(live, i)) {
+                instruction.dead = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // rewrites the first instruction of each sequence in place, so jumps landing on it still do
+    // nothing may jump into the middle of a sequence
+    private void fuse() {
+        List<Instruction> live = live();
+        for (int i = 0; i < live.size(); i++) {
+            Instruction first = live.get(i);
+            int length = 0;
+            // the slot forms fuse the same way, a boxed and an unboxed local are never mixed in one
+            boolean slot = first.op == ByteCodeOpCode.GetSlot || first.op == ByteCodeOpCode.SetSlot;
+            int get = slot ? ByteCodeOpCode.GetSlot : ByteCodeOpCode.GetLocal;
+            int set = slot ? ByteCodeOpCode.SetSlot : ByteCodeOpCode.SetLocal;
+            if (first.op == get && matches(live, i, get, ByteCodeOpCode.LessThan, ByteCodeOpCode.JumpIfFalse)) {
+                Instruction jump = live.get(i + 3);
+                first.operands = new int[] { first.operands[0], live.get(i + 1).operands[0], 0 };
+                first.targets = jump.targets;
+                first.op = slot ? ByteCodeOpCode.SlotsLessJump : ByteCodeOpCode.LocalsLessJump;
+                length = 4;
+            } else if (first.op == get && matches(live, i, ByteCodeOpCode.Constant, ByteCodeOpCode.Add)) {
+                first.operands = new int[] { first.operands[0], live.get(i + 1).operands[0] };
+                first.op = slot ? ByteCodeOpCode.AddSlotConstant : ByteCodeOpCode.AddLocalConstant;
+                length = 3;
+            } else if (first.op == set && matches(live, i, ByteCodeOpCode.Pop)) {
+                first.op = slot ? ByteCodeOpCode.SetSlotPop : ByteCodeOpCode.SetLocalPop;
+                length = 2;
+            } else if (first.op == ByteCodeOpCode.Constant && matches(live, i, ByteCodeOpCode.Return)) {
+                first.op = ByteCodeOpCode.ReturnConstant;
+                length = 2;
+            }
+
+            for (int j = 1; j < length; j++)
+                live.get(i + j).dead = true;
+            if (length > 0) {
+                superinstructions++;
+                i += length - 1;
+            }
+        }
+    }
+
+    private static boolean matches(List<Instruction> live, int index, int... ops) {
+        if (index + ops.length >= live.size())
+            return false;
+        for (int i = 0; i < ops.length; i++) {
+            Instruction instruction = live.get(index + 1 + i);
+            if (instruction.op != ops[i] || instruction.target)
+                return false;
+        }
+        return true;
+    }
+
+    private void encode() {
+        List<Instruction> live = live();
+        int offset = 0;
+        for (Instruction instruction : live) {
+            instruction.offset = offset;
+            offset += 1 + instruction.operands.length;
+        }
+
+        List<Integer> code = new ArrayList<>(offset);
+        for (Instruction instruction : live) {
+            int[] slots = jumpSlots(instruction);
+            int end = instruction.offset + 1 + instruction.operands.length;
+            for (int i = 0; i < slots.length; i++) {
+                int target = resolve(instruction.targets[i]).offset;
+                instruction.operands[slots[i]] = instruction.op == ByteCodeOpCode.Loop ? end - target : target - end;
+            }
+            code.add(instruction.op);
+            for (int operand : instruction.operands)
+                code.add(operand);
+        }
+        chunk.code = code;
+    }
+
+    // renumbers the pool so it only keeps constants the code still reads
+    private void compactConstants() {
+        ValueArray constants = chunk.constants;
+        int[] remap = new int[constants.values.size()];
+        Arrays.fill(remap, -1);
+
+        List<Instruction> live = live();
+        for (Instruction instruction : live)
+            for (int slot : constantSlots(instruction))
+                remap[instruction.operands[slot]] = 0;
+
+        ValueArray compacted = new ValueArray();
+        for (int i = 0; i < remap.length; i++)
+            if (remap[i] != -1)
+                remap[i] = compacted.write(constants.values.get(i));
+        if (compacted.length == constants.length)
+            return;
+
+        List<Integer> code = new ArrayList<>(chunk.code.size());
+        for (Instruction instruction : live) {
+            for (int slot : constantSlots(instruction))
+                instruction.operands[slot] = remap[instruction.operands[slot]];
+            code.add(instruction.op);
+            for (int operand : instruction.operands)
+                code.add(operand);
+        }
+        constantsRemoved += constants.length - compacted.length;
+        chunk.code = code;
+        chunk.constants = compacted;
+    }
+}
@@ -57,6 +57,11 @@ public class Compiler {
         final Type type;
         int depth;
 
+        // captured by a closure or read through its Var by an opcode, the local can never live unboxed
+        boolean boxed;
+        // offsets of the slot instructions addressing an unboxed local, null once it lives in a Var
+        List<Integer> slotSites;
+
         Local(LocalToken name, Type type, int depth) {
             this.name = name;
             this.type = type;
@@ -119,7 +124,7 @@ public class Compiler {
 
     public Compiler(FunctionType type, String source, ClassObjectType classObjectType) {
         this(null, type, source, classObjectType);
-        NativeContext.init(null);
+        NativeContext.init(false);
         globals.putAll(NativeContext.GLOBAL_TYPES);
         globals.putAll(LibraryClassLoader.LIBRARY_TYPES);
     }
@@ -297,6 +302,7 @@ public class Compiler {
         int local = enclosing.resolveLocal(name);
 
         if (local != -1) {
+            enclosing.box(local);
             return addUpValue(local, true, enclosing.resolveLocalType(name));
         }
 
@@ -308,6 +314,41 @@ public class Compiler {
         return hasGlobal(name) ? addUpValue(name) : -1;
     }
 
+    // the slot form of op when the local in slot is unboxed, its Var form otherwise
+    // slot forms are recorded so box() can still rewrite them, until endCompiler the offsets stay valid
+    int slotOp(int op, int slot) {
+        Local local = locals[slot];
+        if (local != null && local.slotSites != null) {
+            local.slotSites.add(chunk().code.size());
+            return op;
+        }
+        return boxed(op);
+    }
+
+    static int boxed(int op) {
+        return switch (op) {
+            case ByteCodeOpCode.GetSlot -> ByteCodeOpCode.GetLocal;
+            case ByteCodeOpCode.SetSlot -> ByteCodeOpCode.SetLocal;
+            case ByteCodeOpCode.DefineSlot -> ByteCodeOpCode.DefineLocal;
+            case ByteCodeOpCode.KeepSlot -> ByteCodeOpCode.MakeVar;
+            case ByteCodeOpCode.ForSlot -> ByteCodeOpCode.For;
+            default -> op;
+        };
+    }
+
+    // a closure captures the Var in the slot, so every instruction already emitted for it is turned into its Var form
+    void box(int slot) {
+        Local local = locals[slot];
+        if (local == null)
+            return;
+        local.boxed = true;
+        if (local.slotSites == null)
+            return;
+        for (int site : local.slotSites)
+            chunk().code.set(site, boxed(chunk().code.get(site)));
+        local.slotSites = null;
+    }
+
     void patchBreaks() {
         for (int i : breaks.pop()) {
             patchJump(i);
@@ -385,6 +426,7 @@ public class Compiler {
     }
 
     public ByteCode endCompiler() {
+        ChunkOptimizer.optimize(byteCode.chunk);
         byteCode.chunk.compile();
 
         return byteCode;
@@ -392,7 +434,7 @@ public class Compiler {
 
     Type compile(Node statement) {
         switch (statement.getNodeType()) {
-            case CAST -> compile(((CastNode) statement).expr);
+            case CAST -> compile((CastNode) statement);
             case BIN_OP -> compile((BinOpNode) statement);
             case UNARY_OPERATION -> compile((UnaryOpNode) statement);
             case USE -> compile((UseNode) statement);
@@ -404,7 +446,10 @@ public class Compiler {
             case SPREAD -> compile((SpreadNode) statement);
             case NUMBER -> {
                 NumberNode node = (NumberNode) statement;
-                compileNumber(node.val);
+                if (node.integral)
+                    compileInteger(node.integer);
+                else
+                    compileNumber(node.val);
             }
             case STRING -> {
                 StringNode node = (StringNode) statement;
@@ -511,12 +556,12 @@ public class Compiler {
         int arg = resolveLocal(name);
 
         if (arg != -1) {
-            emit(ByteCodeOpCode.SetLocal, arg);
+            emit(slotOp(ByteCodeOpCode.SetSlot, arg), arg);
         } else if ((arg = resolveUpValue(name)) != -1) {
             emit(ByteCodeOpCode.SetUpvalue, arg);
         } else {
-            arg = chunk().addConstant(new Value(name));
-            emit(ByteCodeOpCode.SetGlobal, arg);
+            arg = chunk().globalSlot(name);
+            emit(ByteCodeOpCode.SetGlobalSlot, arg);
         }
     }
 
@@ -571,7 +616,7 @@ public class Compiler {
 
         switch (name = node.useToken.getValue().toString()) {
             case "optimize" -> {
-                argc = 0;
+                argc = -1;
                 code = HeadCode.OPTIMIZE;
             }
             case "func" -> {
@@ -831,8 +876,90 @@ public class Compiler {
                 null);
     }
 
+    // constant of every case when they are all literals or enum children, the switch can then jump straight to its case
+    Value[] literalCases(SwitchNode node) {
+        if (node.cases.size() < 2)
+            return null;
+        Value[] keys = new Value[node.cases.size()];
+        for (int i = 0; i < keys.length; i++) {
+            Node condition = node.cases.get(i).getCondition();
+            // string literals reach the compiler as "" + text
+            if (condition.isConstant())
+                condition = condition.optimize();
+            keys[i] = switch (condition.getNodeType()) {
+                case NUMBER -> {
+                    NumberNode number = (NumberNode) condition;
+                    yield number.integral ? Value.integer(number.integer) : new Value(number.val);
+                }
+                case STRING -> new Value(((StringNode) condition).val);
+                case BOOLEAN -> new Value(((BooleanNode) condition).val);
+                case CLASS_ACCESS -> enumCase((ClassAccessNode) condition);
+                default -> null;
+            };
+            if (keys[i] == null)
+                return null;
+        }
+        return keys;
+    }
+
+    // a local of this function or of one it is nested in, which hides a global of the same name
+    boolean isLocal(String name) {
+        return resolveLocal(name) != -1 || enclosing != null && enclosing.isLocal(name);
+    }
+
+    // Enum.Child of a global enum, kept as a one-child enum naming the case until the switch first runs
+    Value enumCase(ClassAccessNode node) {
+        if (node.className.getNodeType() != NodeType.VAR_ACCESS)
+            return null;
+        String name = ((VarAccessNode) node.className).name.getValue().toString();
+        String child = node.attributeName.getValue().toString();
+        if (macros.containsKey(name) || isLocal(name))
+            return null;
+        if (!(getGlobal(name) instanceof EnumType type) || !type.children.containsKey(child)
+                || type.children.get(child).properties.length > 0)
+            return null;
+        return new Value(new LanguageEnum(name, Map.of(child, new LanguageEnumChild(-1, List.of()))));
+    }
+
+    // returns the offset operands, one per case and the default last
+    int[] emitTableSwitch(Value[] keys) {
+        emit(ByteCodeOpCode.TableSwitch, keys.length);
+        int[] offsets = new int[keys.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            emit(chunk().addConstant(keys[i]), 0xff);
+            offsets[i] = chunk().code.size() - 1;
+        }
+        emit(0xff);
+        offsets[keys.length] = chunk().code.size() - 1;
+        return offsets;
+    }
+
+    // offsets count from the end of the instruction, which is just past the default operand
+    void patchTableSwitch(int[] offsets, int index) {
+        int end = offsets[offsets.length - 1] + 1;
+        chunk().code.set(offsets[index], chunk().code.size() - end);
+    }
+
     void compileSwitch(SwitchNode node) {
         breaks.add(new ArrayList<>());
+        Value[] keys = literalCases(node);
+        if (keys != null) {
+            compile(node.reference);
+            int[] offsets = emitTableSwitch(keys);
+            for (int i = 0; i < keys.length; i++) {
+                patchTableSwitch(offsets, i);
+                compile(node.cases.get(i).getStatements());
+            }
+
+            patchTableSwitch(offsets, keys.length);
+            if (node.elseCase != null)
+                compile(node.elseCase.getStatements());
+
+            patchBreaks();
+            compileNull();
+            return;
+        }
+
         int[] jumps = new int[node.cases.size()];
         for (int i = 0; i < jumps.length; i++) {
             Case elementCase = node.cases.get(i);
@@ -868,6 +995,30 @@ public class Compiler {
     void compileMatch(SwitchNode node) {
         breaks.add(new ArrayList<>());
         int[] jumps = new int[node.cases.size()];
+        Value[] keys = literalCases(node);
+        if (keys != null) {
+            compile(node.reference);
+            int[] offsets = emitTableSwitch(keys);
+            for (int i = 0; i < keys.length; i++) {
+                patchTableSwitch(offsets, i);
+                compile(node.cases.get(i).getStatements());
+                jumps[i] = emitJump(ByteCodeOpCode.Jump);
+            }
+
+            patchTableSwitch(offsets, keys.length);
+            if (node.elseCase != null) {
+                compile(node.elseCase.getStatements());
+            } else {
+                compileNull();
+            }
+
+            for (int jump : jumps)
+                patchJump(jump);
+
+            patchBreaks();
+            return;
+        }
+
         for (int i = 0; i < jumps.length; i++) {
             Case elementCase = node.cases.get(i);
 
@@ -927,21 +1078,21 @@ public class Compiler {
             Token paramType = node.argumentTypes.get(i);
 
             compiler.parseVariable(param, compiler.typeLookup(paramType));
-            compiler.makeVar(compiler.localCount - 1, false);
+            compiler.parameter();
         }
 
         if (node.argname != null) {
             Token argNameToken = new Token(TokenType.IDENTIFIER, node.argname, Position.EMPTY, Position.EMPTY);
             compiler.byteCode.totarity++;
             compiler.parseVariable(argNameToken, Types.LIST);
-            compiler.makeVar(compiler.localCount - 1, false);
+            compiler.parameter();
         }
 
         if (node.kwargname != null) {
             Token keywordToken = new Token(TokenType.IDENTIFIER, node.kwargname, Position.EMPTY, Position.EMPTY);
             compiler.byteCode.totarity++;
             compiler.parseVariable(keywordToken, Types.MAP);
-            compiler.makeVar(compiler.localCount - 1, false);
+            compiler.parameter();
         }
 
         pre.compile(compiler);
@@ -997,11 +1148,36 @@ public class Compiler {
         emit(ByteCodeOpCode.Constant, constant);
     }
 
+    void compileInteger(long val) {
+        int constant = chunk().addConstant(Value.integer(val));
+        emit(ByteCodeOpCode.Constant, constant);
+    }
+
     void compileString(String val) {
         int constant = chunk().addConstant(new Value(val));
         emit(ByteCodeOpCode.Constant, constant);
     }
 
+    // numeric casts convert at runtime, every other cast only informs the type checker
+    void compile(CastNode node) {
+        compile(node.expr);
+        Type type = typeLookup(node.type);
+        int bits;
+        if (type == Types.BYTE)
+            bits = 8;
+        else if (type == Types.SHORT)
+            bits = 16;
+        else if (type == Types.INT)
+            bits = 32;
+        else if (type == Types.LONG || type == Types.DOUBLE)
+            bits = 64;
+        else if (type == Types.FLOAT)
+            bits = 0;
+        else
+            return;
+        emit(ByteCodeOpCode.Convert, bits);
+    }
+
     void compile(BinOpNode node) {
         if (node.operation == TokenType.AMPERSAND) {
             compile(node.left);
@@ -1031,8 +1207,17 @@ public class Compiler {
             return;
         }
 
-        compile(node.left);
-        compile(node.right);
+        Type left = compile(node.left);
+        Type right = compile(node.right);
+        if (isLong(left, right) && compileLong(node.operation))
+            return;
+        if (isNumeric(left) && isNumeric(right) && compileNumeric(node.operation))
+            return;
+        if (left == Types.STRING && node.operation == TokenType.PLUS) {
+            emit(ByteCodeOpCode.StrConcat);
+            return;
+        }
+
         switch (node.operation) {
             case PLUS -> emit(ByteCodeOpCode.Add);
             case MINUS -> emit(ByteCodeOpCode.Subtract);
@@ -1058,6 +1243,62 @@ public class Compiler {
         }
     }
 
+    static boolean isNumeric(Type type) {
+        return type == Types.INT || type == Types.FLOAT || type == Types.LONG || type == Types.DOUBLE
+                || type == Types.SHORT || type == Types.BYTE || type == Types.F_DOUBLE;
+    }
+
+    // integers declared l64 or i64 wrap around at 64 bits, every other integer arithmetic stays exact
+    static boolean isLong(Type left, Type right) {
+        return isNumeric(left) && isNumeric(right)
+                && (left == Types.LONG || left == Types.DOUBLE || right == Types.LONG || right == Types.DOUBLE)
+                && left != Types.FLOAT && left != Types.F_DOUBLE && right != Types.FLOAT && right != Types.F_DOUBLE;
+    }
+
+    boolean compileLong(TokenType operation) {
+        switch (operation) {
+            case PLUS -> emit(ByteCodeOpCode.LongAdd);
+            case MINUS -> emit(ByteCodeOpCode.LongSubtract);
+            case STAR -> emit(ByteCodeOpCode.LongMultiply);
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // both operands are statically numbers, so the VM can skip the string, list and operator override checks
+    boolean compileNumeric(TokenType operation) {
+        switch (operation) {
+            case PLUS -> emit(ByteCodeOpCode.NumAdd);
+            case MINUS -> emit(ByteCodeOpCode.NumSubtract);
+            case STAR -> emit(ByteCodeOpCode.NumMultiply);
+            case RIGHT_ANGLE -> emit(ByteCodeOpCode.NumGreaterThan);
+            case LEFT_ANGLE -> emit(ByteCodeOpCode.NumLessThan);
+            case GREATER_EQUALS -> emit(new int[]{ByteCodeOpCode.NumLessThan, ByteCodeOpCode.Not});
+            case LESS_EQUALS -> emit(new int[]{ByteCodeOpCode.NumGreaterThan, ByteCodeOpCode.Not});
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // a numeric < deciding a branch compares and jumps in one instruction, the result is still left for the Pop after it
+    int compileCondition(Node condition) {
+        if (condition.getNodeType() == NodeType.BIN_OP) {
+            BinOpNode node = (BinOpNode) condition;
+            if (node.operation == TokenType.LEFT_ANGLE
+                    && isNumeric(typeHandler.resolve(node.left)) && isNumeric(typeHandler.resolve(node.right))) {
+                compile(node.left);
+                compile(node.right);
+                return emitJump(ByteCodeOpCode.NumJumpIfNotLess);
+            }
+        }
+        compile(condition);
+        return emitJump(ByteCodeOpCode.JumpIfFalse);
+    }
+
     void compile(UnaryOpNode node) {
         compile(node.node);
         switch (node.operation) {
@@ -1101,12 +1342,12 @@ public class Compiler {
         int arg = resolveLocal(name);
 
         if (arg != -1) {
-            emit(ByteCodeOpCode.GetLocal, arg);
+            emit(slotOp(ByteCodeOpCode.GetSlot, arg), arg);
         } else if ((arg = resolveUpValue(name)) != -1) {
             emit(ByteCodeOpCode.GetUpvalue, arg);
         } else if (hasGlobal(name)) {
-            arg = chunk().addConstant(new Value(name));
-            emit(ByteCodeOpCode.GetGlobal, arg);
+            arg = chunk().globalSlot(name);
+            emit(ByteCodeOpCode.GetGlobalSlot, arg);
         } else if (accessEnclosed(name) != null) {
             arg = chunk().addConstant(new Value(name));
             emit(ByteCodeOpCode.GetAttr, arg);
@@ -1167,7 +1408,10 @@ public class Compiler {
         boolean usesRange = min != Integer.MIN_VALUE || max != Integer.MAX_VALUE;
         if (scopeDepth > 0) {
             markInitialized();
-            emit(ByteCodeOpCode.DefineLocal);
+            Local local = locals[localCount - 1];
+            if (!local.boxed && !constant && !usesRange)
+                local.slotSites = new ArrayList<>();
+            emit(slotOp(ByteCodeOpCode.DefineSlot, localCount - 1));
             emit(constant ? 1 : 0);
             emit(usesRange ? 1 : 0);
             if (usesRange) {
@@ -1176,8 +1420,9 @@ public class Compiler {
             return;
         }
 
-        globals.put(chunk().constants.values.get(global).asString(), type);
-        emit(ByteCodeOpCode.DefineGlobal, global);
+        String name = chunk().constants.values.get(global).asString();
+        globals.put(name, type);
+        emit(ByteCodeOpCode.DefineGlobalSlot, chunk().globalSlot(name));
         emit(constant ? 1 : 0);
         emit(usesRange ? 1 : 0);
         if (usesRange) {
@@ -1185,10 +1430,12 @@ public class Compiler {
         }
     }
 
-    @SuppressWarnings("all")
-    void makeVar(int slot, boolean constant) {
-        emit(ByteCodeOpCode.MakeVar, slot);
-        emit(constant ? 1 : 0);
+    // an argument arrives as a plain value, KeepSlot holds the place of the MakeVar a capture would need
+    void parameter() {
+        int slot = localCount - 1;
+        locals[slot].slotSites = new ArrayList<>();
+        emit(slotOp(ByteCodeOpCode.KeepSlot, slot), slot);
+        emit(0);
     }
 
     void addLocal(String name, Type type) {
@@ -1260,12 +1507,12 @@ public class Compiler {
         }
 
         if (arg != -1) {
-            emit(ByteCodeOpCode.SetLocal, arg);
+            emit(slotOp(ByteCodeOpCode.SetSlot, arg), arg);
         } else if ((arg = resolveUpValue(name)) != -1) {
             emit(ByteCodeOpCode.SetUpvalue, arg);
         } else {
-            arg = chunk().addConstant(new Value(name));
-            emit(ByteCodeOpCode.SetGlobal, arg);
+            arg = chunk().globalSlot(name);
+            emit(ByteCodeOpCode.SetGlobalSlot, arg);
         }
     }
 
@@ -1312,8 +1559,7 @@ public class Compiler {
                 emit(ByteCodeOpCode.Pop);
             }
 
-            compile(nodeCase.getCondition());
-            lastJump = emitJump(ByteCodeOpCode.JumpIfFalse);
+            lastJump = compileCondition(nodeCase.getCondition());
             emit(ByteCodeOpCode.Pop);
             beginScope();
             compile(nodeCase.getStatements());
@@ -1507,8 +1753,7 @@ public class Compiler {
         int skipFirst = isDoWhile ? emitJump(ByteCodeOpCode.Jump) : -1;
         int loopStart = chunk().code.size();
 
-        compile(node.condition);
-        int jump = emitJump(ByteCodeOpCode.JumpIfFalse);
+        int jump = compileCondition(node.condition);
         emit(ByteCodeOpCode.Pop);
 
         if (isDoWhile)
@@ -1551,8 +1796,8 @@ public class Compiler {
             compileNumber(1);
         }
 
-        emit(ByteCodeOpCode.For);
-        emit(resolveLocal(name));
+        int counter = resolveLocal(name);
+        emit(slotOp(ByteCodeOpCode.ForSlot, counter), counter);
 
         emit(0xff);
         int jump = chunk().code.size() - 1;
@@ -1568,12 +1813,16 @@ public class Compiler {
         beginScope();
 
         String name = node.name.getValue().toString();
-        copyVar(new Token(
+        int iterator = parseVariable(new Token(
                 TokenType.IDENTIFIER,
                 "@" + name,
                 node.name.getStartPosition(),
                 node.name.getEndPosition()
-        ), Types.LIST, node.iterable);
+        ), Types.LIST);
+        compile(node.iterable);
+        emit(ByteCodeOpCode.MakeIter);
+        defineVariable(iterator, Types.LIST, false);
+        emit(ByteCodeOpCode.Pop);
         compileDeclaration(node.name,
                 Types.ANY,
                 false,
@@ -1586,6 +1835,10 @@ public class Compiler {
                 Integer.MIN_VALUE, Integer.MAX_VALUE);
         emit(ByteCodeOpCode.Pop);
 
+        // Iter steps the iterator and writes the variable through their Vars
+        box(resolveLocal("@" + name));
+        box(resolveLocal(name));
+
         int loopStart = chunk().code.size();
 
         emit(ByteCodeOpCode.Iter);
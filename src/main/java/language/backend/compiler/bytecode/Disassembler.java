@@ -78,6 +78,15 @@ public class Disassembler {
             case ByteCodeOpCode.DefineGlobal -> {
                 return declInstruction("OP_DEFINE_GLOBAL", chunk, offset, false);
             }
+            case ByteCodeOpCode.SetGlobalSlot -> {
+                return globalInstruction("OP_SET_GLOBAL_SLOT", chunk, offset);
+            }
+            case ByteCodeOpCode.GetGlobalSlot -> {
+                return globalInstruction("OP_GET_GLOBAL_SLOT", chunk, offset);
+            }
+            case ByteCodeOpCode.DefineGlobalSlot -> {
+                return globalDeclInstruction("OP_DEFINE_GLOBAL_SLOT", chunk, offset);
+            }
             case ByteCodeOpCode.Add -> {
                 return simpleInstruction("OP_ADD", offset);
             }
@@ -117,6 +126,33 @@ public class Disassembler {
             case ByteCodeOpCode.LessThan -> {
                 return simpleInstruction("OP_LESS_THAN", offset);
             }
+            case ByteCodeOpCode.NumAdd -> {
+                return simpleInstruction("OP_NUM_ADD", offset);
+            }
+            case ByteCodeOpCode.NumSubtract -> {
+                return simpleInstruction("OP_NUM_SUBTRACT", offset);
+            }
+            case ByteCodeOpCode.NumMultiply -> {
+                return simpleInstruction("OP_NUM_MULTIPLY", offset);
+            }
+            case ByteCodeOpCode.LongAdd -> {
+                return simpleInstruction("OP_LONG_ADD", offset);
+            }
+            case ByteCodeOpCode.LongSubtract -> {
+                return simpleInstruction("OP_LONG_SUBTRACT", offset);
+            }
+            case ByteCodeOpCode.LongMultiply -> {
+                return simpleInstruction("OP_LONG_MULTIPLY", offset);
+            }
+            case ByteCodeOpCode.NumLessThan -> {
+                return simpleInstruction("OP_NUM_LESS_THAN", offset);
+            }
+            case ByteCodeOpCode.NumGreaterThan -> {
+                return simpleInstruction("OP_NUM_GREATER_THAN", offset);
+            }
+            case ByteCodeOpCode.StrConcat -> {
+                return simpleInstruction("OP_STR_CONCAT", offset);
+            }
             case ByteCodeOpCode.SetLocal -> {
                 return byteInstruction("OP_SET_LOCAL", chunk, offset);
             }
@@ -132,6 +168,19 @@ public class Disassembler {
                 writeElement(String.format("%-16s %-16s %04d%n", constant, "OP_MAKE_VAR", arg));
                 return offset + 3;
             }
+            case ByteCodeOpCode.SetSlot -> {
+                return byteInstruction("OP_SET_SLOT", chunk, offset);
+            }
+            case ByteCodeOpCode.GetSlot -> {
+                return byteInstruction("OP_GET_SLOT", chunk, offset);
+            }
+            case ByteCodeOpCode.DefineSlot -> {
+                return declInstruction("OP_DEFINE_SLOT", chunk, offset, true);
+            }
+            case ByteCodeOpCode.KeepSlot -> {
+                byteInstruction("OP_KEEP_SLOT", chunk, offset);
+                return offset + 3;
+            }
             case ByteCodeOpCode.Throw -> {
                 return simpleInstruction("OP_THROW", offset);
             }
@@ -141,6 +190,12 @@ public class Disassembler {
             case ByteCodeOpCode.Copy -> {
                 return simpleInstruction("OP_COPY", offset);
             }
+            case ByteCodeOpCode.MakeIter -> {
+                return simpleInstruction("OP_MAKE_ITER", offset);
+            }
+            case ByteCodeOpCode.Convert -> {
+                return byteInstruction("OP_CONVERT", chunk, offset);
+            }
             case ByteCodeOpCode.MakeArray -> {
                 return byteInstruction("OP_MAKE_ARRAY", chunk, offset);
             }
@@ -184,9 +239,79 @@ public class Disassembler {
             case ByteCodeOpCode.JumpIfTrue -> {
                 return jumpInstruction("OP_JUMP_IF_TRUE", 1, chunk, offset);
             }
+            case ByteCodeOpCode.NumJumpIfNotLess -> {
+                return jumpInstruction("OP_NUM_JUMP_IF_NOT_LESS", 1, chunk, offset);
+            }
             case ByteCodeOpCode.Loop -> {
                 return jumpInstruction("OP_LOOP", -1, chunk, offset);
             }
+            case ByteCodeOpCode.TableSwitch -> {
+                int count = chunk.code.get(offset + 1);
+                int end = offset + 3 + count * 2;
+                writeElement(String.format("%-16s %04d -> %04d%n", "OP_TABLE_SWITCH", count, end + chunk.code.get(end - 1)));
+                for (int i = 0; i < count; i++) {
+                    int constant = chunk.code.get(offset + 2 + i * 2);
+                    int jump = chunk.code.get(offset + 3 + i * 2);
+                    writeElement(String.format("     | %-10s -> %04d%n", chunk.constants.values.get(constant), end + jump));
+                }
+                return end;
+            }
+            // a superinstruction lists the instructions it stands for
+            case ByteCodeOpCode.SetLocalPop -> {
+                byteInstruction("OP_SET_LOCAL", chunk, offset);
+                fusedPart();
+                simpleInstruction("OP_POP", offset);
+                return offset + 2;
+            }
+            case ByteCodeOpCode.ReturnConstant -> {
+                constantInstruction("OP_CONSTANT", chunk, offset);
+                fusedPart();
+                return simpleInstruction("OP_RETURN", offset + 1);
+            }
+            case ByteCodeOpCode.AddLocalConstant -> {
+                byteInstruction("OP_GET_LOCAL", chunk, offset);
+                fusedPart();
+                constantInstruction("OP_CONSTANT", chunk, offset + 1);
+                fusedPart();
+                simpleInstruction("OP_ADD", offset);
+                return offset + 3;
+            }
+            case ByteCodeOpCode.LocalsLessJump -> {
+                byteInstruction("OP_GET_LOCAL", chunk, offset);
+                fusedPart();
+                byteInstruction("OP_GET_LOCAL", chunk, offset + 1);
+                fusedPart();
+                simpleInstruction("OP_LESS_THAN", offset);
+                fusedPart();
+                int jump = chunk.code.get(offset + 3);
+                writeElement(String.format("%-16s %04d -> %04d%n", "OP_JUMP_IF_FALSE", offset, offset + 4 + jump));
+                return offset + 4;
+            }
+            case ByteCodeOpCode.SetSlotPop -> {
+                byteInstruction("OP_SET_SLOT", chunk, offset);
+                fusedPart();
+                simpleInstruction("OP_POP", offset);
+                return offset + 2;
+            }
+            case ByteCodeOpCode.AddSlotConstant -> {
+                byteInstruction("OP_GET_SLOT", chunk, offset);
+                fusedPart();
+                constantInstruction("OP_CONSTANT", chunk, offset + 1);
+                fusedPart();
+                simpleInstruction("OP_ADD", offset);
+                return offset + 3;
+            }
+            case ByteCodeOpCode.SlotsLessJump -> {
+                byteInstruction("OP_GET_SLOT", chunk, offset);
+                fusedPart();
+                byteInstruction("OP_GET_SLOT", chunk, offset + 1);
+                fusedPart();
+                simpleInstruction("OP_LESS_THAN", offset);
+                fusedPart();
+                int jump = chunk.code.get(offset + 3);
+                writeElement(String.format("%-16s %04d -> %04d%n", "OP_JUMP_IF_FALSE", offset, offset + 4 + jump));
+                return offset + 4;
+            }
             case ByteCodeOpCode.Method -> {
                 constantInstruction("OP_METHOD", chunk, offset);
                 return offset + 5;
@@ -204,7 +329,10 @@ public class Disassembler {
                 return simpleInstruction("OP_FLUSH_LOOP", offset);
             }
             case ByteCodeOpCode.For -> {
-                return forInstruction(chunk, offset);
+                return forInstruction("OP_FOR", chunk, offset);
+            }
+            case ByteCodeOpCode.ForSlot -> {
+                return forInstruction("OP_FOR_SLOT", chunk, offset);
             }
             case ByteCodeOpCode.Class -> {
                 int end = constantInstruction("OP_CLASS", chunk, offset);
@@ -343,6 +471,21 @@ public class Disassembler {
         return offset + 3 + localOffset + (hasRange ? 2 : 0);
     }
     
+    int globalInstruction(String name, Chunk chunk, int offset) {
+        int slot = chunk.code.get(offset + 1);
+        writeElement(String.format("%-16s %04d '%s'%n", name, slot, chunk.globalNames.get(slot)));
+        return offset + 2;
+    }
+
+    int globalDeclInstruction(String name, Chunk chunk, int offset) {
+        int slot = chunk.code.get(offset + 1);
+        String constant = chunk.code.get(offset + 2) == 1 ? "CONSTANT" : "MUTABLE";
+        boolean hasRange = chunk.code.get(offset + 3) == 1;
+
+        writeElement(String.format("%-16s %-16s %04d '%s'%n", constant, name, slot, chunk.globalNames.get(slot)));
+        return offset + 4 + (hasRange ? 2 : 0);
+    }
+
     int jumpInstruction(String name, int sign, Chunk chunk, int offset) {
         int jump = sign * chunk.code.get(offset + 1);
 
@@ -351,11 +494,15 @@ public class Disassembler {
         return offset + 2;
     }
 
-    int forInstruction(Chunk chunk, int offset) {
+    void fusedPart() {
+        writeElement("   + ");
+    }
+
+    int forInstruction(String name, Chunk chunk, int offset) {
         int constant = chunk.code.get(offset + 1);
         int jump = chunk.code.get(offset + 2);
 
-        writeElement(String.format("%-16s %04d %04d -> %04d%n", "OP_FOR", constant, offset + 3, offset + 3 + jump));
+        writeElement(String.format("%-16s %04d %04d -> %04d%n", name, constant, offset + 3, offset + 3 + jump));
         return offset + 3;
     }
 
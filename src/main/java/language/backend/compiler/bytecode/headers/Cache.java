@@ -2,69 +2,44 @@ package language.backend.compiler.bytecode.headers;
 
 import language.backend.compiler.bytecode.values.Value;
 
+import java.util.Arrays;
+
+// memo key, a call is identified by the function object and its arguments
 public class Cache {
 
-    private String name;
-    private Value[] args;
-    private Value result;
+    private final Object function;
+    private final Value[] args;
+    private final int hash;
 
-    public Cache(String name, Value[] args, Value result) {
-        this.name = name;
+    public Cache(Object function, Value[] args) {
+        this.function = function;
         this.args = args;
-        this.result = result;
+
+        int hash = System.identityHashCode(function);
+        for (Value arg : args)
+            hash = 31 * hash + arg.hashCode();
+        this.hash = hash;
     }
 
+    @Override
     public boolean equals(Object o) {
-        if (o instanceof Cache) {
-            Cache cache = (Cache) o;
-            if (!cache.name.equals(name)) return false;
-            if (cache.args.length != args.length) return false;
-            for (int i = 0; i < args.length; i++) {
-                if (!cache.args[i].equals(args[i])) return false;
-            }
+        if (this == o)
             return true;
-        }
-        return false;
-    }
-
-    public boolean equals(String name, Value[] args) {
-        if (!this.name.equals(name)) return false;
-        if (this.args.length != args.length) return false;
-        for (int index = 0; index < args.length; index++) {
-            if (!this.args[index].equals(args[index])) return false;
-        }
-        return true;
-    }
-
-    public Value getValue() {
-        return result;
-    }
-
-    public void store(Value result) {
-        this.result = result;
+        if (!(o instanceof Cache cache))
+            return false;
+        return cache.hash == hash && cache.function == function && Arrays.equals(cache.args, args);
     }
 
-    public String getName() {
-        return name;
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
-    public void setName(String name) {
-        this.name = name;
+    public Object getFunction() {
+        return function;
     }
 
     public Value[] getArgs() {
         return args;
     }
-
-    public void setArgs(Value[] args) {
-        this.args = args;
-    }
-
-    public Value getResult() {
-        return result;
-    }
-
-    public void setResult(Value result) {
-        this.result = result;
-    }
 }
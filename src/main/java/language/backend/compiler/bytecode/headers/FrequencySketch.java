@@ -0,0 +1,53 @@
+package language.backend.compiler.bytecode.headers;
+
+// count-min sketch used by TinyLFU admission, counters saturate at 15 and are halved once
+// enough increments were seen so old popularity fades out
+public class FrequencySketch {
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xb3ec8c29, 0x1b873593, 0xcc9e2d51};
+
+    private final byte[] counters;
+    private final int mask;
+    private final int resetAt;
+    private int additions;
+
+    public FrequencySketch(int capacity) {
+        int width = Integer.highestOneBit(Math.max(16, capacity) - 1) << 1;
+        this.counters = new byte[width * DEPTH];
+        this.mask = width - 1;
+        this.resetAt = Math.max(16, capacity) * 10;
+    }
+
+    public int frequency(int hash) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++)
+            frequency = Math.min(frequency, counters[index(hash, row)]);
+        return frequency;
+    }
+
+    public void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (counters[index] < MAX_COUNT) {
+                counters[index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions == resetAt)
+            reset();
+    }
+
+    private void reset() {
+        for (int i = 0; i < counters.length; i++)
+            counters[i] >>= 1;
+        additions /= 2;
+    }
+
+    private int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) % DEPTH];
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+}
@@ -1,52 +1,223 @@
 package language.backend.compiler.bytecode.headers;
 
 import language.backend.compiler.bytecode.values.Value;
+import language.backend.compiler.bytecode.values.bytecode.ByteCode;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Stack;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
+// results of #optimize functions, one bounded table per function split into independently locked stripes
+// defaults can be changed with -Dlang.memo.size / -Dlang.memo.policy, or per module through the header:
+//   #optimize lru;          eviction policy, lru or tinylfu
+//   #optimize 4096;         entries per function
+//   #optimize fib 100000;   entries for one function
 public class MemoCache {
-    private List<Cache> caches;
-    private Stack<Cache> stack;
+    public static final int DEFAULT_SIZE = Math.max(1, Integer.getInteger("lang.memo.size", 1 << 16));
+    public static final String DEFAULT_POLICY = System.getProperty("lang.memo.policy", "lru");
 
-    public MemoCache() {
-        this.caches = new ArrayList<>();
-        this.stack = new Stack<>();
-    }
+    private static final int STRIPES = 16;
+    private static final int MIN_STRIPE_SIZE = 64;
+
+    private final Map<Object, Table> tables = new ConcurrentHashMap<>();
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+    private volatile int size = DEFAULT_SIZE;
+    private volatile String policy = DEFAULT_POLICY;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
-    public void stackCache(String name, Value[] args) {
-        Cache cache = new Cache(name, args, null);
-        caches.add(cache);
-        stack.add(cache);
+    public Value get(Cache key) {
+        Value value = table(key).stripe(key).get(key);
+        if (value != null)
+            hits.increment();
+        else
+            misses.increment();
+        return value;
     }
 
-    public void storeCache(Value result) {
-        stack.pop().store(result);
+    public void store(Cache key, Value result) {
+        table(key).stripe(key).put(key, result);
     }
 
-    public Value get(String key, Value[] args) {
-        for (Cache cache : caches) {
-            if (cache.equals(key, args)) {
-                return cache.getValue();
+    // false if the header arguments do not parse, the ones before the bad argument are still applied
+    public boolean configure(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("lru") || arg.equals("tinylfu")) {
+                policy = arg;
+            } else if (size(arg) > 0) {
+                size = size(arg);
+            } else if (i + 1 < args.length && size(args[i + 1]) > 0) {
+                limit(arg, size(args[++i]));
+            } else {
+                return false;
             }
         }
-        return null;
+        return true;
+    }
+
+    // headers run on every call of the function that holds them, only a changed limit drops the table
+    public void limit(String function, int size) {
+        Integer previous = limits.put(function, size);
+        if (previous == null || previous != size)
+            tables.values().removeIf(table -> table.name.equals(function));
+    }
+
+    // numbers reach the header as constant strings, "50" or "50.0", anything else is -1
+    private static int size(String arg) {
+        try {
+            double size = Double.parseDouble(arg);
+            return size >= 1 && size <= Integer.MAX_VALUE && size == Math.rint(size) ? (int) size : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Table table(Cache key) {
+        Table table = tables.get(key.getFunction());
+        if (table == null)
+            table = tables.computeIfAbsent(key.getFunction(), this::createTable);
+        return table;
+    }
+
+    private Table createTable(Object function) {
+        String name = function.toString();
+        if (function instanceof ByteCode byteCode)
+            name = byteCode.name;
+        return new Table(name, limits.getOrDefault(name, size), policy);
     }
 
-    public List<Cache> getCaches() {
-        return caches;
+    public long hits() {
+        return hits.sum();
     }
 
-    public void setCaches(List<Cache> caches) {
-        this.caches = caches;
+    public long misses() {
+        return misses.sum();
     }
 
-    public Stack<Cache> getStack() {
-        return stack;
+    public long evictions() {
+        return evictions.sum();
     }
 
-    public void setStack(Stack<Cache> stack) {
-        this.stack = stack;
+    public String stats() {
+        return "hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions();
+    }
+
+    private class Table {
+        private final String name;
+        private final Stripe[] stripes;
+
+        Table(String name, int size, String policy) {
+            this.name = name;
+
+            int count = Math.max(1, Math.min(STRIPES, size / MIN_STRIPE_SIZE));
+            this.stripes = new Stripe[count];
+            for (int i = 0; i < count; i++) {
+                int stripeSize = size / count + (i < size % count ? 1 : 0);
+                stripes[i] = policy.equals("lru") ? new LruStripe(stripeSize) : new TinyLfuStripe(stripeSize);
+            }
+        }
+
+        Stripe stripe(Cache key) {
+            int hash = key.hashCode();
+            hash ^= hash >>> 16;
+            return stripes[(hash & 0x7fffffff) % stripes.length];
+        }
+    }
+
+    private abstract static class Stripe {
+        abstract Value get(Cache key);
+
+        abstract void put(Cache key, Value value);
+    }
+
+    private class LruStripe extends Stripe {
+        private final int size;
+        private final LinkedHashMap<Cache, Value> entries;
+
+        LruStripe(int size) {
+            this.size = size;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        @Override
+        synchronized Value get(Cache key) {
+            return entries.get(key);
+        }
+
+        @Override
+        synchronized void put(Cache key, Value value) {
+            entries.put(key, value);
+            if (entries.size() > size) {
+                Iterator<Cache> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // W-TinyLFU: new entries land in a small lru window, when it overflows its eldest entry only
+    // replaces the eldest main entry if the sketch has seen it more often
+    private class TinyLfuStripe extends Stripe {
+        private final int windowSize;
+        private final int mainSize;
+        private final LinkedHashMap<Cache, Value> window;
+        private final LinkedHashMap<Cache, Value> main;
+        private final FrequencySketch sketch;
+
+        TinyLfuStripe(int size) {
+            this.windowSize = Math.max(1, size / 100);
+            this.mainSize = size - windowSize;
+            this.window = new LinkedHashMap<>(16, 0.75f, true);
+            this.main = new LinkedHashMap<>(16, 0.75f, true);
+            this.sketch = new FrequencySketch(size);
+        }
+
+        @Override
+        synchronized Value get(Cache key) {
+            sketch.increment(key.hashCode());
+            Value value = window.get(key);
+            return value != null ? value : main.get(key);
+        }
+
+        @Override
+        synchronized void put(Cache key, Value value) {
+            if (main.containsKey(key)) {
+                main.put(key, value);
+                return;
+            }
+            window.put(key, value);
+            if (window.size() <= windowSize)
+                return;
+
+            Map.Entry<Cache, Value> candidate = removeEldest(window);
+            if (main.size() < mainSize) {
+                main.put(candidate.getKey(), candidate.getValue());
+                return;
+            } else if (main.isEmpty()) {
+                evictions.increment();
+                return;
+            }
+
+            Cache victim = main.keySet().iterator().next();
+            if (sketch.frequency(candidate.getKey().hashCode()) > sketch.frequency(victim.hashCode())) {
+                main.remove(victim);
+                main.put(candidate.getKey(), candidate.getValue());
+            }
+            evictions.increment();
+        }
+
+        private Map.Entry<Cache, Value> removeEldest(LinkedHashMap<Cache, Value> map) {
+            Iterator<Map.Entry<Cache, Value>> eldest = map.entrySet().iterator();
+            Map.Entry<Cache, Value> entry = eldest.next();
+            Map.Entry<Cache, Value> removed = Map.entry(entry.getKey(), entry.getValue());
+            eldest.remove();
+            return removed;
+        }
     }
 }
@@ -0,0 +1,207 @@
+package language.backend.compiler.bytecode.values;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+// list of numbers kept unboxed, elements are only wrapped in a Value when read
+// integers live in a long[] and read back exact, fractions in a double[], a list holds one kind or the other
+// Value moves it to an ArrayList before anything else is stored, an empty list takes the kind of its first element
+public class NumberList extends AbstractList<Value> implements RandomAccess {
+    private static final int MIN_CAPACITY = 8;
+
+    // exactly one of the two is in use
+    private long[] integers;
+    private double[] numbers;
+    private int size;
+
+    public NumberList() {
+        this(MIN_CAPACITY);
+    }
+
+    public NumberList(int capacity) {
+        this.integers = new long[Math.max(MIN_CAPACITY, capacity)];
+    }
+
+    public NumberList(RangeList range) {
+        this.numbers = new double[Math.max(MIN_CAPACITY, range.size())];
+        for (int i = 0; i < range.size(); i++)
+            numbers[i] = range.number(i);
+        size = range.size();
+    }
+
+    private NumberList(long[] integers, double[] numbers, int size) {
+        this.integers = integers;
+        this.numbers = numbers;
+        this.size = size;
+    }
+
+    // true while the elements seen so far are all integers or all fractions
+    public static boolean sameKind(Value first, Value value) {
+        return value.isNumber() && value.integral == first.integral;
+    }
+
+    public boolean integral() {
+        return integers != null;
+    }
+
+    public boolean accepts(Value value) {
+        return value.isNumber() && (size == 0 || value.integral == integral());
+    }
+
+    public boolean acceptsAll(Collection<Value> values) {
+        if (values instanceof NumberList other)
+            return size == 0 || other.size == 0 || other.integral() == integral();
+        if (values instanceof RangeList)
+            return size == 0 || !integral();
+        int kind = size == 0 ? -1 : integral() ? 1 : 0;
+        for (Value value : values) {
+            if (!value.isNumber())
+                return false;
+            int next = value.integral ? 1 : 0;
+            if (kind != -1 && kind != next)
+                return false;
+            kind = next;
+        }
+        return true;
+    }
+
+    public NumberList copy() {
+        int capacity = Math.max(MIN_CAPACITY, size);
+        return integral()
+                ? new NumberList(Arrays.copyOf(integers, capacity), null, size)
+                : new NumberList(null, Arrays.copyOf(numbers, capacity), size);
+    }
+
+    private void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+
+    // an empty list switches storage to the kind of what is stored next
+    private void prepare(Value value) {
+        if (!accepts(value))
+            throw new IllegalArgumentException("numeric list cannot hold " + value);
+        if (size == 0 && value.integral != integral()) {
+            int capacity = integral() ? integers.length : numbers.length;
+            integers = value.integral ? new long[capacity] : null;
+            numbers = value.integral ? null : new double[capacity];
+        }
+    }
+
+    private void grow(int needed) {
+        if (integral()) {
+            if (needed > integers.length)
+                integers = Arrays.copyOf(integers, Math.max(needed, integers.length + (integers.length >> 1)));
+        } else if (needed > numbers.length) {
+            numbers = Arrays.copyOf(numbers, Math.max(needed, numbers.length + (numbers.length >> 1)));
+        }
+    }
+
+    private void store(int index, Value value) {
+        if (integral())
+            integers[index] = value.integer;
+        else
+            numbers[index] = value.number;
+    }
+
+    @Override
+    public Value get(int index) {
+        checkIndex(index, size);
+        return integral() ? Value.integer(integers[index]) : Value.of(numbers[index]);
+    }
+
+    @Override
+    public Value set(int index, Value value) {
+        Value previous = get(index);
+        prepare(value);
+        store(index, value);
+        return previous;
+    }
+
+    @Override
+    public boolean add(Value value) {
+        prepare(value);
+        grow(size + 1);
+        store(size++, value);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Value value) {
+        checkIndex(index, size + 1);
+        prepare(value);
+        grow(size + 1);
+        if (integral())
+            System.arraycopy(integers, index, integers, index + 1, size - index);
+        else
+            System.arraycopy(numbers, index, numbers, index + 1, size - index);
+        store(index, value);
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Value> values) {
+        int count = values.size();
+        if (count == 0)
+            return false;
+        if (values instanceof NumberList other) {
+            prepare(other.get(0));
+            grow(size + count);
+            if (integral())
+                System.arraycopy(other.integers, 0, integers, size, count);
+            else
+                System.arraycopy(other.numbers, 0, numbers, size, count);
+            size += count;
+            modCount++;
+        } else {
+            for (Value value : values.toArray(new Value[0]))
+                add(value);
+        }
+        return true;
+    }
+
+    @Override
+    public Value remove(int index) {
+        Value previous = get(index);
+        if (integral())
+            System.arraycopy(integers, index + 1, integers, index, size - index - 1);
+        else
+            System.arraycopy(numbers, index + 1, numbers, index, size - index - 1);
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    // same rule as Value.equals, integers compare exactly and anything else by its double
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof Value value) || !value.isNumber())
+            return -1;
+        for (int i = 0; i < size; i++) {
+            if (integral() && value.integral ? integers[i] == value.integer
+                    : (integral() ? (double) integers[i] : numbers[i]) == value.number)
+                return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -1,17 +1,20 @@
 package language.backend.compiler.bytecode.values;
 
-import java.util.Map;
-
+// fields are in source order, each one is either compared with expected[i] or, where that is null, bound to bindings[i]
 public class Pattern {
     public Value value;
-    public Map<String, String> matches;
-    public String[] keys;
-    public Map<String, Value> cases;
+    public String[] fields;
+    public Value[] expected;
+    public String[] bindings;
+    public int bindingCount;
 
-    public Pattern(Value value, Map<String, Value> cases, String[] keys, Map<String, String> matches) {
+    public Pattern(Value value, String[] fields, Value[] expected, String[] bindings) {
         this.value = value;
-        this.cases = cases;
-        this.matches = matches;
-        this.keys = keys;
+        this.fields = fields;
+        this.expected = expected;
+        this.bindings = bindings;
+        for (Value val : expected)
+            if (val == null)
+                bindingCount++;
     }
 }
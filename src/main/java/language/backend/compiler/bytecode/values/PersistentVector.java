@@ -0,0 +1,180 @@
+package language.backend.compiler.bytecode.values;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// immutable list from the +, * and / operators, a 32-way trie of full leaves plus a tail of up to 32 elements
+// a new vector copies only the tail and the path to the leaf it touches, everything else is shared
+// so list = list + [x] costs O(log32 n) per step, Value swaps it for an ArrayList the first time it is mutated
+public final class PersistentVector extends AbstractList<Value> implements RandomAccess {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    public static final PersistentVector EMPTY = new PersistentVector(0, BITS, new Object[WIDTH], new Object[0]);
+
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    private int hash;
+
+    private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    public static PersistentVector of(List<Value> list) {
+        if (list instanceof PersistentVector vector)
+            return vector;
+        return EMPTY.appendAll(list);
+    }
+
+    // index of the first element kept in the tail
+    private static int tailOffset(int size) {
+        return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+    }
+
+    private Object[] leafFor(int index) {
+        if (index >= tailOffset(size))
+            return tail;
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(index >>> level) & MASK];
+        return node;
+    }
+
+    @Override
+    public Value get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return (Value) leafFor(index)[index & MASK];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // same result as any other list with these elements, cached since the vector never changes
+    // unless an element is a list or map, those can still be mutated in place
+    @Override
+    public int hashCode() {
+        int hash = this.hash;
+        if (hash != 0 || size == 0)
+            return hash;
+        hash = 1;
+        boolean cacheable = true;
+        for (int i = 0; i < size; i += WIDTH) {
+            Object[] leaf = leafFor(i);
+            for (int j = 0; j < WIDTH && i + j < size; j++) {
+                Value element = (Value) leaf[j];
+                hash = 31 * hash + element.hashCode();
+                cacheable &= !element.isList() && !element.isMap();
+            }
+        }
+        if (cacheable)
+            this.hash = hash;
+        return hash;
+    }
+
+    public PersistentVector append(Value value) {
+        return append(new Object[] { value }, 0, 1);
+    }
+
+    public PersistentVector appendAll(List<Value> values) {
+        if (values.isEmpty())
+            return this;
+        Object[] elements = values.toArray();
+        return append(elements, 0, elements.length);
+    }
+
+    // fills the tail a chunk at a time and pushes it into the trie whenever it is full
+    private PersistentVector append(Object[] elements, int from, int to) {
+        int size = this.size;
+        int shift = this.shift;
+        Object[] root = this.root;
+        Object[] tail = this.tail;
+
+        while (from < to) {
+            if (tail.length == WIDTH) {
+                // the root is full once the leaves it holds reach 32^(shift/5 + 1)
+                if ((size >>> BITS) > (1 << shift)) {
+                    Object[] grown = new Object[WIDTH];
+                    grown[0] = root;
+                    grown[1] = path(shift, tail);
+                    root = grown;
+                    shift += BITS;
+                } else {
+                    root = pushTail(size, shift, root, tail);
+                }
+                tail = new Object[0];
+            }
+
+            int count = Math.min(WIDTH - tail.length, to - from);
+            Object[] grown = Arrays.copyOf(tail, tail.length + count);
+            System.arraycopy(elements, from, grown, tail.length, count);
+            tail = grown;
+            size += count;
+            from += count;
+        }
+
+        return new PersistentVector(size, shift, root, tail);
+    }
+
+    private static Object[] pushTail(int size, int level, Object[] parent, Object[] leaf) {
+        int index = ((size - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS) {
+            node[index] = leaf;
+        } else {
+            Object[] child = (Object[]) parent[index];
+            node[index] = child != null
+                    ? pushTail(size, level - BITS, child, leaf)
+                    : path(level - BITS, leaf);
+        }
+        return node;
+    }
+
+    private static Object[] path(int level, Object[] leaf) {
+        if (level == 0)
+            return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = path(level - BITS, leaf);
+        return node;
+    }
+
+    public PersistentVector repeat(int times) {
+        if (times <= 0)
+            return EMPTY;
+        Object[] elements = toArray();
+        PersistentVector result = this;
+        for (int i = 1; i < times; i++)
+            result = result.append(elements, 0, elements.length);
+        return result;
+    }
+
+    // drops the first element equal to value, the vector itself is returned when there is none
+    public PersistentVector without(Value value) {
+        int index = indexOf(value);
+        if (index == -1)
+            return this;
+        Object[] elements = toArray();
+        return EMPTY.append(elements, 0, index).append(elements, index + 1, elements.length);
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] elements = new Object[size];
+        int offset = tailOffset(size);
+        for (int i = 0; i < offset; i += WIDTH)
+            System.arraycopy(leafFor(i), 0, elements, i, WIDTH);
+        System.arraycopy(tail, 0, elements, offset, size - offset);
+        return elements;
+    }
+}
@@ -0,0 +1,83 @@
+package language.backend.compiler.bytecode.values;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+// read-only arithmetic sequence, element i is a*x*x + b*x + c with x = start + i*step
+// Value swaps it for an ArrayList the first time the list is mutated
+public class RangeList extends AbstractList<Value> implements RandomAccess {
+    private final double start;
+    private final double step;
+    private final int size;
+
+    private final double a;
+    private final double b;
+    private final double c;
+
+    private int hash;
+
+    private RangeList(double start, double step, int size, double a, double b, double c) {
+        this.start = start;
+        this.step = step;
+        this.size = size;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+    }
+
+    public static RangeList range(double start, double end, double step) {
+        return quadratic(start, end, step, 0, 1, 0);
+    }
+
+    public static RangeList linear(double start, double end, double step, double m, double b) {
+        return quadratic(start, end, step, 0, m, b);
+    }
+
+    public static RangeList quadratic(double start, double end, double step, double a, double b, double c) {
+        return new RangeList(start, step, count(start, end, step), a, b, c);
+    }
+
+    private static int count(double start, double end, double step) {
+        if (!(step > 0) || !(end > start))
+            return 0;
+        double count = Math.ceil((end - start) / step);
+        if (count > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("range has too many elements");
+        return (int) count;
+    }
+
+    public double number(int index) {
+        double x = start + index * step;
+        return a * x * x + b * x + c;
+    }
+
+    @Override
+    public Value get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return Value.of(number(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // same result as any other list with these elements, cached since the range never changes
+    @Override
+    public int hashCode() {
+        int hash = this.hash;
+        if (hash == 0 && size > 0) {
+            hash = super.hashCode();
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    @Override
+    public RangeList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", Size: " + size);
+        return new RangeList(start + fromIndex * step, step, toIndex - fromIndex, a, b, c);
+    }
+}
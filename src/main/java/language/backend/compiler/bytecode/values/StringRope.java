@@ -0,0 +1,65 @@
+package language.backend.compiler.bytecode.values;
+
+// result of a string concatenation, every rope cut from the same buffer sees a prefix of it
+// only the rope covering the whole buffer may append in place, so s = s + x in a loop is amortised O(1)
+// and an older s keeps its shorter view, reads flatten once into a String
+public final class StringRope implements CharSequence {
+    // shorter results are plain strings, a buffer would cost more than it saves
+    static final int MIN_LENGTH = 64;
+
+    private final StringBuilder buffer;
+    private final int length;
+    private String flat;
+
+    private StringRope(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    public static CharSequence concat(CharSequence left, CharSequence right) {
+        // a rope on the right may share the buffer that is about to grow
+        String tail = right.toString();
+        int length = left.length() + right.length();
+        if (left instanceof StringRope rope) {
+            synchronized (rope.buffer) {
+                if (rope.length == rope.buffer.length()) {
+                    rope.buffer.append(tail);
+                    return new StringRope(rope.buffer, rope.buffer.length());
+                }
+            }
+        } else if (length < MIN_LENGTH) {
+            return left.toString().concat(tail);
+        }
+
+        StringBuilder buffer = new StringBuilder(Math.max(MIN_LENGTH, length * 2));
+        buffer.append(left).append(tail);
+        return new StringRope(buffer, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String flat = this.flat;
+        if (flat == null) {
+            synchronized (buffer) {
+                flat = buffer.substring(0, length);
+            }
+            this.flat = flat;
+        }
+        return flat;
+    }
+}
@@ -0,0 +1,40 @@
+package language.backend.compiler.bytecode.values;
+
+// zero-copy window into a string, Value only turns it into a String once a String is asked for
+public final class StringView implements CharSequence {
+    private final String base;
+    private final int offset;
+    private final int length;
+
+    public StringView(String base, int start, int end) {
+        if (start < 0 || end > base.length() || start > end)
+            throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + base.length());
+        this.base = base;
+        this.offset = start;
+        this.length = end - start;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length)
+            throw new StringIndexOutOfBoundsException("index " + index + ", length " + length);
+        return base.charAt(offset + index);
+    }
+
+    @Override
+    public StringView subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + length);
+        return new StringView(base, offset + start, offset + end);
+    }
+
+    @Override
+    public String toString() {
+        return base.substring(offset, offset + length);
+    }
+}
@@ -17,320 +17,578 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class Value {
+    protected final int tag;
     protected double number;
-    protected String string;
-    protected boolean bool;
-    protected List<Value> list;
-    protected Map<Value, Value> map;
-    protected ByteCode func;
-    protected Native nativeFunc;
-    protected Var var;
-    protected Closure closure;
-    protected LanguageClass languageClass;
-    protected Instance instance;
-    protected BoundMethod boundMethod;
-    protected Namespace namespace;
-    protected LanguageEnum enumParent;
-    protected LanguageEnumChild enumChild;
-    protected Spread spread;
-    protected Value ref;
-    protected byte[] bytes;
-    protected Result res;
-    protected String patternBinding;
-    protected Pattern pattern;
-    protected Value[] tuple;
-
-    public boolean isNull = false;
-    public boolean isNumber = false;
-    public boolean isString = false;
-    public boolean isList = false;
-    public boolean isMap = false;
-    public boolean isBool = false;
-    public boolean isFunc = false;
-    public boolean isNativeFunc = false;
-    public boolean isVar = false;
-    public boolean isClosure = false;
-    public boolean isClass = false;
-    public boolean isInstance = false;
-    public boolean isBoundMethod = false;
-    public boolean isNamespace = false;
-    public boolean isEnumParent = false;
-    public boolean isEnumChild = false;
-    public boolean isSpread = false;
-    public boolean isRef = false;
-    public boolean isBytes = false;
-    public boolean isRes = false;
-    public boolean isPatternBinding = false;
-    public boolean isPattern = false;
-    public boolean isTuple = false;
+    // whole numbers from integer literals and integer arithmetic keep their exact 64-bit value here,
+    // number still holds it rounded to a double so every other path reads them like any number
+    protected long integer;
+    protected boolean integral;
+    protected Object payload;
+    // set on the shared instances handed out by ValueCache
+    protected boolean frozen;
+
+    private Value(int tag, Object payload) {
+        this.tag = tag;
+        this.payload = payload;
+    }
+
+    private Value(int tag, double number) {
+        this.tag = tag;
+        this.number = number;
+    }
 
     public Value() {
-        this.isNull = true;
+        this(ValueTag.NULL, null);
     }
 
     public Value(Value... values) {
-        this.tuple = values;
-        this.isTuple = true;
+        this(ValueTag.TUPLE, values);
     }
 
     public Value(Pattern pattern) {
-        this.pattern = pattern;
-        this.isPattern = true;
+        this(ValueTag.PATTERN, pattern);
     }
 
     public Value(Result res) {
-        this.res = res;
-        this.isRes = true;
+        this(ValueTag.RES, res);
     }
 
     public Value(byte[] bytes) {
-        this.bytes = bytes;
-        this.isBytes = true;
+        this(ValueTag.BYTES, bytes);
     }
 
     public Value(Value value) {
-        this.ref = value;
-        this.isRef = true;
+        this(ValueTag.REF, value);
     }
 
     public static Value patternBinding(String patternBinding) {
-        Value value = new Value();
-        value.patternBinding = patternBinding;
-        value.isPatternBinding = true;
-        value.isNull = false;
-        return value;
+        return new Value(ValueTag.PATTERN_BINDING, patternBinding);
     }
 
     public Value(Spread spread) {
-        this.spread = spread;
-        this.isSpread = true;
+        this(ValueTag.SPREAD, spread);
     }
 
     public Value(LanguageEnum enumParent) {
-        this.enumParent = enumParent;
-        this.isEnumParent = true;
+        this(ValueTag.ENUM_PARENT, enumParent);
     }
 
     public Value(LanguageEnumChild enumChild) {
-        this.enumChild = enumChild;
-        this.isEnumChild = true;
+        this(ValueTag.ENUM_CHILD, enumChild);
     }
 
     public Value(Namespace namespace) {
-        this.namespace = namespace;
-        this.isNamespace = true;
+        this(ValueTag.NAMESPACE, namespace);
     }
 
     public Value(BoundMethod boundMethod) {
-        this.boundMethod = boundMethod;
-        this.isBoundMethod = true;
+        this(ValueTag.BOUND_METHOD, boundMethod);
     }
 
     public Value(Closure closure) {
-        this.closure = closure;
-        this.isClosure = true;
+        this(ValueTag.CLOSURE, closure);
     }
 
     public Value(LanguageClass languageClass) {
-        this.languageClass = languageClass;
-        this.isClass = true;
+        this(ValueTag.CLASS, languageClass);
     }
 
     public Value(Instance instance) {
-        this.instance = instance;
-        this.isInstance = true;
+        this(ValueTag.INSTANCE, instance);
     }
 
     public Value(Var var) {
-        this.var = var;
-        this.isVar = true;
+        this(ValueTag.VAR, var);
     }
 
     public Value(double number) {
-        this.number = number;
-        this.isNumber = true;
+        this(ValueTag.NUMBER, number);
     }
 
     public Value(String string) {
-        this.string = string;
-        this.isString = true;
+        this(ValueTag.STRING, string);
+    }
+
+    public Value(StringView string) {
+        this(ValueTag.STRING, string);
+    }
+
+    private Value(CharSequence string) {
+        this(ValueTag.STRING, string);
     }
 
     public Value(boolean bool) {
-        this.bool = bool;
-        this.isBool = true;
+        this(ValueTag.BOOL, bool ? 1.0 : 0.0);
     }
 
     public Value(List<Value> list) {
-        this.list = list;
-        this.isList = true;
+        this(ValueTag.LIST, list);
     }
 
     public Value(Map<Value, Value> map) {
-        this.map = map;
-        this.isMap = true;
+        this(ValueTag.MAP, map);
     }
 
     public Value(ByteCode func) {
-        this.func = func;
-        this.isFunc = true;
+        this(ValueTag.FUNC, func);
     }
 
     public Value(Native nativeFunc) {
-        this.nativeFunc = nativeFunc;
-        this.isNativeFunc = true;
+        this(ValueTag.NATIVE_FUNC, nativeFunc);
     }
 
-    public Double asNumber() {
-        if (isNumber) {
-            return number;
-        } else if (isString) {
-            return (double) string.length();
-        } else if (isBool) {
-            return bool ? 1.0 : 0.0;
-        } else if (isList) {
-            return (double) list.size();
-        } else if (isMap) {
-            return (double) map.size();
-        } else if (isInstance) {
-            return instance.asNumber();
-        } else if (isRef) {
-            return ref.asNumber();
-        } else if (isRes) {
-            return res.isError() ? 0.0 : 1.0;
+    public Value(ValueIterator iterator) {
+        this(ValueTag.ITERATOR, iterator);
+    }
+
+    public static Value of(double number) {
+        return ValueCache.of(number);
+    }
+
+    public static Value of(boolean bool) {
+        return ValueCache.of(bool);
+    }
+
+    public static Value integer(long integer) {
+        return ValueCache.integer(integer);
+    }
+
+    // + - * on two integers stay exact while the result fits a long, past that they give the double
+    // the same operation gives on doubles, only arithmetic typed l64 or i64 wraps around instead
+    public static Value add(long x, long y) {
+        try {
+            return integer(Math.addExact(x, y));
+        } catch (ArithmeticException e) {
+            return of((double) x + (double) y);
+        }
+    }
+
+    public static Value subtract(long x, long y) {
+        try {
+            return integer(Math.subtractExact(x, y));
+        } catch (ArithmeticException e) {
+            return of((double) x - (double) y);
+        }
+    }
+
+    public static Value multiply(long x, long y) {
+        try {
+            return integer(Math.multiplyExact(x, y));
+        } catch (ArithmeticException e) {
+            return of((double) x * (double) y);
+        }
+    }
+
+    public static Value negate(long x) {
+        return x == Long.MIN_VALUE ? of(-(double) x) : integer(-x);
+    }
+
+    static Value newInteger(long integer) {
+        Value value = new Value(ValueTag.NUMBER, (double) integer);
+        value.integer = integer;
+        value.integral = true;
+        return value;
+    }
+
+    public static Value nullValue() {
+        return ValueCache.NULL;
+    }
+
+    Value freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    private void checkMutable() {
+        if (frozen)
+            throw new IllegalStateException("Cannot mutate shared value " + this);
+    }
+
+    public int tag() {
+        return tag;
+    }
+
+    public boolean isNull() {
+        return tag == ValueTag.NULL;
+    }
+
+    public boolean isNumber() {
+        return tag == ValueTag.NUMBER;
+    }
+
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    // integers past 2^53 have no exact double, those are kept out of double based storage
+    boolean fitsDouble() {
+        return !integral || Math.abs(integer) <= 1L << 53;
+    }
+
+    boolean sameNumber(Value other) {
+        return integral && other.integral ? integer == other.integer : number == other.number;
+    }
+
+    // as a map key NaN has to find itself again, unlike NaN == NaN in the language
+    boolean sameKey(Value other) {
+        return sameNumber(other) || Double.isNaN(number) && Double.isNaN(other.number);
+    }
+
+    public boolean isString() {
+        return tag == ValueTag.STRING;
+    }
+
+    public boolean isBool() {
+        return tag == ValueTag.BOOL;
+    }
+
+    public boolean isList() {
+        return tag == ValueTag.LIST;
+    }
+
+    public boolean isMap() {
+        return tag == ValueTag.MAP;
+    }
+
+    public boolean isFunc() {
+        return tag == ValueTag.FUNC;
+    }
+
+    public boolean isNativeFunc() {
+        return tag == ValueTag.NATIVE_FUNC;
+    }
+
+    public boolean isVar() {
+        return tag == ValueTag.VAR;
+    }
+
+    public boolean isClosure() {
+        return tag == ValueTag.CLOSURE;
+    }
+
+    public boolean isClass() {
+        return tag == ValueTag.CLASS;
+    }
+
+    public boolean isInstance() {
+        return tag == ValueTag.INSTANCE;
+    }
+
+    public boolean isBoundMethod() {
+        return tag == ValueTag.BOUND_METHOD;
+    }
+
+    public boolean isNamespace() {
+        return tag == ValueTag.NAMESPACE;
+    }
+
+    public boolean isEnumParent() {
+        return tag == ValueTag.ENUM_PARENT;
+    }
+
+    public boolean isEnumChild() {
+        return tag == ValueTag.ENUM_CHILD;
+    }
+
+    public boolean isSpread() {
+        return tag == ValueTag.SPREAD;
+    }
+
+    public boolean isRef() {
+        return tag == ValueTag.REF;
+    }
+
+    public boolean isBytes() {
+        return tag == ValueTag.BYTES;
+    }
+
+    public boolean isRes() {
+        return tag == ValueTag.RES;
+    }
+
+    public boolean isPatternBinding() {
+        return tag == ValueTag.PATTERN_BINDING;
+    }
+
+    public boolean isPattern() {
+        return tag == ValueTag.PATTERN;
+    }
+
+    public boolean isTuple() {
+        return tag == ValueTag.TUPLE;
+    }
+
+    public boolean isIterator() {
+        return tag == ValueTag.ITERATOR;
+    }
+
+    // Raw payload views, only valid once the tag has been checked
+    @SuppressWarnings("unchecked")
+    private List<Value> list() {
+        return (List<Value>) payload;
+    }
+
+    // lazy ranges and persistent vectors are materialised the first time they are written to
+    private List<Value> mutableList() {
+        if (payload instanceof RangeList range)
+            payload = new NumberList(range);
+        else if (payload instanceof PersistentVector)
+            payload = new ArrayList<>(list());
+        return list();
+    }
+
+    // numeric lists move to boxed storage before anything but a number of their kind goes in
+    private List<Value> mutableList(Value incoming) {
+        List<Value> list = mutableList();
+        if (list instanceof NumberList numbers && !numbers.accepts(incoming))
+            payload = list = new ArrayList<>(numbers);
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Value, Value> map() {
+        return (Map<Value, Value>) payload;
+    }
+
+    // string payloads are a String, a StringView or a StringRope, both are flattened the first time a String is needed
+    String string() {
+        if (payload instanceof String string)
+            return string;
+        // a rope keeps its flat copy itself, the value holds on to it so it can still be appended to
+        if (payload instanceof StringRope rope)
+            return rope.toString();
+        String string = payload.toString();
+        payload = string;
+        return string;
+    }
+
+    // ropes are flattened before they are read char by char
+    CharSequence chars() {
+        if (payload instanceof StringRope rope)
+            return rope.toString();
+        return (CharSequence) payload;
+    }
+
+    // string concatenation, the left side stays unflattened so repeated appends reuse its buffer
+    public Value concat(Value other) {
+        CharSequence left = isString() ? (CharSequence) payload : asString();
+        CharSequence right = other.isString() ? (CharSequence) other.payload : other.asString();
+        return new Value(StringRope.concat(left, right));
+    }
+
+    // strings remember in number whether they hold surrogate pairs, 0 not checked yet, 1 none, -1 some,
+    // without them a code point index is a plain char index
+    private boolean isBasic() {
+        if (number == 0) {
+            CharSequence chars = chars();
+            number = 1;
+            for (int i = 0; i < chars.length(); i++) {
+                if (Character.isSurrogate(chars.charAt(i))) {
+                    number = -1;
+                    break;
+                }
+            }
         }
-        return 0.0;
+        return number > 0;
+    }
+
+    private int offset(int index) {
+        return isBasic() ? index : Character.offsetByCodePoints(chars(), 0, index);
+    }
+
+    // code point length of a string
+    public int length() {
+        CharSequence chars = chars();
+        return isBasic() ? chars.length() : Character.codePointCount(chars, 0, chars.length());
+    }
+
+    // code point at index as a one character string
+    public Value charAt(int index) {
+        return ValueCache.character(Character.codePointAt(chars(), offset(index)));
+    }
+
+    // shares the characters with this string, start and end are code point indices
+    public StringView subSequence(int start, int end) {
+        CharSequence chars = chars();
+        int from = offset(start);
+        int to = isBasic() ? end : Character.offsetByCodePoints(chars, from, end - start);
+        if (chars instanceof StringView view)
+            return view.subSequence(from, to);
+        return new StringView((String) chars, from, to);
+    }
+
+    public Value substring(int start, int end) {
+        return new Value(subSequence(start, end));
+    }
+
+    private boolean bool() {
+        return number != 0.0;
+    }
+
+    private Value ref() {
+        return (Value) payload;
+    }
+
+    public Double asNumber() {
+        return switch (tag) {
+            case ValueTag.NUMBER, ValueTag.BOOL -> number;
+            case ValueTag.STRING -> (double) string().length();
+            case ValueTag.LIST -> (double) list().size();
+            case ValueTag.MAP -> (double) map().size();
+            case ValueTag.INSTANCE -> ((Instance) payload).asNumber();
+            case ValueTag.REF -> ref().asNumber();
+            case ValueTag.RES -> ((Result) payload).isError() ? 0.0 : 1.0;
+            default -> 0.0;
+        };
+    }
+
+    // the unboxed double of a value already known to be a number
+    public double asDouble() {
+        return number;
+    }
+
+    public long asLong() {
+        return integral ? integer : asNumber().longValue();
     }
 
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     public boolean asBool() {
-        if (isBool) {
-            return bool;
-        } else if (this.isNull) {
-            return false;
-        } else if (isNumber) {
-            return number != 0.0;
-        } else if (isString) {
-            return !string.isEmpty();
-        } else if (isList) {
-            return !list.isEmpty();
-        } else if (isMap) {
-            return !map.isEmpty();
-        } else if (isInstance) {
-            return instance.asBool();
-        } else if (isRef) {
-            return ref.asBool();
-        } else if (isRes) {
-            return !res.isError();
-        }
-        return false;
+        return switch (tag) {
+            case ValueTag.BOOL, ValueTag.NUMBER -> number != 0.0;
+            case ValueTag.STRING -> !string().isEmpty();
+            case ValueTag.LIST -> !list().isEmpty();
+            case ValueTag.MAP -> !map().isEmpty();
+            case ValueTag.INSTANCE -> ((Instance) payload).asBool();
+            case ValueTag.REF -> ref().asBool();
+            case ValueTag.RES -> !((Result) payload).isError();
+            default -> false;
+        };
     }
 
     @SuppressWarnings("DuplicatedCode")
     public String asString() {
-        if (isString) {
-            return string;
-        } else if (this.isNull) {
-            return "";
-        } else if (isNumber) {
-            if (number == Double.MAX_VALUE) {
-                return "Infinity";
-            } else if (number == Double.MIN_VALUE) {
-                return "-Infinity";
-            }
-
-            if (Math.floor(number) == number && number < Long.MAX_VALUE && number > Long.MIN_VALUE) {
-                return String.valueOf((long) number);
-            }
-            return String.valueOf(number);
-        } else if (isBool) {
-            return String.valueOf(bool);
-        } else if (isList) {
-            StringBuilder result = new StringBuilder("[");
-            list.forEach(k -> {
-                if (k.isString) {
-                    result.append('"').append(k.string).append('"');
-                } else {
-                    result.append(k.asString());
+        switch (tag) {
+            case ValueTag.STRING -> {
+                return string();
+            }
+            case ValueTag.NULL -> {
+                return "";
+            }
+            case ValueTag.NUMBER -> {
+                if (integral) {
+                    return String.valueOf(integer);
                 }
-                result.append(", ");
-            });
-            if (result.length() > 1) {
-                result.setLength(result.length() - 2);
-            }
-            result.append("]");
-            return result.toString();
-        } else if (isMap) {
-            StringBuilder result = new StringBuilder("{");
-            map.forEach((k, v) -> {
-                if (k.isString) {
-                    result.append('"').append(k.string).append('"');
-                } else {
-                    result.append(k.asString());
+                if (number == Double.MAX_VALUE) {
+                    return "Infinity";
+                } else if (number == Double.MIN_VALUE) {
+                    return "-Infinity";
                 }
-                result.append(": ");
-                if (v.isString) {
-                    result.append('"').append(v.string).append('"');
+
+                if (Math.floor(number) == number && number < Long.MAX_VALUE && number > Long.MIN_VALUE) {
+                    return String.valueOf((long) number);
+                }
+                return String.valueOf(number);
+            }
+            case ValueTag.BOOL -> {
+                return String.valueOf(bool());
+            }
+            case ValueTag.LIST -> {
+                StringBuilder result = new StringBuilder("[");
+                list().forEach(k -> {
+                    if (k.isString()) {
+                        result.append('"').append(k.string()).append('"');
+                    } else {
+                        result.append(k.asString());
+                    }
+                    result.append(", ");
+                });
+                if (result.length() > 1) {
+                    result.setLength(result.length() - 2);
+                }
+                result.append("]");
+                return result.toString();
+            }
+            case ValueTag.MAP -> {
+                StringBuilder result = new StringBuilder("{");
+                map().forEach((k, v) -> {
+                    if (k.isString()) {
+                        result.append('"').append(k.string()).append('"');
+                    } else {
+                        result.append(k.asString());
+                    }
+                    result.append(": ");
+                    if (v.isString()) {
+                        result.append('"').append(v.string()).append('"');
+                    } else {
+                        result.append(v.asString());
+                    }
+                    result.append(", ");
+                });
+                if (result.length() > 1) {
+                    result.setLength(result.length() - 2);
+                }
+                result.append("}");
+                return result.toString();
+            }
+            case ValueTag.CLOSURE -> {
+                return ((Closure) payload).byteCode.toString();
+            }
+            case ValueTag.FUNC, ValueTag.VAR, ValueTag.NATIVE_FUNC, ValueTag.CLASS,
+                    ValueTag.INSTANCE, ValueTag.BOUND_METHOD -> {
+                return payload.toString();
+            }
+            case ValueTag.NAMESPACE -> {
+                return ((Namespace) payload).name();
+            }
+            case ValueTag.ENUM_PARENT -> {
+                return ((LanguageEnum) payload).name();
+            }
+            case ValueTag.ENUM_CHILD -> {
+                LanguageEnumChild enumChild = (LanguageEnumChild) payload;
+                return enumChild.getParent().children().entrySet().stream()
+                        .filter(enumElement -> enumElement.getValue().getValue() == enumChild.getValue())
+                        .findFirst().map(Map.Entry::getKey).orElse(enumChild.toString());
+            }
+            case ValueTag.REF -> {
+                return ref().asString();
+            }
+            case ValueTag.BYTES -> {
+                byte[] bytes = (byte[]) payload;
+                StringBuilder sb = new StringBuilder();
+
+                for (int i = 0; i < bytes.length; i++)
+                    sb.append(bytes[i]).append(", ");
+
+                return "{ " + sb + "len=" + bytes.length + " }";
+            }
+            case ValueTag.RES -> {
+                Result res = (Result) payload;
+                if (res.isError()) {
+                    return String.format("(\"%s\" : \"%s\")", res.getErrorMessage(), res.getErrorReason());
                 } else {
-                    result.append(v.asString());
+                    return String.format("(%s)", res.getValue());
                 }
-                result.append(", ");
-            });
-            if (result.length() > 1) {
-                result.setLength(result.length() - 2);
-            }
-            result.append("}");
-            return result.toString();
-        } else if (isFunc) {
-            return func.toString();
-        } else if (isClosure) {
-            return closure.byteCode.toString();
-        } else if (isVar) {
-            return var.toString();
-        } else if (isNativeFunc) {
-            return nativeFunc.toString();
-        } else if (isClass) {
-            return languageClass.toString();
-        } else if (isInstance) {
-            return instance.toString();
-        } else if (isBoundMethod) {
-            return boundMethod.toString();
-        } else if (isNamespace) {
-            return namespace.name();
-        } else if (isEnumParent) {
-            return enumParent.name();
-        } else if (isEnumChild) {
-            return enumChild.getParent().children().entrySet().stream()
-                    .filter(enumElement -> enumElement.getValue().getValue() == enumChild.getValue())
-                    .findFirst().map(Map.Entry::getKey).orElse(enumChild.toString());
-        } else if (isRef) {
-            return ref.asString();
-        } else if (isBytes) {
-            StringBuilder sb = new StringBuilder();
-
-            for (int i = 0; i < bytes.length; i++)
-                sb.append(bytes[i]).append(", ");
-
-            return "{ " + sb + "len=" + bytes.length + " }";
-        } else if (isRes) {
-            if (res.isError()) {
-                return String.format("(\"%s\" : \"%s\")", res.getErrorMessage(), res.getErrorReason());
-            } else {
-                return String.format("(%s)", res.getValue());
             }
-        } else if (isPatternBinding) {
-            return "{ pattern: " + patternBinding + " }";
-        } else if (isPattern) {
-            StringBuilder sb = new StringBuilder(pattern.value.toString() + " { ");
-            for (Map.Entry<String, Value> entry : pattern.cases.entrySet()) {
-                sb.append(entry.getKey()).append(": ").append(entry.getValue().asString()).append(", ");
+            case ValueTag.PATTERN_BINDING -> {
+                return "{ pattern: " + payload + " }";
+            }
+            case ValueTag.PATTERN -> {
+                Pattern pattern = (Pattern) payload;
+                StringBuilder sb = new StringBuilder(pattern.value.toString() + " { ");
+                for (int i = 0; i < pattern.fields.length; i++) {
+                    String match = pattern.expected[i] != null ? pattern.expected[i].asString() : pattern.bindings[i];
+                    sb.append(pattern.fields[i]).append(": ").append(match).append(", ");
+                }
+                return sb + "}";
             }
-            for (Map.Entry<String, String> entry : pattern.matches.entrySet()) {
-                sb.append(entry.getKey()).append(": ").append(entry.getValue()).append(", ");
+            default -> {
+                return "";
             }
-            return sb + "}";
         }
-        return "";
     }
 
     public String toString() {
@@ -342,167 +600,193 @@ public class Value {
             return false;
 
         Value o = (Value) obj;
-        if (this.isNull)
-            return o.isNull;
-
-        else if (this.isNumber)
-            return o.isNumber && this.number == o.number;
-
-        else if (this.isString)
-            return o.isString && this.string.equals(o.string);
-
-        else if (this.isBool)
-            return o.isBool && this.bool == o.bool;
-
-        else if (this.isList)
-            return o.isList && this.list.equals(o.list);
-
-        else if (this.isMap)
-            return o.isMap && this.map.equals(o.map);
-
-        else if (this.isEnumChild)
-            return o.isEnumChild && this.enumChild.equals(o.enumChild);
-
-        return this == o;
+        return switch (tag) {
+            case ValueTag.NULL -> o.tag == ValueTag.NULL;
+            case ValueTag.NUMBER, ValueTag.BOOL -> o.tag == tag && sameNumber(o);
+            case ValueTag.STRING -> o.tag == tag && string().equals(o.string());
+            case ValueTag.LIST, ValueTag.MAP -> o.tag == tag && this.payload.equals(o.payload);
+            case ValueTag.ENUM_CHILD -> o.tag == tag && ((LanguageEnumChild) payload).equals((LanguageEnumChild) o.payload);
+            default -> this == o;
+        };
+    }
+
+    // agrees with equals, kinds that compare by identity hash by identity
+    @Override
+    public int hashCode() {
+        return switch (tag) {
+            case ValueTag.NULL -> 0;
+            // 0.0 and -0.0 are equal numbers
+            case ValueTag.NUMBER, ValueTag.BOOL -> number == 0 ? 0 : Double.hashCode(number);
+            case ValueTag.STRING -> string().hashCode();
+            case ValueTag.LIST, ValueTag.MAP -> payload.hashCode();
+            case ValueTag.ENUM_CHILD -> ((LanguageEnumChild) payload).getValue();
+            default -> System.identityHashCode(this);
+        };
     }
 
     public Value[] asTuple() {
-        if (isTuple) {
-            return tuple;
-        } else if (isList) {
-            Value[] tuple = new Value[list.size()];
-            for (int i = 0; i < tuple.length; i++) {
-                tuple[i] = list.get(i);
-            }
-            return tuple;
-        } else if (isMap) {
-            Value[] tuple = new Value[map.size()];
-            int i = 0;
-            for (Map.Entry<Value, Value> entry : map.entrySet()) {
-                tuple[i++] = new Value(entry.getKey(), entry.getValue());
-            }
-            return tuple;
+        switch (tag) {
+            case ValueTag.TUPLE -> {
+                return (Value[]) payload;
+            }
+            case ValueTag.LIST -> {
+                return list().toArray(new Value[0]);
+            }
+            case ValueTag.MAP -> {
+                Value[] tuple = new Value[map().size()];
+                int i = 0;
+                for (Map.Entry<Value, Value> entry : map().entrySet()) {
+                    tuple[i++] = new Value(entry.getKey(), entry.getValue());
+                }
+                return tuple;
+            }
+            default -> {
+                return null;
+            }
         }
-        return null;
     }
 
     public List<Value> asList() {
-        if (isList) {
-            return list;
-        } else if (isTuple) {
-            return Arrays.asList(tuple);
-        } else if (isMap) {
-            return new ArrayList<>(map.keySet());
-        } else if (isString) {
-            String[] lis = string.split("");
-            List<Value> list = new ArrayList<>();
-            for (String s : lis) {
-                list.add(new Value(s));
-            }
-            return list;
-        } else if (this.isNull) {
-            return new ArrayList<>();
-        } else if (isInstance) {
-            return instance.asList();
-        } else if (isRef) {
-            return ref.asList();
-        } else if (isRes) {
-            if (res.isError()) {
-                return Arrays.asList(new Value(res.getErrorMessage()), new Value(res.getErrorReason()));
-            } else {
-                return Collections.singletonList(new Value(res.getValue()));
+        switch (tag) {
+            case ValueTag.LIST -> {
+                return list();
             }
-        } else if (isBytes) {
-            List<Value> list = new ArrayList<>();
-            for (int i = 0; i < bytes.length; i++) {
-                list.add(new Value(bytes[i]));
+            case ValueTag.TUPLE -> {
+                return Arrays.asList((Value[]) payload);
+            }
+            case ValueTag.MAP -> {
+                return new ArrayList<>(map().keySet());
+            }
+            case ValueTag.STRING -> {
+                return new Characters(this);
+            }
+            case ValueTag.NULL -> {
+                return new ArrayList<>();
+            }
+            case ValueTag.INSTANCE -> {
+                return ((Instance) payload).asList();
+            }
+            case ValueTag.REF -> {
+                return ref().asList();
+            }
+            case ValueTag.RES -> {
+                Result res = (Result) payload;
+                if (res.isError()) {
+                    return Arrays.asList(new Value(res.getErrorMessage()), new Value(res.getErrorReason()));
+                } else {
+                    return Collections.singletonList(new Value(res.getValue()));
+                }
+            }
+            case ValueTag.BYTES -> {
+                byte[] bytes = (byte[]) payload;
+                List<Value> list = new ArrayList<>();
+                for (int i = 0; i < bytes.length; i++) {
+                    list.add(new Value(bytes[i]));
+                }
+                return list;
+            }
+            default -> {
+                return new ArrayList<>(Collections.singletonList(this));
             }
-            return list;
         }
-        return new ArrayList<>(Collections.singletonList(this));
     }
 
     public Var asVar() {
-        if (isRef) {
-            return ref.asVar();
+        if (tag == ValueTag.REF) {
+            return ref().asVar();
         }
-        return var;
+        return tag == ValueTag.VAR ? (Var) payload : null;
     }
 
     public Map<Value, Value> asMap() {
-        if (isMap) {
-            return map;
-        } else if (this.isNull) {
-            return new HashMap<>();
-        } else if (isInstance) {
-            return instance.asMap();
-        } else if (isRef) {
-            return ref.asMap();
-        } else if (isRes) {
-            Map<Value, Value> map = new HashMap<>();
-            map.put(new Value("sucess"), new Value(res.getValue()));
-            List<Value> key;
-            if (res.isError()) {
-                key = new ArrayList<>(Arrays.asList(new Value(res.getErrorMessage()), new Value(res.getErrorReason())));
-            } else {
-                key = new ArrayList<>();
+        switch (tag) {
+            case ValueTag.MAP -> {
+                return map();
+            }
+            case ValueTag.NULL -> {
+                return new ValueMap();
+            }
+            case ValueTag.INSTANCE -> {
+                return ((Instance) payload).asMap();
+            }
+            case ValueTag.REF -> {
+                return ref().asMap();
+            }
+            case ValueTag.RES -> {
+                Result res = (Result) payload;
+                Map<Value, Value> map = new ValueMap();
+                map.put(new Value("sucess"), new Value(res.getValue()));
+                List<Value> key;
+                if (res.isError()) {
+                    key = new ArrayList<>(Arrays.asList(new Value(res.getErrorMessage()), new Value(res.getErrorReason())));
+                } else {
+                    key = new ArrayList<>();
+                }
+                map.put(new Value("error"), new Value(key));
+                return map;
+            }
+            default -> {
+                return new ValueMap(Collections.singletonMap(this, this));
             }
-            map.put(new Value("error"), new Value(key));
-            return map;
         }
-        return new HashMap<>(Collections.singletonMap(this, this));
     }
 
     public ByteCode asFunc() {
-        if (isFunc) {
-            return func;
-        } else if (this.isClosure) {
-            return closure.byteCode;
-        } else if (isRef) {
-            return ref.asFunc();
-        }
-        return null;
+        return switch (tag) {
+            case ValueTag.FUNC -> (ByteCode) payload;
+            case ValueTag.CLOSURE -> ((Closure) payload).byteCode;
+            case ValueTag.REF -> ref().asFunc();
+            default -> null;
+        };
     }
 
     public Closure asClosure() {
-        if (isClosure) {
-            return closure;
-        } else if (isRef) {
-            return ref.asClosure();
-        }
-        return null;
+        return switch (tag) {
+            case ValueTag.CLOSURE -> (Closure) payload;
+            case ValueTag.REF -> ref().asClosure();
+            default -> null;
+        };
     }
 
     public LanguageClass asClass() {
-        if (isClass) {
-            return languageClass;
-        } else if (isRef) {
-            return ref.asClass();
-        }
-        return null;
+        return switch (tag) {
+            case ValueTag.CLASS -> (LanguageClass) payload;
+            case ValueTag.REF -> ref().asClass();
+            default -> null;
+        };
     }
 
     public Native asNative() {
-        return nativeFunc;
+        return tag == ValueTag.NATIVE_FUNC ? (Native) payload : null;
     }
 
     public BoundMethod asBoundMethod() {
-        if (isBoundMethod) {
-            return boundMethod;
-        } else if (isRef) {
-            return ref.asBoundMethod();
-        }
-        return null;
+        return switch (tag) {
+            case ValueTag.BOUND_METHOD -> (BoundMethod) payload;
+            case ValueTag.REF -> ref().asBoundMethod();
+            default -> null;
+        };
     }
 
 
     // Mutative Addition
     public VirtualMachineResult add(Value other) {
-        if (isNumber) {
-            number += other.asNumber();
+        checkMutable();
+        if (tag == ValueTag.NUMBER) {
+            if (integral && other.integral) {
+                integer += other.integer;
+                number = integer;
+            } else {
+                number += other.asNumber();
+                integral = false;
+            }
             return VirtualMachineResult.OK;
-        } else if (isList) {
-            list.addAll(other.asList());
+        } else if (tag == ValueTag.LIST) {
+            List<Value> items = other.asList();
+            List<Value> list = mutableList();
+            if (list instanceof NumberList numbers && !numbers.acceptsAll(items))
+                payload = list = new ArrayList<>(numbers);
+            list.addAll(items);
             return VirtualMachineResult.OK;
         }
 
@@ -511,122 +795,142 @@ public class Value {
 
     // List Mutators
     public void append(Value value) {
-        list.add(value);
+        mutableList(value).add(value);
     }
 
     public Value pop(Double index) {
-        int i = index.intValue();
-        Value value = list.get(i);
-        list.remove(i);
-        return value;
+        return mutableList().remove(index.intValue());
     }
 
     public void insert(Double index, Value value) {
-        list.add(index.intValue(), value);
+        mutableList(value).add(index.intValue(), value);
     }
 
     public void set(Double index, Value value) {
-        list.set(index.intValue(), value);
+        mutableList(value).set(index.intValue(), value);
     }
 
     public void remove(Value value) {
-        list.remove(value);
+        mutableList().remove(value);
     }
 
     // Map Mutators
     public void set(Value key, Value value) {
-        map.put(key, value);
+        map().put(key, value);
     }
 
     public void delete(Value key) {
-        map.remove(key);
+        map().remove(key);
     }
 
     public Instance asInstance() {
-        if (isRef) {
-            return ref.asInstance();
-        }
-        return instance;
+        return switch (tag) {
+            case ValueTag.INSTANCE -> (Instance) payload;
+            case ValueTag.REF -> ref().asInstance();
+            default -> null;
+        };
     }
 
     public Result asRes() {
-        return res;
+        return tag == ValueTag.RES ? (Result) payload : null;
     }
 
     public Namespace asNamespace() {
-        if (isRef) {
-            return ref.asNamespace();
-        }
-        return namespace;
+        return switch (tag) {
+            case ValueTag.NAMESPACE -> (Namespace) payload;
+            case ValueTag.REF -> ref().asNamespace();
+            default -> null;
+        };
     }
 
     public String toSafeString() {
-        if (isInstance) {
-            return instance.clazz.name;
-        } else if (isVar) {
-            return var.toSafeString();
+        if (tag == ValueTag.INSTANCE) {
+            return ((Instance) payload).clazz.name;
+        } else if (tag == ValueTag.VAR) {
+            return ((Var) payload).toSafeString();
         }
         return toString();
     }
 
     public Value copy() {
-        if (isNumber) {
-            return new Value(number);
-        } else if (isString) {
-            return new Value(string);
-        } else if (isBool) {
-            return new Value(bool);
-        } else if (isList) {
-            List<Value> list = new ArrayList<>();
-            for (Value value : this.list) {
-                list.add(value.copy());
+        switch (tag) {
+            case ValueTag.NUMBER -> {
+                return integral ? newInteger(integer) : new Value(number);
             }
-            return new Value(list);
-        } else if (isMap) {
-            Map<Value, Value> map = new HashMap<>();
-            for (Map.Entry<Value, Value> entry : this.map.entrySet()) {
-                map.put(entry.getKey().copy(), entry.getValue().copy());
+            case ValueTag.STRING -> {
+                return new Value(string());
+            }
+            case ValueTag.BOOL -> {
+                return new Value(bool());
+            }
+            case ValueTag.LIST -> {
+                // numbers copy as numbers, there is nothing nested to copy
+                if (payload instanceof NumberList numbers)
+                    return new Value(numbers.copy());
+                List<Value> list = new ArrayList<>();
+                for (Value value : list()) {
+                    list.add(value.copy());
+                }
+                return new Value(list);
+            }
+            case ValueTag.MAP -> {
+                Map<Value, Value> map = new ValueMap(map().size());
+                for (Map.Entry<Value, Value> entry : map().entrySet()) {
+                    map.put(entry.getKey().copy(), entry.getValue().copy());
+                }
+                return new Value(map);
+            }
+            case ValueTag.CLASS -> {
+                return new Value(((LanguageClass) payload).copy());
+            }
+            case ValueTag.INSTANCE -> {
+                return new Value(((Instance) payload).copy());
+            }
+            default -> {
+                return this;
             }
-            return new Value(map);
-        } else if (isClass) {
-            return new Value(languageClass.copy());
-        } else if (isInstance) {
-            return new Value(instance.copy());
         }
-        return this;
     }
 
     public LanguageEnumChild asEnumChild() {
-        if (isRef) {
-            return ref.asEnumChild();
-        }
-        return enumChild;
+        return switch (tag) {
+            case ValueTag.ENUM_CHILD -> (LanguageEnumChild) payload;
+            case ValueTag.REF -> ref().asEnumChild();
+            default -> null;
+        };
     }
 
     public LanguageEnum asEnum() {
-        if (isRef) return ref.asEnum();
-        return enumParent;
+        return switch (tag) {
+            case ValueTag.ENUM_PARENT -> (LanguageEnum) payload;
+            case ValueTag.REF -> ref().asEnum();
+            default -> null;
+        };
     }
 
     public Spread asSpread() {
-        if (isRef) return ref.asSpread();
-        return spread;
+        return switch (tag) {
+            case ValueTag.SPREAD -> (Spread) payload;
+            case ValueTag.REF -> ref().asSpread();
+            default -> null;
+        };
     }
 
     public Value asRef() {
-        return ref;
+        return tag == ValueTag.REF ? ref() : null;
     }
 
     public Value setRef(Value value) {
-        ref = value;
+        checkMutable();
+        payload = value;
         return this;
     }
 
     public byte[] asBytes() {
-        if (isInstance)
-            return instance.asBytes();
-        else if (isBytes)
-            return bytes;
+        if (tag == ValueTag.INSTANCE)
+            return ((Instance) payload).asBytes();
+        else if (tag == ValueTag.BYTES)
+            return (byte[]) payload;
         return objToBytes(asObject());
     }
 
@@ -644,16 +948,23 @@ public class Value {
 
     public static Value fromObject(Object object) {
         if (object instanceof Double ||
-                object instanceof Float ||
-                object instanceof Integer ||
+                object instanceof Float) {
+            return Value.of(((Number) object).doubleValue());
+        } else if (object instanceof Integer ||
                 object instanceof Long ||
                 object instanceof Short ||
                 object instanceof Byte) {
-            return new Value(Double.parseDouble(object.toString()));
+            return Value.integer(((Number) object).longValue());
         } else if (object instanceof String) {
             return new Value((String) object);
+        } else if (object instanceof StringView) {
+            return new Value((StringView) object);
         } else if (object instanceof Boolean) {
-            return new Value((Boolean) object);
+            return Value.of((Boolean) object);
+        } else if (object instanceof RangeList range) {
+            return new Value(range);
+        } else if (object instanceof PersistentVector vector) {
+            return new Value(vector);
         } else if (object instanceof List) {
             List<Value> list = new ArrayList<>();
             for (Object o : (List<Object>) object) {
@@ -661,7 +972,7 @@ public class Value {
             }
             return new Value(list);
         } else if (object instanceof Map) {
-            Map<Value, Value> map = new HashMap<>();
+            Map<Value, Value> map = new ValueMap();
             for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) object).entrySet()) {
                 map.put(fromObject(entry.getKey()), fromObject(entry.getValue()));
             }
@@ -681,7 +992,7 @@ public class Value {
         } else if (object instanceof byte[]) {
             return new Value((byte[]) object);
         }
-        return new Value();
+        return ValueCache.NULL;
     }
 
     public static NativeResult fromByte(byte[] bytes) {
@@ -696,67 +1007,110 @@ public class Value {
     }
 
     public Object asObject() {
-        if (isInstance)
-            return instance;
-        else if (isClass)
-            return languageClass;
-        else if (isEnumParent)
-            return enumParent;
-        else if (isEnumChild)
-            return enumChild;
-        else if (isSpread)
-            return spread;
-        else if (isRef)
-            return ref.asObject();
-        else if (isBytes)
-            return bytes;
-        else if (isString)
-            return string;
-        else if (isNumber)
-            return number;
-        else if (isBool)
-            return bool;
-        else if (isList) {
-            List<Object> list = new ArrayList<>();
-            for (Value value : this.list) {
-                list.add(value.asObject());
-            }
-            return list;
-        } else if (isMap) {
-            Map<Object, Object> map = new HashMap<>();
-            for (Map.Entry<Value, Value> entry : this.map.entrySet()) {
-                map.put(entry.getKey().asObject(), entry.getValue().asObject());
-            }
-            return map;
+        return asObject(false);
+    }
+
+    // what print, println, err and str show, integers a double cannot hold keep every digit
+    // but are written the way a double is, so an integral value looks the same at any size
+    public Object asPrinted() {
+        return asObject(true);
+    }
+
+    static String printed(long integer) {
+        String digits = Long.toString(integer);
+        int start = integer < 0 ? 1 : 0;
+        int end = digits.length();
+        while (end > start + 2 && digits.charAt(end - 1) == '0')
+            end--;
+        return digits.substring(0, start + 1) + "." + digits.substring(start + 1, end)
+                + "E" + (digits.length() - start - 1);
+    }
+
+    private Object asObject(boolean printed) {
+        switch (tag) {
+            case ValueTag.INSTANCE, ValueTag.CLASS, ValueTag.ENUM_PARENT, ValueTag.ENUM_CHILD,
+                    ValueTag.SPREAD, ValueTag.BYTES -> {
+                return payload;
+            }
+            case ValueTag.STRING -> {
+                return string();
+            }
+            case ValueTag.REF -> {
+                return ref().asObject(printed);
+            }
+            case ValueTag.NUMBER -> {
+                // natives take doubles, only integers a double cannot hold are passed as a Long
+                if (fitsDouble())
+                    return number;
+                return printed ? printed(integer) : (Object) integer;
+            }
+            case ValueTag.BOOL -> {
+                return bool();
+            }
+            case ValueTag.LIST -> {
+                List<Object> list = new ArrayList<>();
+                for (Value value : list()) {
+                    list.add(value.asObject(printed));
+                }
+                return list;
+            }
+            case ValueTag.MAP -> {
+                Map<Object, Object> map = new HashMap<>();
+                for (Map.Entry<Value, Value> entry : map().entrySet()) {
+                    map.put(entry.getKey().asObject(printed), entry.getValue().asObject(printed));
+                }
+                return map;
+            }
+            default -> {
+                return this;
+            }
         }
-        return this;
     }
 
     public String asPatternBinding() {
-        return patternBinding;
+        return tag == ValueTag.PATTERN_BINDING ? (String) payload : null;
     }
 
     public Pattern asPattern() {
-        return pattern;
+        return tag == ValueTag.PATTERN ? (Pattern) payload : null;
+    }
+
+    public ValueIterator asIterator() {
+        return tag == ValueTag.ITERATOR ? (ValueIterator) payload : null;
     }
 
     public Value shallowCopy() {
-        if (isNumber) {
-            return new Value(number);
-        } else if (isString) {
-            return new Value(string);
-        } else if (isBool) {
-            return new Value(bool);
-        } else if (isList) {
-            return new Value(new ArrayList<>(list));
-        } else if (isMap) {
-            return new Value(new HashMap<>(map));
-        } else if (isClass) {
-            return new Value(languageClass.copy());
-        } else if (isInstance) {
-            return new Value(instance.copy());
+        switch (tag) {
+            case ValueTag.NUMBER -> {
+                return integral ? newInteger(integer) : new Value(number);
+            }
+            case ValueTag.STRING -> {
+                return new Value(string());
+            }
+            case ValueTag.BOOL -> {
+                return new Value(bool());
+            }
+            case ValueTag.LIST -> {
+                // ranges and vectors never change in place, the copy can keep sharing them
+                if (payload instanceof RangeList || payload instanceof PersistentVector)
+                    return new Value(list());
+                if (payload instanceof NumberList numbers)
+                    return new Value(numbers.copy());
+                return new Value(new ArrayList<>(list()));
+            }
+            case ValueTag.MAP -> {
+                return new Value(new ValueMap(map()));
+            }
+            case ValueTag.CLASS -> {
+                return new Value(((LanguageClass) payload).copy());
+            }
+            case ValueTag.INSTANCE -> {
+                return new Value(((Instance) payload).copy());
+            }
+            default -> {
+                return this;
+            }
         }
-        return this;
     }
 
     public static int[] dumpString(String s) {
@@ -777,68 +1131,82 @@ public class Value {
     }
 
     public int[] dump() {
-        if (isBool) {
-            return new int[]{ChunkCode.Boolean, bool ? 1 : 0};
-        } else if (isNumber) {
-            ByteBuffer buffer = ByteBuffer.allocate(8);
-            buffer.putDouble(number);
-            return new int[]{ChunkCode.Number, buffer.getInt(0), buffer.getInt(4)};
-        } else if (isString) {
-            return dumpString(string);
-        } else if (isEnumParent) {
-            return enumParent.dump();
-        } else if (isFunc) {
-            return func.dump();
+        switch (tag) {
+            case ValueTag.BOOL -> {
+                return new int[]{ChunkCode.Boolean, bool() ? 1 : 0};
+            }
+            case ValueTag.NUMBER -> {
+                ByteBuffer buffer = ByteBuffer.allocate(8);
+                if (integral)
+                    buffer.putLong(integer);
+                else
+                    buffer.putDouble(number);
+                return new int[]{integral ? ChunkCode.Integer : ChunkCode.Number, buffer.getInt(0), buffer.getInt(4)};
+            }
+            case ValueTag.STRING -> {
+                return dumpString(string());
+            }
+            case ValueTag.ENUM_PARENT -> {
+                return ((LanguageEnum) payload).dump();
+            }
+            case ValueTag.FUNC -> {
+                return ((ByteCode) payload).dump();
+            }
+            default -> {
+                return null;
+            }
         }
-        return null;
     }
 
     public Value get(Value other) {
-        Map<Value, Value> map = asMap();
-        for (Value key : map.keySet()) {
-            if (other.equals(key)) {
-                return map.get(key);
-            }
-        }
-        return new Value();
+        Value value = asMap().get(other);
+        return value != null ? value : new Value();
     }
 
     public String type() {
-        if (isBool) {
-            return "bool";
-        } else if (isNumber) {
-            return (number == (long) number) ? "i32" : "f32";
-        } else if (isString) {
-            return "String";
-        } else if (isList) {
-            return "list";
-        } else if (isMap) {
-            return "map";
-        } else if (isClass) {
-            return "recipe";
-        } else if (isInstance) {
-            return instance.type();
-        } else if (isEnumParent) {
-            return "Enum";
-        } else if (isEnumChild) {
-            return enumChild.type();
-        } else if (isSpread) {
-            return "spread";
-        } else if (isRef) {
-            return "[" + ref.type() + "]";
-        } else if (isBytes) {
-            return "bytearray";
-        } else if (isFunc || isClosure || isNativeFunc) {
-            return "inline";
-        } else if (isPattern) {
-            return "pattern";
-        } else if (isPatternBinding) {
-            return "patternBinding";
-        } else if (isNamespace) {
-            return "namespace";
-        } else if (isTuple) {
-            return "(" + Arrays.stream(tuple).map(Value::type).collect(Collectors.joining(", ")) + ")";
+        return switch (tag) {
+            case ValueTag.BOOL -> "bool";
+            case ValueTag.NUMBER -> (number == (long) number) ? "i32" : "f32";
+            case ValueTag.STRING -> "String";
+            case ValueTag.LIST -> "list";
+            case ValueTag.MAP -> "map";
+            case ValueTag.CLASS -> "recipe";
+            case ValueTag.INSTANCE -> ((Instance) payload).type();
+            case ValueTag.ENUM_PARENT -> "Enum";
+            case ValueTag.ENUM_CHILD -> ((LanguageEnumChild) payload).type();
+            case ValueTag.SPREAD -> "spread";
+            case ValueTag.REF -> "[" + ref().type() + "]";
+            case ValueTag.BYTES -> "bytearray";
+            case ValueTag.FUNC, ValueTag.CLOSURE, ValueTag.NATIVE_FUNC -> "inline";
+            case ValueTag.PATTERN -> "pattern";
+            case ValueTag.PATTERN_BINDING -> "patternBinding";
+            case ValueTag.NAMESPACE -> "namespace";
+            case ValueTag.ITERATOR -> "iterator";
+            case ValueTag.TUPLE -> "(" + Arrays.stream((Value[]) payload).map(Value::type).collect(Collectors.joining(", ")) + ")";
+            default -> "void";
+        };
+    }
+
+    // read-only code point list over a string, indexing stays O(1) for strings without surrogate pairs
+    private static class Characters extends AbstractList<Value> implements RandomAccess {
+        private final Value string;
+        private final int size;
+
+        Characters(Value string) {
+            this.string = string;
+            this.size = string.length();
+        }
+
+        @Override
+        public Value get(int index) {
+            if (index < 0 || index >= size)
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            return string.charAt(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
-        return "void";
     }
 }
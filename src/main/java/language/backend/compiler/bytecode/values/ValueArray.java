@@ -21,7 +21,7 @@ public class ValueArray {
     }
 
     public int write(Value value) {
-        int index = values.indexOf(value);
+        int index = indexOf(value);
         if (index == -1) {
             values.add(value);
             index = length++;
@@ -29,6 +29,16 @@ public class ValueArray {
         return index;
     }
 
+    // 1 and 1.0 are equal values but not interchangeable constants
+    private int indexOf(Value value) {
+        for (int i = 0; i < values.size(); i++) {
+            Value constant = values.get(i);
+            if (constant.equals(value) && constant.isIntegral() == value.isIntegral())
+                return i;
+        }
+        return -1;
+    }
+
     public void compile() {
         valuesArray = values.toArray(new Value[0]);
     }
@@ -0,0 +1,54 @@
+package language.backend.compiler.bytecode.values;
+
+public class ValueCache {
+    // range of integral numbers that are shared, can be widened with -Dlang.value.cache.low / -Dlang.value.cache.high
+    public static final int LOW = Integer.getInteger("lang.value.cache.low", -128);
+    public static final int HIGH = Math.max(LOW, Integer.getInteger("lang.value.cache.high", 1024));
+
+    public static final Value NULL = new Value().freeze();
+    public static final Value TRUE = new Value(true).freeze();
+    public static final Value FALSE = new Value(false).freeze();
+
+    private static final Value[] NUMBERS = new Value[HIGH - LOW + 1];
+    private static final Value[] INTEGERS = new Value[HIGH - LOW + 1];
+    private static final Value[] ASCII = new Value[128];
+
+    static {
+        for (int i = 0; i < NUMBERS.length; i++) {
+            NUMBERS[i] = new Value((double) (LOW + i)).freeze();
+            INTEGERS[i] = Value.newInteger(LOW + i).freeze();
+        }
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = new Value(String.valueOf((char) i)).freeze();
+        }
+    }
+
+    public static Value of(boolean bool) {
+        return bool ? TRUE : FALSE;
+    }
+
+    public static Value of(double number) {
+        int index = (int) number;
+        // the bit compare keeps -0.0 out of the cache so dividing by it still gives -Infinity
+        if (index == number && index >= LOW && index <= HIGH
+                && (index != 0 || Double.doubleToRawLongBits(number) == 0L)) {
+            return NUMBERS[index - LOW];
+        }
+        return new Value(number);
+    }
+
+    public static Value integer(long integer) {
+        if (integer >= LOW && integer <= HIGH) {
+            return INTEGERS[(int) integer - LOW];
+        }
+        return Value.newInteger(integer);
+    }
+
+    // one character strings, ascii ones are shared
+    public static Value character(int codePoint) {
+        if (codePoint < ASCII.length)
+            return ASCII[codePoint];
+        return new Value(Character.toString(codePoint));
+    }
+
+}
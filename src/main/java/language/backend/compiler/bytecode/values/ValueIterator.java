@@ -0,0 +1,139 @@
+package language.backend.compiler.bytecode.values;
+
+import java.util.List;
+import java.util.Map;
+
+public abstract class ValueIterator {
+
+    public abstract boolean hasNext();
+
+    public abstract Value next();
+
+    public static ValueIterator of(Value value) {
+        return switch (value.tag()) {
+            case ValueTag.LIST -> value.asList() instanceof RangeList range
+                    ? new RangeIterator(range)
+                    : value.asList() instanceof NumberList
+                    ? new NumberIterator(value)
+                    : new ListIterator(value.asList());
+            case ValueTag.TUPLE -> new ArrayIterator(value.asTuple());
+            case ValueTag.MAP -> new ArrayIterator(keys(value.asMap()));
+            case ValueTag.STRING -> new StringIterator(value.chars());
+            case ValueTag.ITERATOR -> value.asIterator();
+            default -> new ListIterator(value.asList());
+        };
+    }
+
+    private static Value[] keys(Map<Value, Value> map) {
+        return map.keySet().toArray(new Value[0]);
+    }
+
+    // walks the live list, elements appended while iterating are not visited
+    private static class ListIterator extends ValueIterator {
+        private final List<Value> list;
+        private final int end;
+        private int cursor = 0;
+
+        ListIterator(List<Value> list) {
+            this.list = list;
+            this.end = list.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < end && cursor < list.size();
+        }
+
+        @Override
+        public Value next() {
+            return list.get(cursor++);
+        }
+    }
+
+    // ranges are immutable, so the elements are computed straight from the index
+    private static class RangeIterator extends ValueIterator {
+        private final RangeList range;
+        private final int end;
+        private int cursor = 0;
+
+        RangeIterator(RangeList range) {
+            this.range = range;
+            this.end = range.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < end;
+        }
+
+        @Override
+        public Value next() {
+            return Value.of(range.number(cursor++));
+        }
+    }
+
+    // reads the unboxed list directly, unless it was moved to boxed storage since the loop started
+    private static class NumberIterator extends ValueIterator {
+        private final Value owner;
+        private final NumberList numbers;
+        private final int end;
+        private int cursor = 0;
+
+        NumberIterator(Value owner) {
+            this.owner = owner;
+            this.numbers = (NumberList) owner.asList();
+            this.end = numbers.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < end && cursor < owner.asList().size();
+        }
+
+        @Override
+        public Value next() {
+            List<Value> list = owner.asList();
+            return list == numbers ? numbers.get(cursor++) : list.get(cursor++);
+        }
+    }
+
+    private static class ArrayIterator extends ValueIterator {
+        private final Value[] values;
+        private int cursor = 0;
+
+        ArrayIterator(Value[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < values.length;
+        }
+
+        @Override
+        public Value next() {
+            return values[cursor++];
+        }
+    }
+
+    private static class StringIterator extends ValueIterator {
+        private final CharSequence chars;
+        private int cursor = 0;
+
+        StringIterator(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < chars.length();
+        }
+
+        @Override
+        public Value next() {
+            int codePoint = Character.codePointAt(chars, cursor);
+            cursor += Character.charCount(codePoint);
+            return ValueCache.character(codePoint);
+        }
+    }
+}
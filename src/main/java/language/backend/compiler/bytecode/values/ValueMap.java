@@ -0,0 +1,234 @@
+package language.backend.compiler.bytecode.values;
+
+import java.util.*;
+
+// language map, an open addressing index over dense entry arrays
+// entries keep insertion order, removed ones are left as holes until the next resize
+public class ValueMap extends AbstractMap<Value, Value> {
+    private static final int FREE = -1;
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] index;
+    private Value[] keys;
+    private Value[] values;
+    private int[] hashes;
+
+    private int used = 0;
+    private int size = 0;
+    private int modCount = 0;
+
+    public ValueMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public ValueMap(int expected) {
+        allocate(Math.max(MIN_CAPACITY, expected));
+    }
+
+    public ValueMap(Map<Value, Value> map) {
+        this(map.size());
+        putAll(map);
+    }
+
+    private void allocate(int capacity) {
+        int entries = Integer.highestOneBit(capacity - 1) << 1;
+        keys = new Value[entries];
+        values = new Value[entries];
+        hashes = new int[entries];
+        index = new int[entries * 2];
+        Arrays.fill(index, FREE);
+    }
+
+    static int hash(Value key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    // tag checks first so string and number keys never go through the generic equals
+    private static boolean same(Value a, Value b) {
+        if (a == b)
+            return true;
+        if (a.tag != b.tag)
+            return false;
+        return switch (a.tag) {
+            case ValueTag.NUMBER, ValueTag.BOOL -> a.sameKey(b);
+            case ValueTag.STRING -> a.string().equals(b.string());
+            default -> a.equals(b);
+        };
+    }
+
+    private int find(Value key, int hash) {
+        int mask = index.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == FREE)
+                return -1;
+            Value candidate = keys[entry];
+            if (candidate != null && hashes[entry] == hash && same(candidate, key))
+                return entry;
+        }
+    }
+
+    @Override
+    public Value get(Object key) {
+        if (!(key instanceof Value value))
+            return null;
+        int entry = find(value, hash(value));
+        return entry == -1 ? null : values[entry];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Value value && find(value, hash(value)) != -1;
+    }
+
+    @Override
+    public Value put(Value key, Value value) {
+        int hash = hash(key);
+        int entry = find(key, hash);
+        if (entry != -1) {
+            Value previous = values[entry];
+            values[entry] = value;
+            return previous;
+        }
+
+        if (used == keys.length)
+            resize();
+        entry = used++;
+        keys[entry] = key;
+        values[entry] = value;
+        hashes[entry] = hash;
+        link(entry, hash);
+        size++;
+        modCount++;
+        return null;
+    }
+
+    @Override
+    public Value remove(Object key) {
+        if (!(key instanceof Value value))
+            return null;
+        int entry = find(value, hash(value));
+        if (entry == -1)
+            return null;
+        Value previous = values[entry];
+        // the index slot keeps pointing at the hole so probe chains stay intact
+        keys[entry] = null;
+        values[entry] = null;
+        size--;
+        modCount++;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, used, null);
+        Arrays.fill(values, 0, used, null);
+        Arrays.fill(index, FREE);
+        used = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void link(int entry, int hash) {
+        int mask = index.length - 1;
+        int slot = hash & mask;
+        while (index[slot] != FREE)
+            slot = (slot + 1) & mask;
+        index[slot] = entry;
+    }
+
+    // drops the holes, the entry arrays only grow if the map is more than half full
+    private void resize() {
+        Value[] oldKeys = keys;
+        Value[] oldValues = values;
+        int[] oldHashes = hashes;
+        int oldUsed = used;
+
+        allocate(size * 2 >= oldKeys.length ? oldKeys.length * 2 : oldKeys.length);
+        used = 0;
+        for (int i = 0; i < oldUsed; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            keys[used] = oldKeys[i];
+            values[used] = oldValues[i];
+            hashes[used] = oldHashes[i];
+            link(used, oldHashes[i]);
+            used++;
+        }
+    }
+
+    @Override
+    public Set<Entry<Value, Value>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Value, Value>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public void clear() {
+                ValueMap.this.clear();
+            }
+        };
+    }
+
+    private class EntryIterator implements Iterator<Entry<Value, Value>> {
+        private int cursor = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            while (cursor < used && keys[cursor] == null)
+                cursor++;
+            return cursor < used;
+        }
+
+        @Override
+        public Entry<Value, Value> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (!hasNext())
+                throw new NoSuchElementException();
+            last = cursor++;
+            return new ValueEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last == -1)
+                throw new IllegalStateException();
+            ValueMap.this.remove(keys[last]);
+            expectedModCount = modCount;
+            last = -1;
+        }
+    }
+
+    private class ValueEntry extends SimpleEntry<Value, Value> {
+        private static final long serialVersionUID = 1L;
+
+        private final int entry;
+
+        ValueEntry(int entry) {
+            super(keys[entry], values[entry]);
+            this.entry = entry;
+        }
+
+        @Override
+        public Value setValue(Value value) {
+            values[entry] = value;
+            return super.setValue(value);
+        }
+    }
+}
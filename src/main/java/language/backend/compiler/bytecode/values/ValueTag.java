@@ -0,0 +1,28 @@
+package language.backend.compiler.bytecode.values;
+
+public class ValueTag {
+    public static final int NULL = 0;
+    public static final int NUMBER = 1;
+    public static final int STRING = 2;
+    public static final int BOOL = 3;
+    public static final int LIST = 4;
+    public static final int MAP = 5;
+    public static final int FUNC = 6;
+    public static final int NATIVE_FUNC = 7;
+    public static final int VAR = 8;
+    public static final int CLOSURE = 9;
+    public static final int CLASS = 10;
+    public static final int INSTANCE = 11;
+    public static final int BOUND_METHOD = 12;
+    public static final int NAMESPACE = 13;
+    public static final int ENUM_PARENT = 14;
+    public static final int ENUM_CHILD = 15;
+    public static final int SPREAD = 16;
+    public static final int REF = 17;
+    public static final int BYTES = 18;
+    public static final int RES = 19;
+    public static final int PATTERN_BINDING = 20;
+    public static final int PATTERN = 21;
+    public static final int TUPLE = 22;
+    public static final int ITERATOR = 23;
+}
@@ -55,6 +55,8 @@ public class ByteCode {
 
         copy.chunk.constants(chunk.constants().copy());
         copy.chunk.codeArray = chunk.codeArray;
+        copy.chunk.globalNames = chunk.globalNames;
+        copy.chunk.globalSlots = chunk.globalSlots;
 
         copy.arity = arity;
         copy.defaults = defaults;
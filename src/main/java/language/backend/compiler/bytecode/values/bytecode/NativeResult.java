@@ -33,7 +33,7 @@ public class NativeResult {
     }
 
     public static NativeResult Ok() {
-        return new NativeResult(new Value());
+        return new NativeResult(Value.nullValue());
     }
 
     public boolean ok() {
@@ -2,6 +2,7 @@ package language.backend.compiler.bytecode.values.classes;
 
 import language.backend.compiler.bytecode.types.Type;
 import language.backend.compiler.bytecode.values.Value;
+import language.backend.compiler.bytecode.values.ValueMap;
 import language.backend.compiler.bytecode.values.Var;
 import language.backend.compiler.bytecode.values.bytecode.Closure;
 import language.backend.compiler.bytecode.values.bytecode.NativeResult;
@@ -15,25 +16,25 @@ import java.util.*;
 
 public class Instance {
     public final LanguageClass clazz;
-    public final Map<String, ClassAttribute> fields;
+    // field values laid out by clazz.shape, inherited fields first
+    public final Value[] fields;
     public final Map<String, Value> methods;
     public final Map<String, Value> binMethods;
     public Value self;
+    private Value receiverSlot;
     final VirtualMachine virtualMachine;
     final Map<String, String> generics;
     public Type type;
 
     public Instance(LanguageClass clazz, VirtualMachine virtualMachine) {
         this.clazz = clazz;
-        methods = clazz.methods;
+        methods = clazz.vtable();
         binMethods = clazz.binMethods;
-        generics = new HashMap<>();
+        generics = Collections.emptyMap();
 
         this.virtualMachine = virtualMachine;
 
-        fields = new HashMap<>();
-        copyAttributes(clazz.attributes, fields);
-        methods.putAll(binMethods);
+        fields = clazz.fieldValues();
     }
 
     public Instance(String name, Map<String, ClassAttribute> attrs, VirtualMachine virtualMachine) {
@@ -51,6 +52,13 @@ public class Instance {
         }
     }
 
+    // constant var holding self, shared by every call frame this instance is the receiver of
+    public Value receiverSlot() {
+        if (receiverSlot == null)
+            receiverSlot = new Value(new Var(self, true));
+        return receiverSlot;
+    }
+
     public String getGeneric(String key) {
         return generics.get(key);
     }
@@ -63,11 +71,11 @@ public class Instance {
     }
 
     public boolean instanceOf(Value value) {
-        if (value.isEnumChild && hasField("$child") && hasField("$child")) {
-            return value.asEnumChild().getValue() == fields.get("$child").val.asNumber().intValue() &&
-                    value.asEnumChild().getParent() == fields.get("$parent").val.asEnum();
+        if (value.isEnumChild() && hasField("$child") && hasField("$child")) {
+            return value.asEnumChild().getValue() == getField("$child", true).asNumber().intValue() &&
+                    value.asEnumChild().getParent() == getField("$parent", true).asEnum();
         }
-        else if (value.isClass) {
+        else if (value.isClass()) {
             return clazz == value.asClass();
         }
         return false;
@@ -115,10 +123,18 @@ public class Instance {
     }
 
     public Value getField(String name, boolean internal) {
-        ClassAttribute attr = fields.get(name);
-        if (attr != null && (!attr.isPrivate || internal))
-            return attr.val;
+        int slot = clazz.shape.visibleSlot(name, internal);
+        if (slot != -1)
+            return fields[slot];
+
+        return getMethod(name, internal);
+    }
 
+    public Value getField(int slot) {
+        return fields[slot];
+    }
+
+    public Value getMethod(String name, boolean internal) {
         Value val = methods.get(name);
         Closure method = val != null ? val.asClosure() : null;
         if (method != null && (!method.byteCode.isPrivate || internal))
@@ -128,7 +144,15 @@ public class Instance {
     }
 
     public NativeResult setField(String name, Value value) {
-        return setField(name, value, fields);
+        int slot = clazz.shape.slot(name);
+        if (slot == -1)
+            return NativeResult.Err("Scope", "Undefined attribute");
+        fields[slot] = value;
+        return NativeResult.Ok();
+    }
+
+    public void setField(int slot, Value value) {
+        fields[slot] = value;
     }
 
     public static NativeResult setField(String name, Value value, Map<String, ClassAttribute> fields) {
@@ -159,7 +183,7 @@ public class Instance {
     }
 
     public Map<Value, Value> asMap() {
-        Map<Value, Value> res = unfailableOp("map", new HashMap<>(Collections.singletonMap(
+        Map<Value, Value> res = unfailableOp("map", new ValueMap(Collections.singletonMap(
                 self, self
         )), "map");
         if (res == null)
@@ -191,6 +215,6 @@ public class Instance {
     }
 
     public boolean hasField(String key) {
-        return fields.containsKey(key);
+        return clazz.shape.slot(key) != -1;
     }
 }
@@ -1,10 +1,12 @@
 package language.backend.compiler.bytecode.values.classes;
 
+import language.backend.compiler.bytecode.ByteCodeOpCode;
 import language.backend.compiler.bytecode.values.bytecode.Closure;
 import language.backend.compiler.bytecode.types.Type;
 import language.backend.compiler.bytecode.values.Value;
 import language.backend.compiler.bytecode.values.bytecode.NativeResult;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -18,10 +20,17 @@ public class LanguageClass {
     public final Map<String, ClassAttribute> attributes;
     public Map<String, Value> methods;
     public Map<String, Value> binMethods;
+    // the bin methods again, indexed by the opcode they overload so the VM never looks them up by name
+    public Value[] operators;
     public List<String> generics;
 
     public Value constructor;
     public Type type;
+    public final Shape shape;
+    // the class's attributes in shape order, new instances copy their current values
+    private final ClassAttribute[] layout;
+    // methods and bin methods together, built for the first instance and shared by all of them
+    private Map<String, Value> vtable;
 
     public LanguageClass(String name, Map<String, ClassAttribute> attributes,
                          List<String> generics, LanguageClass superClass) {
@@ -29,16 +38,23 @@ public class LanguageClass {
         this.attributes = new HashMap<>();
         this.methods = new HashMap<>();
         this.binMethods = new HashMap<>();
+        this.operators = new Value[ByteCodeOpCode.Get + 1];
 
         this.superClass = superClass;
         if (superClass != null) {
             copyAttributes(superClass.attributes, this.attributes);
             this.methods = superClass.methods;
             this.binMethods = superClass.binMethods;
+            this.operators = superClass.operators;
         }
 
         this.attributes.putAll(attributes);
         this.generics = generics;
+        this.shape = new Shape(superClass != null ? superClass.shape : null, this.attributes);
+
+        this.layout = new ClassAttribute[shape.size()];
+        for (int slot = 0; slot < layout.length; slot++)
+            layout[slot] = this.attributes.get(shape.name(slot));
     }
 
     public String toString() {
@@ -46,14 +62,53 @@ public class LanguageClass {
     }
 
     public void addMethod(String name, Value value) {
+        vtable = null;
         if (name.equals("<make>"))
             constructor = value;
-        else if (value.asClosure().byteCode.isBin)
+        else if (value.asClosure().byteCode.isBin) {
             binMethods.put(name, value);
-        else
+            int op = operator(name);
+            if (op != -1)
+                operators[op] = value;
+        } else
             methods.put(name, value);
     }
 
+    public Value[] fieldValues() {
+        Value[] values = new Value[layout.length];
+        for (int slot = 0; slot < values.length; slot++)
+            values[slot] = layout[slot].val;
+        return values;
+    }
+
+    public Map<String, Value> vtable() {
+        if (vtable == null) {
+            Map<String, Value> table = new HashMap<>(methods);
+            table.putAll(binMethods);
+            vtable = Collections.unmodifiableMap(table);
+        }
+        return vtable;
+    }
+
+    // greater than is answered by lte on the right operand, every other operator by the left one
+    static int operator(String name) {
+        return switch (name) {
+            case "add" -> ByteCodeOpCode.Add;
+            case "sub" -> ByteCodeOpCode.Subtract;
+            case "mul" -> ByteCodeOpCode.Multiply;
+            case "div" -> ByteCodeOpCode.Divide;
+            case "mod" -> ByteCodeOpCode.Modulo;
+            case "fastpow" -> ByteCodeOpCode.Power;
+            case "eq" -> ByteCodeOpCode.EQUAL;
+            case "lt" -> ByteCodeOpCode.LessThan;
+            case "lte" -> ByteCodeOpCode.GreaterThan;
+            case "access" -> ByteCodeOpCode.Access;
+            case "bracket" -> ByteCodeOpCode.Index;
+            case "get" -> ByteCodeOpCode.Get;
+            default -> -1;
+        };
+    }
+
     public Value getField(String name, boolean internal) {
         ClassAttribute attr = attributes.get(name);
         if (attr != null && attr.isStatic && (!attr.isPrivate || internal))
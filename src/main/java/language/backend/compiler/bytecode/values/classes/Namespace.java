@@ -3,23 +3,48 @@ package language.backend.compiler.bytecode.values.classes;
 import language.backend.compiler.bytecode.values.Value;
 import language.backend.compiler.bytecode.values.Var;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class Namespace {
     String name;
     Map<String, Var> values;
-    List<String> publics;
+    Set<String> publics;
+    // module body that has not run yet, the first member access runs it and fills values and publics
+    private Loader loader;
 
-    public Namespace(String name, Map<String, Var> values, List<String> publics) {
+    public interface Loader {
+        void load(Namespace namespace);
+    }
+
+    public Namespace(String name, Map<String, Var> values, Collection<String> publics) {
         this.name = name;
         this.values = values;
-        this.publics = publics;
+        this.publics = new HashSet<>(publics);
     }
 
     public Namespace(String name, Map<String, Var> values) {
-        this(name, values, new ArrayList<>(values.keySet()));
+        this(name, values, values.keySet());
+    }
+
+    public Namespace(String name, Loader loader) {
+        this(name, Map.of());
+        this.loader = loader;
+    }
+
+    public void define(Map<String, Var> values, Collection<String> publics) {
+        this.values = values;
+        this.publics = new HashSet<>(publics);
+    }
+
+    private void load() {
+        Loader loader = this.loader;
+        if (loader != null) {
+            this.loader = null;
+            loader.load(this);
+        }
     }
 
     public String getName() {
@@ -27,11 +52,13 @@ public class Namespace {
     }
 
     public Map<String, Var> getValues() {
+        load();
         return values;
     }
 
     public Var getValue(String name, boolean internal) {
-        return publics.contains(name) || internal ? values.get(name) : null;
+        load();
+        return internal || publics.contains(name) ? values.get(name) : null;
     }
 
     public Value getField(String name, boolean internal) {
@@ -40,15 +67,21 @@ public class Namespace {
     }
 
     public void addField(String name, Value val) {
+        load();
         values.put(name, new Var(val, false));
         publics.add(name);
     }
 
+    public Set<String> publics() {
+        load();
+        return publics;
+    }
+
     public String name() {
         return name;
     }
 
     public Map<String, Var> values() {
-        return values;
+        return getValues();
     }
 }
@@ -0,0 +1,49 @@
+package language.backend.compiler.bytecode.values.classes;
+
+import java.util.*;
+
+public class Shape {
+    private final Map<String, Integer> index;
+    private final String[] names;
+    private final boolean[] privates;
+
+    // inherited fields keep the slots they have in the parent, the class's own fields follow them
+    public Shape(Shape parent, Map<String, ClassAttribute> attributes) {
+        List<String> order = new ArrayList<>(attributes.size());
+        if (parent != null)
+            order.addAll(Arrays.asList(parent.names));
+        for (String name : attributes.keySet())
+            if (parent == null || parent.slot(name) == -1)
+                order.add(name);
+
+        this.index = new HashMap<>();
+        this.names = order.toArray(new String[0]);
+        this.privates = new boolean[names.length];
+
+        for (int slot = 0; slot < names.length; slot++) {
+            index.put(names[slot], slot);
+            privates[slot] = attributes.get(names[slot]).isPrivate;
+        }
+    }
+
+    public int slot(String name) {
+        Integer slot = index.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    // -1 when there is no field the caller is allowed to see, methods are looked up separately
+    public int visibleSlot(String name, boolean internal) {
+        int slot = slot(name);
+        if (slot != -1 && privates[slot] && !internal)
+            return -1;
+        return slot;
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,612 @@
+package language.backend.compiler.register;
+
+import dtool.logger.ImplLogger;
+import dtool.logger.Logger;
+import dtool.logger.errors.LanguageException;
+import language.backend.compiler.AbstractCompiler;
+import language.backend.compiler.bytecode.values.Value;
+import language.frontend.lexer.token.Token;
+import language.frontend.lexer.token.TokenType;
+import language.frontend.parser.nodes.Node;
+import language.frontend.parser.nodes.NodeType;
+import language.frontend.parser.nodes.cases.Case;
+import language.frontend.parser.nodes.definitions.InlineDeclareNode;
+import language.frontend.parser.nodes.definitions.LetNode;
+import language.frontend.parser.nodes.definitions.VarAssignNode;
+import language.frontend.parser.nodes.expressions.*;
+import language.frontend.parser.nodes.operations.BinOpNode;
+import language.frontend.parser.nodes.operations.UnaryOpNode;
+import language.frontend.parser.nodes.values.BooleanNode;
+import language.frontend.parser.nodes.values.NumberNode;
+import language.frontend.parser.nodes.values.StringNode;
+import language.frontend.parser.nodes.variables.VarAccessNode;
+import language.utils.WrappedCast;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// compiles a source to RegisterOpCode instead of the stack bytecode, so both VMs can run the same program
+// the subset is the straight-line language: top-level inline functions, natives, variables, arithmetic,
+// if, while and for, anything else (classes, closures, collections, loops as values) is reported unsupported
+// locals live in fixed registers, temporaries are taken above them and given back after every statement
+public class RegisterCompiler extends AbstractCompiler {
+    public static final Logger SYSTEM_LOGGER = ImplLogger.getInstance();
+
+    private static final Object NULL_KEY = new Object();
+
+    private final Map<String, Integer> functionSlots = new HashMap<>();
+    private final List<RegisterFunction> functions = new ArrayList<>();
+    private final Map<String, Integer> globalSlots = new HashMap<>();
+    private final List<String> globals = new ArrayList<>();
+
+    private FunctionState state;
+    private RegisterProgram program;
+
+    record Local(String name, int depth, int register) {
+    }
+
+    static class Loop {
+        final List<Integer> breaks = new ArrayList<>();
+        final List<Integer> continues = new ArrayList<>();
+    }
+
+    static class FunctionState {
+        final RegisterFunction function;
+        final boolean script;
+        final List<Integer> code = new ArrayList<>();
+        final List<Value> constants = new ArrayList<>();
+        final Map<Object, Integer> constantSlots = new HashMap<>();
+        final List<Local> locals = new ArrayList<>();
+        final Deque<Loop> loops = new ArrayDeque<>();
+        int scopeDepth;
+        int next;
+
+        FunctionState(RegisterFunction function, boolean script) {
+            this.function = function;
+            this.script = script;
+        }
+    }
+
+    @Override
+    public byte[] compile(String source, List<Node> ast) {
+        List<InlineDeclareNode> definitions = new ArrayList<>();
+        for (Node node : ast) {
+            if (node.getNodeType() != NodeType.INLINE_DEFINITION)
+                continue;
+            InlineDeclareNode definition = (InlineDeclareNode) node;
+            functionSlots.put(name(definition.name), functions.size());
+            functions.add(new RegisterFunction(name(definition.name), definition.argumentNames.size()));
+            definitions.add(definition);
+        }
+
+        state = new FunctionState(new RegisterFunction("<script>", 0), true);
+        for (Node node : ast)
+            statement(node.optimize());
+        emit(RegisterOpCode.Return, nullConstant());
+        RegisterFunction script = finish();
+
+        for (int i = 0; i < definitions.size(); i++)
+            function(definitions.get(i), functions.get(i));
+
+        program = new RegisterProgram(script, functions, globals);
+        return program.listing().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public RegisterProgram getProgram() {
+        return program;
+    }
+
+    void error(String type, String message) {
+        LanguageException languageException = new LanguageException(
+                LanguageException.Type.COMPILER,
+                type + " Error", message
+        );
+
+        SYSTEM_LOGGER.fail("", "", languageException);
+    }
+
+    void unsupported(String what) {
+        error("Unsupported", what + " can't be compiled to registers yet");
+    }
+
+    static String name(Token token) {
+        return token.getValue().toString();
+    }
+
+    void function(InlineDeclareNode node, RegisterFunction function) {
+        if (node.async || node.catcher || node.defaultCount > 0 || node.argname != null || node.kwargname != null)
+            unsupported("Function '" + function.name + "' with async, catcher, default or spread arguments");
+
+        state = new FunctionState(function, false);
+        state.scopeDepth = 1;
+        for (Token argument : node.argumentNames)
+            declare(name(argument), reserve());
+
+        Node body = node.body.optimize();
+        if (node.autoreturn) {
+            emit(RegisterOpCode.Return, operand(body));
+        } else {
+            statement(body);
+            emit(RegisterOpCode.Return, nullConstant());
+        }
+        finish();
+    }
+
+    RegisterFunction finish() {
+        RegisterFunction function = state.function;
+        function.code = state.code.stream().mapToInt(Integer::intValue).toArray();
+        function.constants = state.constants.toArray(new Value[0]);
+        return function;
+    }
+
+    // emitting
+
+    void emit(int... code) {
+        for (int value : code)
+            state.code.add(value);
+    }
+
+    int here() {
+        return state.code.size();
+    }
+
+    // emits a jump whose target is the last operand and returns that operand's index for patch
+    int emitJump(int... instruction) {
+        emit(instruction);
+        emit(0);
+        return here() - 1;
+    }
+
+    void patch(int operand) {
+        state.code.set(operand, here());
+    }
+
+    int constant(Object key, Value value) {
+        Integer slot = state.constantSlots.get(key);
+        if (slot == null) {
+            slot = state.constants.size();
+            state.constants.add(value);
+            state.constantSlots.put(key, slot);
+        }
+        return -1 - slot;
+    }
+
+    int nullConstant() {
+        return constant(NULL_KEY, Value.nullValue());
+    }
+
+    int globalSlot(String name) {
+        Integer slot = globalSlots.get(name);
+        if (slot == null) {
+            slot = globals.size();
+            globals.add(name);
+            globalSlots.put(name, slot);
+        }
+        return slot;
+    }
+
+    // registers
+
+    int reserve() {
+        int register = state.next++;
+        state.function.registers = Math.max(state.function.registers, state.next);
+        return register;
+    }
+
+    void declare(String name, int register) {
+        state.locals.add(new Local(name, state.scopeDepth, register));
+    }
+
+    int resolveLocal(String name) {
+        for (int i = state.locals.size() - 1; i >= 0; i--) {
+            if (state.locals.get(i).name.equals(name))
+                return state.locals.get(i).register;
+        }
+        return -1;
+    }
+
+    // top-level declarations of the script are globals like in the stack compiler, everything nested is a local
+    boolean declaresGlobal() {
+        return state.script && state.scopeDepth == 0;
+    }
+
+    void beginScope() {
+        state.scopeDepth++;
+    }
+
+    void endScope() {
+        state.scopeDepth--;
+        state.locals.removeIf(local -> local.depth > state.scopeDepth);
+    }
+
+    // statements
+
+    // whatever a statement took above the locals it declared is free again once it is done
+    void statement(Node node) {
+        int mark = state.next;
+        switch (node.getNodeType()) {
+            case PACKAGE, PASS, NULL -> {
+            }
+            case USE -> {
+                UseNode use = (UseNode) node;
+                String directive = name(use.useToken);
+                if (directive.equals("main") || directive.equals("func"))
+                    unsupported("An entry point declared with #" + directive);
+                else if (!directive.equals("optimize"))
+                    unsupported("The directive #" + directive);
+                else if (!use.args.isEmpty())
+                    unsupported("Configuring the memo cache with #optimize arguments");
+                else
+                    emit(RegisterOpCode.Optimize);
+            }
+            case INLINE_DEFINITION -> {
+                if (!declaresGlobal())
+                    unsupported("A nested function");
+            }
+            case BODY -> {
+                beginScope();
+                for (Node statement : ((BodyNode) node).statements)
+                    statement(statement);
+                endScope();
+            }
+            case LET -> {
+                LetNode let = (LetNode) node;
+                declaration(let.name, let.value);
+            }
+            case VAR_ASSIGNMENT -> {
+                VarAssignNode assign = (VarAssignNode) node;
+                if (assign.min != null || assign.max != null)
+                    unsupported("A range checked variable");
+                if (assign.defining)
+                    declaration(assign.name, assign.value);
+                else
+                    assign(assign.name, assign.value);
+            }
+            case QUERY -> query((QueryNode) node, -1);
+            case WHILE -> loop((WhileNode) node);
+            case FOR -> loop((ForNode) node);
+            case BREAK, CONTINUE -> {
+                Loop loop = state.loops.peek();
+                if (loop == null) {
+                    error("Syntax", "'" + node.getNodeType().name().toLowerCase() + "' outside of a loop");
+                    return;
+                }
+                int jump = emitJump(RegisterOpCode.Jump);
+                (node.getNodeType() == NodeType.BREAK ? loop.breaks : loop.continues).add(jump);
+            }
+            case RETURN -> {
+                ReturnNode ret = (ReturnNode) node;
+                emit(RegisterOpCode.Return, ret.nodeToReturn != null ? operand(ret.nodeToReturn) : nullConstant());
+            }
+            default -> expression(node, reserve());
+        }
+        int top = state.locals.isEmpty() ? 0 : state.locals.get(state.locals.size() - 1).register + 1;
+        state.next = Math.max(mark, top);
+    }
+
+    void declaration(Token nameToken, Node value) {
+        String name = name(nameToken);
+        if (declaresGlobal()) {
+            emit(RegisterOpCode.SetGlobal, globalSlot(name), operand(value));
+            return;
+        }
+        int register = reserve();
+        expression(value, register);
+        declare(name, register);
+    }
+
+    void assign(Token nameToken, Node value) {
+        String name = name(nameToken);
+        int register = resolveLocal(name);
+        if (register != -1) {
+            // computing straight into the variable is only safe when nothing reads it after the first write
+            switch (value.getNodeType()) {
+                case NUMBER, STRING, BOOLEAN, NULL, VAR_ACCESS, CALL, CAST, UNARY_OPERATION -> expression(value, register);
+                case BIN_OP -> {
+                    TokenType operation = ((BinOpNode) value).operation;
+                    if (operation == TokenType.AMPERSAND || operation == TokenType.PIPE)
+                        emit(RegisterOpCode.Move, register, operand(value));
+                    else
+                        expression(value, register);
+                }
+                default -> emit(RegisterOpCode.Move, register, operand(value));
+            }
+        } else if (globalSlots.containsKey(name)) {
+            emit(RegisterOpCode.SetGlobal, globalSlot(name), operand(value));
+        } else {
+            error("Scope", "Undefined variable '" + name + "'");
+        }
+    }
+
+    void query(QueryNode node, int dst) {
+        List<Integer> ends = new ArrayList<>();
+        for (int i = 0; i < node.cases.size(); i++) {
+            Case nodeCase = node.cases.get(i);
+            int skip = jumpIfFalse(nodeCase.getCondition());
+            branch(nodeCase.getStatements(), nodeCase.isReturnValue(), dst);
+            if (i < node.cases.size() - 1 || node.elseCase != null || dst != -1)
+                ends.add(emitJump(RegisterOpCode.Jump));
+            patch(skip);
+        }
+
+        if (node.elseCase != null)
+            branch(node.elseCase.getStatements(), node.elseCase.isReturnValue(), dst);
+        else if (dst != -1)
+            emit(RegisterOpCode.Move, dst, nullConstant());
+
+        for (int end : ends)
+            patch(end);
+    }
+
+    void branch(Node statements, boolean returnsValue, int dst) {
+        beginScope();
+        if (dst != -1 && returnsValue) {
+            expression(statements, dst);
+        } else {
+            statement(statements);
+            if (dst != -1)
+                emit(RegisterOpCode.Move, dst, nullConstant());
+        }
+        endScope();
+    }
+
+    void loop(WhileNode node) {
+        if (!node.retnull)
+            unsupported("A while loop used as a value");
+
+        int skipFirst = node.conLast ? emitJump(RegisterOpCode.Jump) : -1;
+        int start = here();
+        int exit = jumpIfFalse(node.condition);
+        if (node.conLast)
+            patch(skipFirst);
+
+        Loop loop = new Loop();
+        state.loops.push(loop);
+        statement(node.body);
+        state.loops.pop();
+
+        emit(RegisterOpCode.Jump, start);
+        patch(exit);
+        for (int jump : loop.breaks)
+            patch(jump);
+        for (int jump : loop.continues)
+            state.code.set(jump, start);
+    }
+
+    // the body runs once before the first check, then the counter steps until it passes end like the For opcode does
+    void loop(ForNode node) {
+        if (!node.retnull)
+            unsupported("A for loop used as a value");
+
+        beginScope();
+        int counter = reserve();
+        expression(node.start, counter);
+        declare(name(node.name), counter);
+
+        int body = here();
+        Loop loop = new Loop();
+        state.loops.push(loop);
+        statement(node.body);
+        state.loops.pop();
+
+        for (int jump : loop.continues)
+            patch(jump);
+        int end = operand(node.end);
+        int step = node.step != null ? operand(node.step) : constant(1L, Value.integer(1));
+        emit(RegisterOpCode.ForLoop, counter, end, step, body);
+
+        for (int jump : loop.breaks)
+            patch(jump);
+        endScope();
+    }
+
+    // a comparison deciding a branch jumps on its operands without materializing the boolean
+    int jumpIfFalse(Node condition) {
+        int mark = state.next;
+        int jump;
+        if (condition.getNodeType() == NodeType.BIN_OP && branchOn(((BinOpNode) condition).operation) != -1) {
+            BinOpNode node = (BinOpNode) condition;
+            int left = operand(node.left);
+            int right = operand(node.right);
+            jump = emitJump(branchOn(node.operation), left, right);
+        } else {
+            jump = emitJump(RegisterOpCode.JumpIfFalse, operand(condition));
+        }
+        state.next = mark;
+        return jump;
+    }
+
+    static int branchOn(TokenType operation) {
+        return switch (operation) {
+            case LEFT_ANGLE -> RegisterOpCode.JumpIfNotLess;
+            case RIGHT_ANGLE -> RegisterOpCode.JumpIfNotGreater;
+            case LESS_EQUALS -> RegisterOpCode.JumpIfGreater;
+            case GREATER_EQUALS -> RegisterOpCode.JumpIfLess;
+            default -> -1;
+        };
+    }
+
+    // expressions
+
+    // a constant or a local is used where it is, anything else is computed into a fresh register
+    int operand(Node node) {
+        switch (node.getNodeType()) {
+            case NUMBER -> {
+                NumberNode number = (NumberNode) node;
+                return number.integral
+                        ? constant(number.integer, Value.integer(number.integer))
+                        : constant(number.val, new Value(number.val));
+            }
+            case STRING -> {
+                String string = ((StringNode) node).val;
+                return constant(string, new Value(string));
+            }
+            case BOOLEAN -> {
+                boolean bool = ((BooleanNode) node).val;
+                return constant(bool, new Value(bool));
+            }
+            case NULL, PASS -> {
+                return nullConstant();
+            }
+            case VAR_ACCESS -> {
+                int register = resolveLocal(name(((VarAccessNode) node).name));
+                if (register != -1)
+                    return register;
+            }
+        }
+        int register = reserve();
+        expression(node, register);
+        return register;
+    }
+
+    void expression(Node node, int dst) {
+        int mark = state.next;
+        switch (node.getNodeType()) {
+            case NUMBER, STRING, BOOLEAN, NULL, PASS -> emit(RegisterOpCode.Move, dst, operand(node));
+            case VAR_ACCESS -> {
+                String name = name(((VarAccessNode) node).name);
+                int register = resolveLocal(name);
+                if (register == dst)
+                    break;
+                if (register != -1)
+                    emit(RegisterOpCode.Move, dst, register);
+                else if (functionSlots.containsKey(name))
+                    unsupported("Using function '" + name + "' as a value");
+                else
+                    emit(RegisterOpCode.GetGlobal, dst, globalSlot(name));
+            }
+            case BIN_OP -> binary((BinOpNode) node, dst);
+            case UNARY_OPERATION -> unary((UnaryOpNode) node, dst);
+            case CAST -> {
+                CastNode cast = (CastNode) node;
+                int bits = castBits(WrappedCast.cast(cast.type.getValue()));
+                if (bits == -1)
+                    expression(cast.expr, dst);
+                else
+                    emit(RegisterOpCode.Convert, dst, operand(cast.expr), bits);
+            }
+            case CALL -> call((CallNode) node, dst);
+            case QUERY -> query((QueryNode) node, dst);
+            case BODY -> {
+                statement(node);
+                emit(RegisterOpCode.Move, dst, nullConstant());
+            }
+            case VAR_ASSIGNMENT -> {
+                VarAssignNode assign = (VarAssignNode) node;
+                if (assign.defining) {
+                    unsupported("A declaration used as a value");
+                    break;
+                }
+                statement(assign);
+                expression(new VarAccessNode(assign.name), dst);
+            }
+            default -> unsupported("A " + node.getNodeType().name().toLowerCase() + " node");
+        }
+        state.next = mark;
+    }
+
+    // the same widths the stack compiler's Convert carries, a cast to any other type only informs the type checker
+    static int castBits(List<String> type) {
+        if (type.size() != 1)
+            return -1;
+        return switch (type.get(0)) {
+            case "i8" -> 8;
+            case "i16" -> 16;
+            case "i32" -> 32;
+            case "l64", "i64" -> 64;
+            case "f32" -> 0;
+            default -> -1;
+        };
+    }
+
+    void binary(BinOpNode node, int dst) {
+        if (node.operation == TokenType.AMPERSAND || node.operation == TokenType.PIPE) {
+            expression(node.left, dst);
+            int skip = emitJump(node.operation == TokenType.AMPERSAND
+                    ? RegisterOpCode.JumpIfFalse : RegisterOpCode.JumpIfTrue, dst);
+            expression(node.right, dst);
+            patch(skip);
+            return;
+        }
+
+        int op = switch (node.operation) {
+            case PLUS -> RegisterOpCode.Add;
+            case MINUS -> RegisterOpCode.Subtract;
+            case STAR -> RegisterOpCode.Multiply;
+            case SLASH -> RegisterOpCode.Divide;
+            case PERCENT -> RegisterOpCode.Modulo;
+            case CARET -> RegisterOpCode.Power;
+            case EQUAL_EQUAL -> RegisterOpCode.Equal;
+            case BANG_EQUAL -> RegisterOpCode.NotEqual;
+            case LEFT_ANGLE -> RegisterOpCode.LessThan;
+            case RIGHT_ANGLE -> RegisterOpCode.GreaterThan;
+            case LESS_EQUALS -> RegisterOpCode.LessEqual;
+            case GREATER_EQUALS -> RegisterOpCode.GreaterEqual;
+            case TILDE_AMPERSAND -> RegisterOpCode.BitAnd;
+            case TILDE_PIPE -> RegisterOpCode.BitOr;
+            case TILDE_CARET -> RegisterOpCode.BitXor;
+            case LEFT_TILDE_ARROW -> RegisterOpCode.LeftShift;
+            case TILDE_TILDE -> RegisterOpCode.RightShift;
+            case RIGHT_TILDE_ARROW -> RegisterOpCode.SignRightShift;
+            default -> -1;
+        };
+        if (op == -1) {
+            unsupported("The operator " + node.operation);
+            return;
+        }
+
+        int left = operand(node.left);
+        int right = operand(node.right);
+        emit(op, dst, left, right);
+    }
+
+    void unary(UnaryOpNode node, int dst) {
+        switch (node.operation) {
+            case PLUS -> expression(node.node, dst);
+            case MINUS -> emit(RegisterOpCode.Negate, dst, operand(node.node));
+            case BANG -> emit(RegisterOpCode.Not, dst, operand(node.node));
+            // like Increment and Decrement these compute the neighbour without storing it
+            case PLUS_PLUS -> emit(RegisterOpCode.Add, dst, operand(node.node), constant(1L, Value.integer(1)));
+            case MINUS_MINUS -> emit(RegisterOpCode.Subtract, dst, operand(node.node), constant(1L, Value.integer(1)));
+            default -> unsupported("The operator " + node.operation);
+        }
+    }
+
+    // arguments are computed into consecutive registers on top of everything live, the callee's frame starts at the first
+    void call(CallNode node, int dst) {
+        if (node.nodeToCall.getNodeType() != NodeType.VAR_ACCESS || !node.kwargs.isEmpty()) {
+            unsupported("A call to anything but a named function");
+            return;
+        }
+        String name = name(((VarAccessNode) node.nodeToCall).name);
+        if (resolveLocal(name) != -1) {
+            unsupported("Calling the local '" + name + "'");
+            return;
+        }
+
+        int argBase = state.next;
+        for (Node argument : node.argNodes) {
+            if (argument.getNodeType() == NodeType.SPREAD)
+                unsupported("A spread argument");
+            expression(argument, reserve());
+        }
+        int argc = node.argNodes.size();
+        // the callee's frame may be empty, its result still needs a register of the caller
+        state.function.registers = Math.max(state.function.registers, argBase + 1);
+
+        Integer function = functionSlots.get(name);
+        if (function != null) {
+            int arity = functions.get(function).arity;
+            if (arity != argc)
+                error("Argument", "Expected " + arity + " arguments for '" + name + "' but got " + argc);
+            emit(RegisterOpCode.Call, dst, function, argBase, argc);
+        } else {
+            emit(RegisterOpCode.CallNative, dst, globalSlot(name), argBase, argc);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package language.backend.compiler.register;
+
+import language.backend.compiler.bytecode.values.Value;
+
+// one compiled function, its parameters arrive in registers 0 .. arity - 1
+public class RegisterFunction {
+    public final String name;
+    public final int arity;
+
+    public int registers;
+    public int[] code;
+    public Value[] constants;
+
+    public RegisterFunction(String name, int arity) {
+        this.name = name;
+        this.arity = arity;
+    }
+
+    public Value constant(int rk) {
+        return constants[-1 - rk];
+    }
+
+    @Override
+    public String toString() {
+        return "<function " + name + ">";
+    }
+}
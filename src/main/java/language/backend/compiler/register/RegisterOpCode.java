@@ -0,0 +1,64 @@
+package language.backend.compiler.register;
+
+// three-address instructions over the registers of the running frame
+// an operand marked rk is a register when >= 0 and constant -1 - rk when negative
+// jump targets are absolute indices into the function's code
+public interface RegisterOpCode {
+
+    // dst, rk
+    int Move =                  0x00;
+    // dst, global slot
+    int GetGlobal =             0x01;
+    // global slot, rk
+    int SetGlobal =             0x02;
+
+    // dst, rk, rk
+    int Add =                   0x03;
+    int Subtract =              0x04;
+    int Multiply =              0x05;
+    int Divide =                0x06;
+    int Modulo =                0x07;
+    int Power =                 0x08;
+    int BitAnd =                0x09;
+    int BitOr =                 0x0A;
+    int BitXor =                0x0B;
+    int LeftShift =             0x0C;
+    int RightShift =            0x0D;
+    int SignRightShift =        0x0E;
+    int Equal =                 0x0F;
+    int NotEqual =              0x10;
+    int LessThan =              0x11;
+    int GreaterThan =           0x12;
+    int LessEqual =             0x13;
+    int GreaterEqual =          0x14;
+
+    // dst, rk
+    int Not =                   0x15;
+    int Negate =                0x16;
+    // dst, rk, bits
+    int Convert =               0x17;
+
+    // target
+    int Jump =                  0x18;
+    // rk, target
+    int JumpIfFalse =           0x19;
+    int JumpIfTrue =            0x1A;
+    // rk, rk, target, the comparison deciding a branch never materializes its boolean
+    int JumpIfNotLess =         0x1B;
+    int JumpIfNotGreater =      0x1C;
+    int JumpIfLess =            0x1D;
+    int JumpIfGreater =         0x1E;
+    // counter register, end rk, step rk, body target
+    int ForLoop =               0x1F;
+
+    // dst, function, first argument register, argc
+    int Call =                  0x20;
+    // dst, global slot, first argument register, argc
+    int CallNative =            0x21;
+    // rk
+    int Return =                0x22;
+
+    // #optimize, the calls this frame and its callees make from here on are memoised like on the stack VM
+    int Optimize =              0x23;
+
+}
@@ -0,0 +1,76 @@
+package language.backend.compiler.register;
+
+import java.lang.reflect.Field;
+import java.util.List;
+
+// the script body plus every function it can call, globals are addressed by slot
+public class RegisterProgram {
+    private static final String[] NAMES = new String[256];
+
+    static {
+        for (Field field : RegisterOpCode.class.getFields()) {
+            try {
+                NAMES[field.getInt(null)] = field.getName();
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+    }
+
+    public final RegisterFunction script;
+    public final List<RegisterFunction> functions;
+    public final List<String> globals;
+
+    public RegisterProgram(RegisterFunction script, List<RegisterFunction> functions, List<String> globals) {
+        this.script = script;
+        this.functions = functions;
+        this.globals = globals;
+    }
+
+    public static int operandCount(int op) {
+        return switch (op) {
+            case RegisterOpCode.Optimize -> 0;
+            case RegisterOpCode.Jump, RegisterOpCode.Return -> 1;
+            case RegisterOpCode.Move, RegisterOpCode.GetGlobal, RegisterOpCode.SetGlobal,
+                    RegisterOpCode.Not, RegisterOpCode.Negate,
+                    RegisterOpCode.JumpIfFalse, RegisterOpCode.JumpIfTrue -> 2;
+            case RegisterOpCode.Call, RegisterOpCode.CallNative, RegisterOpCode.ForLoop -> 4;
+            default -> 3;
+        };
+    }
+
+    public String listing() {
+        StringBuilder out = new StringBuilder();
+        list(out, script);
+        for (RegisterFunction function : functions)
+            list(out, function);
+        return out.toString();
+    }
+
+    private void list(StringBuilder out, RegisterFunction function) {
+        out.append(String.format("== %s (%d registers) ==%n", function.name, function.registers));
+        int ip = 0;
+        while (ip < function.code.length) {
+            int op = function.code[ip];
+            out.append(String.format("%04d %-16s", ip, NAMES[op]));
+            int count = operandCount(op);
+            for (int i = 1; i <= count; i++)
+                out.append(' ').append(operand(function, op, i, function.code[ip + i]));
+            out.append(System.lineSeparator());
+            ip += count + 1;
+        }
+    }
+
+    private String operand(RegisterFunction function, int op, int index, int value) {
+        boolean global = index == 2 && (op == RegisterOpCode.GetGlobal || op == RegisterOpCode.CallNative)
+                || index == 1 && op == RegisterOpCode.SetGlobal;
+        if (global)
+            return "@" + globals.get(value);
+        if (index == 2 && op == RegisterOpCode.Call)
+            return functions.get(value).name;
+        if (index == operandCount(op) && (op >= RegisterOpCode.Convert && op <= RegisterOpCode.CallNative))
+            return String.valueOf(value);
+        if (value < 0)
+            return "k(" + function.constant(value) + ")";
+        return "r" + value;
+    }
+}
@@ -182,10 +182,14 @@ public class Lexer {
                     tokenList.add(new Token(lexerToken.getType(),
                             lexerToken.getContent().equals("true"), startPos, endPos));
                 }
-                case BYTE, LONG, DOUBLE, FLOAT, INTEGER, SHORT -> {
+                case DOUBLE, FLOAT -> {
                     tokenList.add(new Token(lexerToken.getType(),
                             Double.valueOf(lexerToken.getContent()), startPos, endPos));
                 }
+                case BYTE, LONG, INTEGER, SHORT -> {
+                    tokenList.add(new Token(lexerToken.getType(),
+                            parseInteger(lexerToken.getContent()), startPos, endPos));
+                }
                 case STRING -> {
                     tokenList.add(makeString(lexerToken.getContent(), startPos, endPos));
                 }
@@ -207,6 +211,20 @@ public class Lexer {
         return tokenList;
     }
 
+    // integer literals may carry a 0b prefix and u/l suffixes, the value travels as a double
+    // unless a double would round it, those stay a Long so the compiler gets the exact integer
+    private static Number parseInteger(String content) {
+        String digits = content.replaceAll("[LlUu]+$", "");
+        try {
+            long value = digits.startsWith("0b")
+                    ? Long.parseLong(digits.substring(2), 2)
+                    : Long.parseLong(digits);
+            return Math.abs(value) <= 1L << 53 ? (Number) (double) value : (Number) value;
+        } catch (NumberFormatException e) {
+            return Double.valueOf(digits);
+        }
+    }
+
     public int getHexDecimalNumber(String hex) {
         hex = hex.toUpperCase(Locale.ROOT);
 
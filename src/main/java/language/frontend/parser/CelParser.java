@@ -563,7 +563,7 @@ public class CelParser extends Parser {
                     return result.failure(LanguageException.invalidSyntax(currentToken.getStartPosition(),
                             currentToken.getEndPosition(), "Expected integer"));
                 min = 0;
-                max = ((Double) currentToken.getValue()).intValue() * (neg ? -1 : 1);
+                max = ((Number) currentToken.getValue()).intValue() * (neg ? -1 : 1);
                 result.registerAdvancement();
                 this.push();
                 if (currentToken.getType() == TokenType.PIPE) {
@@ -579,7 +579,7 @@ public class CelParser extends Parser {
                         return result.failure(LanguageException.invalidSyntax(currentToken.getStartPosition(),
                                 currentToken.getEndPosition(), "Expected integer"));
                     min = max;
-                    max = ((Double) currentToken.getValue()).intValue() * (neg ? -1 : 1);
+                    max = ((Number) currentToken.getValue()).intValue() * (neg ? -1 : 1);
                     result.registerAdvancement();
                     this.push();
                 }
@@ -741,7 +741,7 @@ public class CelParser extends Parser {
         this.push();
         result.registerAdvancement();
         List<Token> args = new ArrayList<>();
-        while (currentToken.getType().equals(TokenType.IDENTIFIER)) {
+        while (currentToken.getType().equals(TokenType.IDENTIFIER) || isHeaderNumber(currentToken.getType())) {
             args.add(currentToken);
             result.registerAdvancement();
             this.push();
@@ -749,6 +749,11 @@ public class CelParser extends Parser {
         return result.success(new UseNode(useToken, args));
     }
 
+    // header arguments are names or plain numbers, e.g. #optimize fib 500;
+    private boolean isHeaderNumber(TokenType type) {
+        return type == TokenType.INTEGER || type == TokenType.DOUBLE || type == TokenType.LONG;
+    }
+
     public ParseResult<Node> parseBitShiftExpression() {
         return binOp(this::parseBitWiseExpression, Arrays.asList(TokenType.LEFT_TILDE_ARROW, TokenType.TILDE_TILDE, TokenType.RIGHT_TILDE_ARROW), this::parseExpression);
     }
@@ -591,7 +591,7 @@ public class RewriteParser extends Parser {
                 if (currentToken.getType() != TokenType.INTEGER)
                     return unexpected("integer");
                 min = 0;
-                max = ((Double) currentToken.getValue()).intValue() * (neg ? -1 : 1);
+                max = ((Number) currentToken.getValue()).intValue() * (neg ? -1 : 1);
                 result.registerAdvancement();
                 this.push();
                 if (currentToken.getType() == TokenType.PIPE) {
@@ -607,7 +607,7 @@ public class RewriteParser extends Parser {
                         return unexpected("integer");
 
                     min = max;
-                    max = ((Double) currentToken.getValue()).intValue() * (neg ? -1 : 1);
+                    max = ((Number) currentToken.getValue()).intValue() * (neg ? -1 : 1);
                     result.registerAdvancement();
                     this.push();
                 }
@@ -796,7 +796,7 @@ public class RewriteParser extends Parser {
         this.push();
         result.registerAdvancement();
         List<Token> args = new ArrayList<>();
-        while (currentToken.getType().equals(TokenType.IDENTIFIER)) {
+        while (currentToken.getType().equals(TokenType.IDENTIFIER) || isHeaderNumber(currentToken.getType())) {
             args.add(currentToken);
             result.registerAdvancement();
             this.push();
@@ -804,6 +804,11 @@ public class RewriteParser extends Parser {
         return result.success(new UseNode(useToken, args));
     }
 
+    // header arguments are names or plain numbers, e.g. #optimize fib 500;
+    private boolean isHeaderNumber(TokenType type) {
+        return type == TokenType.INTEGER || type == TokenType.DOUBLE || type == TokenType.LONG;
+    }
+
     /**
      * Parse bit shift expression parse result.
      *
@@ -4,6 +4,7 @@ import language.frontend.lexer.token.TokenType;
 import language.frontend.parser.nodes.Node;
 import language.frontend.parser.nodes.NodeType;
 import language.frontend.parser.nodes.values.*;
+import language.backend.compiler.bytecode.values.Value;
 import language.vm.VirtualMachine;
 
 import java.util.*;
@@ -52,6 +53,12 @@ public class BinOpNode extends Node {
             if (left.getClass() != right.getClass())
                 return opt;
 
+            if (left instanceof NumberNode a && right instanceof NumberNode b && a.integral && b.integral) {
+                Node folded = foldIntegers(a.integer, b.integer);
+                if (folded != null)
+                    return folded;
+            }
+
             switch (operation) {
                 case AMPERSAND -> {
                     return new BooleanNode(left.asBoolean() && right.asBoolean(), getStartPosition(), getEndPosition());
@@ -160,6 +167,36 @@ public class BinOpNode extends Node {
         return this;
     }
 
+    // two integer constants fold on long with the VM's rules, so the constant is what the program would compute
+    // null for the operations that fold the same either way
+    private Node foldIntegers(long x, long y) {
+        Value value = switch (operation) {
+            case PLUS -> Value.add(x, y);
+            case MINUS -> Value.subtract(x, y);
+            case STAR -> Value.multiply(x, y);
+            case SLASH -> y != 0 && x % y == 0 ? Value.integer(x / y) : Value.of((double) x / y);
+            case PERCENT -> y != 0 ? Value.integer(x % y) : Value.of(Double.NaN);
+            case TILDE_AMPERSAND -> Value.integer(x & y);
+            case TILDE_PIPE -> Value.integer(x | y);
+            case TILDE_CARET -> Value.integer(x ^ y);
+            case LEFT_TILDE_ARROW -> Value.integer(x << y);
+            case TILDE_TILDE -> Value.integer(x >>> y);
+            case RIGHT_TILDE_ARROW -> Value.integer(x >> y);
+            case EQUAL_EQUAL -> Value.of(x == y);
+            case BANG_EQUAL -> Value.of(x != y);
+            case LEFT_ANGLE -> Value.of(x < y);
+            case LESS_EQUALS -> Value.of(x <= y);
+            case GREATER_EQUALS -> Value.of(x >= y);
+            case RIGHT_ANGLE -> Value.of(x > y);
+            default -> null;
+        };
+        if (value == null)
+            return null;
+        if (value.isBool())
+            return new BooleanNode(value.asBool(), getStartPosition(), getEndPosition());
+        return NumberNode.of(value, getStartPosition(), getEndPosition());
+    }
+
     @Override
     public List<Node> getChildren() {
         return new ArrayList<>(Arrays.asList(left, right));
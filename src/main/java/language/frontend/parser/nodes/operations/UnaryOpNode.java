@@ -3,6 +3,7 @@ package language.frontend.parser.nodes.operations;
 import language.frontend.parser.nodes.NodeType;
 import language.frontend.lexer.token.TokenType;
 
+import language.backend.compiler.bytecode.values.Value;
 import language.vm.VirtualMachine;
 import language.frontend.parser.nodes.Node;
 import language.frontend.parser.nodes.values.BooleanNode;
@@ -48,6 +49,18 @@ public class UnaryOpNode extends Node {
         if (node.isConstant() && operation != TokenType.TILDE) {
             Node node = this.node.optimize();
 
+            // an integer constant folds with the VM's overflow rule and stays integral
+            if (node instanceof NumberNode number && number.integral) {
+                Value value = switch (operation) {
+                    case MINUS -> Value.negate(number.integer);
+                    case MINUS_MINUS -> Value.subtract(number.integer, 1);
+                    case PLUS_PLUS -> Value.add(number.integer, 1);
+                    default -> null;
+                };
+                if (value != null)
+                    return NumberNode.of(value, node.getStartPosition(), node.getEndPosition());
+            }
+
             return switch (operation) {
                 case MINUS -> new NumberNode(-node.asNumber(), node.getStartPosition(), node.getEndPosition());
                 case TILDE -> new NumberNode(VirtualMachine.bitOp(
@@ -1,5 +1,6 @@
 package language.frontend.parser.nodes.values;
 
+import language.backend.compiler.bytecode.values.Value;
 import language.frontend.parser.nodes.Node;
 import language.frontend.parser.nodes.NodeType;
 import language.frontend.lexer.token.Position;
@@ -11,18 +12,25 @@ import language.frontend.lexer.token.TokenType;
 public class NumberNode extends ValueNode {
     public final double val;
     public final boolean hex;
+    // written without a decimal point, compiles to an integer constant
+    public final boolean integral;
+    public final long integer;
 
     public NumberNode(Token tok) {
         super(tok);
-        val = (double) tok.getValue();
+        val = ((Number) tok.getValue()).doubleValue();
         hex = false;
+        integral = isIntegral(tok.getType());
+        integer = exact(tok.getValue());
         nodeType = NodeType.NUMBER;
     }
 
     public NumberNode(Token tok, boolean hex) {
         super(tok);
-        val = (double) tok.getValue();
+        val = ((Number) tok.getValue()).doubleValue();
         this.hex = hex;
+        integral = isIntegral(tok.getType());
+        integer = exact(tok.getValue());
         nodeType = NodeType.NUMBER;
     }
 
@@ -30,16 +38,45 @@ public class NumberNode extends ValueNode {
         super(new Token(TokenType.IDENTIFIER, "null", startPosition, endPosition));
         val = v;
         hex = true;
+        integral = true;
+        integer = v;
         nodeType = NodeType.NUMBER;
     }
 
+    public NumberNode(long v, Position startPosition, Position endPosition) {
+        super(new Token(TokenType.IDENTIFIER, "null", startPosition, endPosition));
+        val = v;
+        hex = true;
+        integral = true;
+        integer = v;
+        nodeType = NodeType.NUMBER;
+    }
+
+    // a folded constant, an integer result stays integral
+    public static NumberNode of(Value value, Position startPosition, Position endPosition) {
+        return value.isIntegral()
+                ? new NumberNode(value.asLong(), startPosition, endPosition)
+                : new NumberNode(value.asNumber(), startPosition, endPosition);
+    }
+
     public NumberNode(double v, Position startPosition, Position endPosition) {
         super(new Token(TokenType.IDENTIFIER, "null", startPosition, endPosition));
         val = v;
         hex = true;
+        integral = false;
+        integer = (long) v;
         nodeType = NodeType.NUMBER;
     }
 
+    // the lexer hands over a Long only for integers a double cannot hold
+    private static long exact(Object value) {
+        return value instanceof Long integer ? integer : ((Number) value).longValue();
+    }
+
+    private static boolean isIntegral(TokenType type) {
+        return type == TokenType.INTEGER || type == TokenType.LONG || type == TokenType.SHORT || type == TokenType.BYTE;
+    }
+
     @Override
     public double asNumber() {
         return val;
@@ -57,8 +94,9 @@ public class NumberNode extends ValueNode {
 
     @Override
     public boolean equals(Node other) {
-        if (other instanceof NumberNode) {
-            return val == ((NumberNode) other).val;
+        // two integers compare exactly, as they do in the VM
+        if (other instanceof NumberNode number) {
+            return integral && number.integral ? integer == number.integer : val == number.val;
         }
         return false;
     }
@@ -1,5 +1,6 @@
 package language.vm;
 
+import language.backend.compiler.bytecode.headers.Cache;
 import language.backend.compiler.bytecode.values.Value;
 import language.backend.compiler.bytecode.values.bytecode.Closure;
 
@@ -12,6 +13,17 @@ public class CallFrame {
     public int optimization = 0;
     public boolean catchError = false;
     public boolean addPeek = false;
+    // pending memo entry, stored when the frame returns
+    public Cache memoKey;
+    // a fused compare-and-jump whose compare went to an operator overload, the jump is taken
+    // by returnFrame on the value the overload returns instead of recursing into run()
+    public boolean jumpPending;
+    public int jumpOffset;
+    // a TableSwitch whose case compare went to an eq overload, returnFrame takes the case if the
+    // overload said true and otherwise carries on comparing from the next one
+    public SwitchTable switchPending;
+    public Value switchReference;
+    public int switchCase;
 
     public CallFrame(Closure closure, int ip, int slots, String returnType) {
         this(closure, ip, slots, returnType, null);
@@ -0,0 +1,86 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.values.Var;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class GlobalTable extends HashMap<String, Var> {
+    private static final long serialVersionUID = 1L;
+
+    // slot numbers are handed out once per name and shared by every linked chunk
+    private static final Map<String, Integer> SLOTS = new ConcurrentHashMap<>();
+    private static final List<String> NAMES = new ArrayList<>();
+
+    private Var[] vars = new Var[64];
+    // bumped whenever a name is bound to a different Var, quickened reads compare it to the one they saw
+    private int version;
+
+    public static synchronized int slot(String name) {
+        Integer slot = SLOTS.get(name);
+        if (slot == null) {
+            slot = NAMES.size();
+            SLOTS.put(name, slot);
+            NAMES.add(name);
+        }
+        return slot;
+    }
+
+    public static synchronized String name(int slot) {
+        return NAMES.get(slot);
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public Var get(int slot) {
+        if (slot < vars.length) {
+            Var var = vars[slot];
+            if (var != null)
+                return var;
+        }
+        // slot was linked after the variable was defined, resolve it once by name
+        Var var = super.get(name(slot));
+        if (var != null)
+            store(slot, var);
+        return var;
+    }
+
+    @Override
+    public Var put(String name, Var var) {
+        Integer slot = SLOTS.get(name);
+        if (slot != null)
+            store(slot, var);
+        version++;
+        return super.put(name, var);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends Var> map) {
+        for (Map.Entry<? extends String, ? extends Var> entry : map.entrySet())
+            put(entry.getKey(), entry.getValue());
+    }
+
+    @Override
+    public Var remove(Object name) {
+        Integer slot = SLOTS.get(name);
+        if (slot != null && slot < vars.length)
+            vars[slot] = null;
+        version++;
+        return super.remove(name);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(vars, null);
+        version++;
+        super.clear();
+    }
+
+    private void store(int slot, Var var) {
+        if (slot >= vars.length)
+            vars = Arrays.copyOf(vars, Math.max(slot + 1, vars.length * 2));
+        vars[slot] = var;
+    }
+}
@@ -0,0 +1,29 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.values.classes.Shape;
+
+public class InlineCache {
+    public static final int MAX_ENTRIES = 4;
+    public static final int MISS = -2;
+
+    private final Shape[] shapes = new Shape[MAX_ENTRIES];
+    private final int[] slots = new int[MAX_ENTRIES];
+    private int size = 0;
+
+    public int lookup(Shape shape) {
+        for (int i = 0; i < size; i++) {
+            if (shapes[i] == shape)
+                return slots[i];
+        }
+        return MISS;
+    }
+
+    public void update(Shape shape, int slot) {
+        // past MAX_ENTRIES the site is megamorphic and keeps resolving through the shape
+        if (size == MAX_ENTRIES)
+            return;
+        shapes[size] = shape;
+        slots[size] = slot;
+        size++;
+    }
+}
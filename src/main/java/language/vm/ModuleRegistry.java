@@ -0,0 +1,19 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.values.classes.Namespace;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// namespaces of imported modules by name, a module body runs once however often and from wherever it is imported
+public class ModuleRegistry {
+    private final Map<String, Namespace> modules = new HashMap<>();
+
+    public synchronized Namespace get(String name) {
+        return modules.get(name);
+    }
+
+    public synchronized void put(String name, Namespace namespace) {
+        modules.put(name, namespace);
+    }
+}
@@ -0,0 +1,93 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.ByteCodeOpCode;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// counts every straight-line run of up to MAX_LENGTH opcodes the VM dispatches
+// a taken jump, a call or a return starts a new run, so each sequence counted could be fused into one instruction
+// the dump is one "count<TAB>Op Op ..." line per sequence, IR_OpcodeMiner ranks them
+public class OpcodeHistogram {
+    public static final int MAX_LENGTH = 4;
+
+    private static final String[] NAMES = new String[256];
+
+    static {
+        for (Field field : ByteCodeOpCode.class.getFields()) {
+            try {
+                int op = field.getInt(null);
+                if (op >= 0 && op < NAMES.length && NAMES[op] == null)
+                    NAMES[op] = field.getName();
+            } catch (IllegalAccessException ignored) {
+            }
+        }
+    }
+
+    private final Map<Long, Long> counts = new HashMap<>();
+    private final int[] window = new int[MAX_LENGTH];
+    private int length = 0;
+    private CallFrame frame;
+
+    public static String name(int op) {
+        String name = op >= 0 && op < NAMES.length ? NAMES[op] : null;
+        return name != null ? name : String.valueOf(op);
+    }
+
+    public static int opcode(String name) {
+        for (int op = 0; op < NAMES.length; op++)
+            if (name.equals(NAMES[op]))
+                return op;
+        return Integer.parseInt(name);
+    }
+
+    public void record(CallFrame frame, int op) {
+        if (frame != this.frame) {
+            this.frame = frame;
+            length = 0;
+        }
+        if (length == MAX_LENGTH) {
+            System.arraycopy(window, 1, window, 0, MAX_LENGTH - 1);
+            length--;
+        }
+        window[length++] = op;
+
+        // every suffix of the window ends at this instruction
+        long key = 0;
+        for (int n = 1; n <= length; n++) {
+            key |= (long) (window[length - n] & 0xFF) << ((n - 1) * 8);
+            counts.merge(((long) n << 32) | key, 1L, Long::sum);
+        }
+    }
+
+    // control left the straight line, the next opcode starts a new sequence
+    public void cut() {
+        length = 0;
+    }
+
+    public static List<Integer> sequence(long key) {
+        int n = (int) (key >>> 32);
+        List<Integer> ops = new ArrayList<>(n);
+        for (int i = n - 1; i >= 0; i--)
+            ops.add((int) (key >>> (i * 8)) & 0xFF);
+        return ops;
+    }
+
+    public void dump(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+                StringBuilder line = new StringBuilder().append(entry.getValue()).append('\t');
+                for (int op : sequence(entry.getKey()))
+                    line.append(name(op)).append(' ');
+                out.println(line.toString().trim());
+            }
+        }
+    }
+}
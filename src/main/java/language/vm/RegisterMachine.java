@@ -0,0 +1,366 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.headers.Cache;
+import language.backend.compiler.bytecode.values.Value;
+import language.backend.compiler.bytecode.values.Var;
+import language.backend.compiler.bytecode.values.bytecode.NativeResult;
+import language.backend.compiler.register.RegisterFunction;
+import language.backend.compiler.register.RegisterProgram;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static language.backend.compiler.register.RegisterOpCode.*;
+
+// runs a RegisterProgram, the register counterpart of VirtualMachine for the same programs
+// every frame is a window into one register file, a call's window starts at the caller's first argument register
+// arithmetic, comparisons and conversions give exactly the values the stack VM gives
+public class RegisterMachine {
+    public static final int FRAMES_MAX = VirtualMachine.FRAMES_MAX;
+
+    private final RegisterFunction[] functions;
+    private final String[] globalNames;
+    private final Value[] globals;
+    private Value[] registers = new Value[1024];
+
+    private final RegisterFunction[] frameFunctions = new RegisterFunction[FRAMES_MAX];
+    private final int[] frameBases = new int[FRAMES_MAX];
+    private final int[] frameIps = new int[FRAMES_MAX];
+    private final int[] frameResults = new int[FRAMES_MAX];
+    // a frame memoises the calls it makes once it ran #optimize or was called by one that did
+    private final boolean[] frameMemo = new boolean[FRAMES_MAX];
+    private final Cache[] frameKeys = new Cache[FRAMES_MAX];
+    private int frameCount = 0;
+
+    private final RegisterProgram program;
+    private String traceName = "<register>";
+
+    public RegisterMachine(RegisterProgram program) {
+        this.program = program;
+        this.functions = program.functions.toArray(new RegisterFunction[0]);
+        this.globalNames = program.globals.toArray(new String[0]);
+        this.globals = new Value[globalNames.length];
+
+        VirtualMachine.defineGlobals(new HashMap<>());
+        for (int i = 0; i < globalNames.length; i++) {
+            Var var = VirtualMachine.GLOBAL_VAR_ARGS.get(globalNames[i]);
+            if (var != null)
+                globals[i] = var.val;
+        }
+    }
+
+    public RegisterMachine trace(String name) {
+        traceName = name;
+        return this;
+    }
+
+    void runtimeError(String message, String reason, int ip) {
+        frameIps[frameCount - 1] = ip;
+        StringBuilder output = new StringBuilder(message + ": " + reason);
+        for (int i = frameCount - 1; i >= 0; i--) {
+            String context = i == 0 ? traceName : frameFunctions[i].name;
+            int offset = i == 0 ? 0 : frameIps[i - 1] - 5;
+            output.append("\n    at ").append(context).append(" (").append(traceName).append(":").append(offset).append(")");
+        }
+        System.err.println(output);
+        System.exit(-1);
+    }
+
+    static Value rk(Value[] registers, int base, Value[] constants, int operand) {
+        return operand >= 0 ? registers[base + operand] : constants[-1 - operand];
+    }
+
+    public VirtualMachineResult run() {
+        RegisterFunction function = program.script;
+        int[] code = function.code;
+        Value[] constants = function.constants;
+        int base = 0;
+        int ip = 0;
+
+        Value[] registers = ensure(function.registers);
+        frameFunctions[0] = function;
+        frameMemo[0] = false;
+        frameCount = 1;
+
+        while (true) {
+            switch (code[ip++]) {
+                case Move -> {
+                    int dst = code[ip++];
+                    registers[base + dst] = rk(registers, base, constants, code[ip++]);
+                }
+                case GetGlobal -> {
+                    int dst = code[ip++];
+                    int slot = code[ip++];
+                    Value value = globals[slot];
+                    if (value == null) {
+                        runtimeError("Scope", "Undefined variable '" + globalNames[slot] + "'", ip);
+                        return VirtualMachineResult.ERROR;
+                    }
+                    registers[base + dst] = value;
+                }
+                case SetGlobal -> {
+                    int slot = code[ip++];
+                    globals[slot] = rk(registers, base, constants, code[ip++]);
+                }
+                case Add, Subtract, LessThan, GreaterThan -> {
+                    int op = code[ip - 1];
+                    int dst = code[ip++];
+                    Value a = rk(registers, base, constants, code[ip++]);
+                    Value b = rk(registers, base, constants, code[ip++]);
+                    if (a.isIntegral() && b.isIntegral()) {
+                        long x = a.asLong();
+                        long y = b.asLong();
+                        registers[base + dst] = switch (op) {
+                            case Add -> Value.add(x, y);
+                            case Subtract -> Value.subtract(x, y);
+                            case LessThan -> Value.of(x < y);
+                            default -> Value.of(x > y);
+                        };
+                    } else {
+                        registers[base + dst] = binary(op, a, b);
+                    }
+                }
+                case Multiply, Divide, Modulo, Power, BitAnd, BitOr, BitXor, LeftShift, RightShift, SignRightShift,
+                        Equal, NotEqual, LessEqual, GreaterEqual -> {
+                    int op = code[ip - 1];
+                    int dst = code[ip++];
+                    Value a = rk(registers, base, constants, code[ip++]);
+                    Value b = rk(registers, base, constants, code[ip++]);
+                    registers[base + dst] = binary(op, a, b);
+                }
+                case Not -> {
+                    int dst = code[ip++];
+                    registers[base + dst] = Value.of(!rk(registers, base, constants, code[ip++]).asBool());
+                }
+                case Negate -> {
+                    int dst = code[ip++];
+                    Value a = rk(registers, base, constants, code[ip++]);
+                    registers[base + dst] = a.isIntegral() ? Value.negate(a.asLong()) : Value.of(-a.asNumber());
+                }
+                case Convert -> {
+                    int dst = code[ip++];
+                    Value a = rk(registers, base, constants, code[ip++]);
+                    registers[base + dst] = VirtualMachine.convert(a, code[ip++]);
+                }
+                case Jump -> ip = code[ip];
+                case JumpIfFalse -> {
+                    boolean condition = rk(registers, base, constants, code[ip++]).asBool();
+                    ip = condition ? ip + 1 : code[ip];
+                }
+                case JumpIfTrue -> {
+                    boolean condition = rk(registers, base, constants, code[ip++]).asBool();
+                    ip = condition ? code[ip] : ip + 1;
+                }
+                case JumpIfNotLess, JumpIfNotGreater, JumpIfLess, JumpIfGreater -> {
+                    int op = code[ip - 1];
+                    Value a = rk(registers, base, constants, code[ip++]);
+                    Value b = rk(registers, base, constants, code[ip++]);
+                    boolean jump = switch (op) {
+                        case JumpIfNotLess -> !less(a, b);
+                        case JumpIfNotGreater -> !greater(a, b);
+                        case JumpIfLess -> less(a, b);
+                        default -> greater(a, b);
+                    };
+                    ip = jump ? code[ip] : ip + 1;
+                }
+                case ForLoop -> {
+                    int counter = base + code[ip++];
+                    Value end = rk(registers, base, constants, code[ip++]);
+                    Value step = rk(registers, base, constants, code[ip++]);
+                    Value current = registers[counter];
+                    boolean done;
+                    if (current.isIntegral() && end.isIntegral() && step.isIntegral()) {
+                        long s = step.asLong();
+                        long e = end.asLong();
+                        Value next = Value.add(current.asLong(), s);
+                        registers[counter] = next;
+                        // a counter that no longer fits a long has gone past any long end
+                        long i = next.asLong();
+                        done = !next.isIntegral() || (i >= e && s >= 0) || (i <= e && s < 0);
+                    } else {
+                        double s = step.asNumber();
+                        double e = end.asNumber();
+                        Value next = current.isIntegral() && s == (long) s
+                                ? Value.add(current.asLong(), (long) s)
+                                : Value.of(current.asNumber() + s);
+                        registers[counter] = next;
+                        double i = next.asNumber();
+                        done = (i >= e && s >= 0) || (i <= e && s < 0);
+                    }
+                    ip = done ? ip + 1 : code[ip];
+                }
+                case Call -> {
+                    int dst = code[ip++];
+                    RegisterFunction callee = functions[code[ip++]];
+                    int argBase = code[ip++];
+                    ip++;
+                    if (frameCount == FRAMES_MAX) {
+                        runtimeError("Stack", "Stack overflow", ip);
+                        return VirtualMachineResult.ERROR;
+                    }
+                    Cache key = null;
+                    if (frameMemo[frameCount - 1]) {
+                        key = new Cache(callee, Arrays.copyOfRange(registers, base + argBase, base + argBase + callee.arity));
+                        Value cached = VirtualMachine.MEMO_CACHE.get(key);
+                        if (cached != null) {
+                            registers[base + dst] = cached;
+                            continue;
+                        }
+                    }
+                    frameIps[frameCount - 1] = ip;
+                    base += argBase;
+                    frameFunctions[frameCount] = callee;
+                    frameBases[frameCount] = base;
+                    frameResults[frameCount] = dst;
+                    frameMemo[frameCount] = key != null;
+                    frameKeys[frameCount] = key;
+                    frameCount++;
+
+                    registers = ensure(base + callee.registers);
+                    function = callee;
+                    code = callee.code;
+                    constants = callee.constants;
+                    ip = 0;
+                }
+                case CallNative -> {
+                    int dst = code[ip++];
+                    int slot = code[ip++];
+                    int argBase = base + code[ip++];
+                    int argc = code[ip++];
+                    Value callee = globals[slot];
+                    if (callee == null) {
+                        runtimeError("Scope", "Undefined variable '" + globalNames[slot] + "'", ip);
+                        return VirtualMachineResult.ERROR;
+                    }
+                    if (!callee.isNativeFunc()) {
+                        runtimeError("Type", "Can only call functions and classes", ip);
+                        return VirtualMachineResult.ERROR;
+                    }
+                    NativeResult result = callee.asNative().call(Arrays.copyOfRange(registers, argBase, argBase + argc));
+                    if (!result.ok()) {
+                        runtimeError(result.name(), result.reason(), ip);
+                        return VirtualMachineResult.ERROR;
+                    }
+                    registers[base + dst] = result.value();
+                }
+                case Return -> {
+                    Value result = rk(registers, base, constants, code[ip]);
+                    frameCount--;
+                    if (frameCount == 0)
+                        return VirtualMachineResult.OK;
+                    if (frameKeys[frameCount] != null) {
+                        VirtualMachine.MEMO_CACHE.store(frameKeys[frameCount], result);
+                        frameKeys[frameCount] = null;
+                    }
+
+                    int dst = frameResults[frameCount];
+                    function = frameFunctions[frameCount - 1];
+                    base = frameBases[frameCount - 1];
+                    ip = frameIps[frameCount - 1];
+                    code = function.code;
+                    constants = function.constants;
+                    registers[base + dst] = result;
+                }
+                case Optimize -> frameMemo[frameCount - 1] = true;
+                default -> {
+                    runtimeError("Internal", "Unknown register opcode " + code[ip - 1], ip);
+                    return VirtualMachineResult.ERROR;
+                }
+            }
+        }
+    }
+
+    Value[] ensure(int size) {
+        if (size > registers.length)
+            registers = Arrays.copyOf(registers, Math.max(size, registers.length * 2));
+        return registers;
+    }
+
+    static boolean less(Value a, Value b) {
+        if (a.isIntegral() && b.isIntegral())
+            return a.asLong() < b.asLong();
+        return a.asNumber() < b.asNumber();
+    }
+
+    static boolean greater(Value a, Value b) {
+        if (a.isIntegral() && b.isIntegral())
+            return a.asLong() > b.asLong();
+        return a.asNumber() > b.asNumber();
+    }
+
+    // the generic paths of VirtualMachine.binary, comparison and bitOps for the values this subset can make
+    static Value binary(int op, Value a, Value b) {
+        switch (op) {
+            case Equal -> {
+                return Value.of(a.equals(b));
+            }
+            case NotEqual -> {
+                return Value.of(!a.equals(b));
+            }
+            case LessThan -> {
+                return Value.of(less(a, b));
+            }
+            case GreaterThan -> {
+                return Value.of(greater(a, b));
+            }
+            case LessEqual -> {
+                return Value.of(!greater(a, b));
+            }
+            case GreaterEqual -> {
+                return Value.of(!less(a, b));
+            }
+            case BitAnd, BitOr, BitXor, LeftShift, RightShift, SignRightShift -> {
+                return bitwise(op, a, b);
+            }
+        }
+
+        if (a.isIntegral() && b.isIntegral()) {
+            long x = a.asLong();
+            long y = b.asLong();
+            return switch (op) {
+                case Add -> Value.add(x, y);
+                case Subtract -> Value.subtract(x, y);
+                case Multiply -> Value.multiply(x, y);
+                case Divide -> y != 0 && x % y == 0 ? Value.integer(x / y) : Value.of((double) x / y);
+                case Modulo -> y != 0 ? Value.integer(x % y) : Value.of(Double.NaN);
+                default -> Value.of(Math.pow(x, y));
+            };
+        }
+
+        return switch (op) {
+            case Add -> a.isString() ? a.concat(b) : Value.of(a.asNumber() + b.asNumber());
+            case Subtract -> Value.of(a.asNumber() - b.asNumber());
+            case Multiply -> a.isString()
+                    ? new Value(a.asString().repeat(Math.max(0, b.asNumber().intValue())))
+                    : Value.of(a.asNumber() * b.asNumber());
+            case Divide -> Value.of(a.asNumber() / b.asNumber());
+            case Modulo -> Value.of(a.asNumber() % b.asNumber());
+            default -> Value.of(Math.pow(a.asNumber(), b.asNumber()));
+        };
+    }
+
+    static Value bitwise(int op, Value a, Value b) {
+        if (a.isIntegral() && b.isIntegral()) {
+            long x = a.asLong();
+            long y = b.asLong();
+            return Value.integer(switch (op) {
+                case BitAnd -> x & y;
+                case BitOr -> x | y;
+                case BitXor -> x ^ y;
+                case LeftShift -> x << y;
+                case RightShift -> x >>> y;
+                default -> x >> y;
+            });
+        }
+
+        BitCall call = switch (op) {
+            case BitAnd -> (left, right) -> left & right;
+            case BitOr -> (left, right) -> left | right;
+            case BitXor -> (left, right) -> left ^ right;
+            case LeftShift -> (left, right) -> left << right;
+            case RightShift -> (left, right) -> left >>> right;
+            default -> (left, right) -> left >> right;
+        };
+        return Value.of(VirtualMachine.bitOp(a.asNumber(), b.asNumber(), call));
+    }
+}
@@ -0,0 +1,104 @@
+package language.vm;
+
+import language.backend.compiler.bytecode.values.Value;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+// jump targets of a TableSwitch site, built the first time the site runs
+// integer cases that sit close together index an array, any other literals go through a hash map
+// an enum case is compiled as a one-child enum naming it, resolve swaps it for the real child here
+public class SwitchTable {
+    // largest span of integer keys per case that still gets an array
+    private static final int MAX_SPREAD = 4;
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private final Value[] keys;
+    private final int[] offsets;
+    private final long low;
+    private final int[] dense;
+    private final Map<Value, Integer> hashed;
+    public final int fallback;
+
+    private SwitchTable(Value[] keys, int[] offsets, long low, int[] dense, Map<Value, Integer> hashed, int fallback) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.low = low;
+        this.dense = dense;
+        this.hashed = hashed;
+        this.fallback = fallback;
+    }
+
+    // site points at the opcode, the operands are n, n pairs of key constant and offset, then the default offset
+    public static SwitchTable of(int[] code, Value[] constants, int site, UnaryOperator<Value> resolve) {
+        int count = code[site + 1];
+        Value[] keys = new Value[count];
+        int[] offsets = new int[count];
+        boolean integral = true;
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            keys[i] = resolve.apply(constants[code[site + 2 + i * 2]]);
+            offsets[i] = code[site + 3 + i * 2];
+            if (keys[i].isNumber() && keys[i].isIntegral()) {
+                low = Math.min(low, keys[i].asLong());
+                high = Math.max(high, keys[i].asLong());
+            } else {
+                integral = false;
+            }
+        }
+        int fallback = code[site + 2 + count * 2];
+
+        if (integral && high - low >= 0 && high - low < (long) count * MAX_SPREAD) {
+            int[] dense = new int[(int) (high - low + 1)];
+            Arrays.fill(dense, MISSING);
+            // the first case with a key wins, as it would in the compare chain
+            for (int i = count - 1; i >= 0; i--)
+                dense[(int) (keys[i].asLong() - low)] = offsets[i];
+            for (int i = 0; i < dense.length; i++)
+                if (dense[i] == MISSING)
+                    dense[i] = fallback;
+            return new SwitchTable(keys, offsets, low, dense, null, fallback);
+        }
+
+        Map<Value, Integer> hashed = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++)
+            hashed.putIfAbsent(keys[i], offsets[i]);
+        return new SwitchTable(keys, offsets, 0, null, hashed, fallback);
+    }
+
+    public int count() {
+        return keys.length;
+    }
+
+    // the cases in source order, for a reference that has to be compared against each one
+    public Value key(int index) {
+        return keys[index];
+    }
+
+    public int caseOffset(int index) {
+        return offsets[index];
+    }
+
+    public int offset(Value key) {
+        if (dense == null)
+            return hashed.getOrDefault(key, fallback);
+        if (!key.isNumber())
+            return fallback;
+
+        long index;
+        if (key.isIntegral()) {
+            index = key.asLong();
+        } else {
+            // a whole double equals the integer case with the same value
+            double number = key.asDouble();
+            index = (long) number;
+            if (index != number)
+                return fallback;
+        }
+        index -= low;
+        return index >= 0 && index < dense.length ? dense[(int) index] : fallback;
+    }
+}
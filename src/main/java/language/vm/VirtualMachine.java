@@ -3,12 +3,19 @@ package language.vm;
 import dtool.logger.ImplLogger;
 import dtool.logger.Logger;
 import language.backend.compiler.bytecode.ByteCodeOpCode;
+import language.backend.compiler.bytecode.Chunk;
 import language.backend.compiler.bytecode.CompilerStack;
+import language.backend.compiler.bytecode.headers.Cache;
 import language.backend.compiler.bytecode.headers.HeadCode;
 import language.backend.compiler.bytecode.headers.MemoCache;
 import language.backend.compiler.bytecode.types.Type;
+import language.backend.compiler.bytecode.values.NumberList;
 import language.backend.compiler.bytecode.values.Pattern;
+import language.backend.compiler.bytecode.values.PersistentVector;
 import language.backend.compiler.bytecode.values.Value;
+import language.backend.compiler.bytecode.values.ValueIterator;
+import language.backend.compiler.bytecode.values.ValueMap;
+import language.backend.compiler.bytecode.values.ValueTag;
 import language.backend.compiler.bytecode.values.Var;
 import language.backend.compiler.bytecode.values.bytecode.*;
 import language.backend.compiler.bytecode.values.classes.*;
@@ -31,19 +38,27 @@ public class VirtualMachine {
     public static final Logger SYSTEM_LOGGER = ImplLogger.getInstance();
 
     public static final Map<String, Namespace> NATIVE_STD = new HashMap<>();
-    public static final Map<String, Var> GLOBAL_VAR_ARGS = new HashMap<>();
+    public static final GlobalTable GLOBAL_VAR_ARGS = new GlobalTable();
 
     public static final int MAX_STACK_SIZE = 256;
     public static final int FRAMES_MAX = 256;
 
-    private static final MemoCache MEMO_CACHE = new MemoCache();
+    public static final MemoCache MEMO_CACHE = new MemoCache();
+    public static final ModuleRegistry MODULES = new ModuleRegistry();
+    // set from project.imports = "lazy", imported modules then only run when a member is first used
+    public static boolean lazyImports = false;
+    // set to record dispatched opcode sequences, see OpcodeHistogram
+    public static OpcodeHistogram histogram = null;
+    // set from project.quicken = "false" to keep every site on its generic opcode
+    public static boolean quicken = true;
 
     private final ExecutorService executorService = Executors.newCachedThreadPool();
 
     private static VirtualMachine instance;
 
     private final Stack<List<Value>> loopCache;
-    private Stack<Traceback> tracebacks;
+    private String traceName;
+    private String traceContext;
 
     public boolean initialized = false;
 
@@ -82,15 +97,8 @@ public class VirtualMachine {
 
         push(new Value(closure));
 
-        // clean up
-        GLOBAL_VAR_ARGS.clear();
-        // copy globals
-        GLOBAL_VAR_ARGS.putAll(globals);
-        // add libraries
-        GLOBAL_VAR_ARGS
-                .putAll(LibraryClassLoader.LIBRARY_VAR_ARGS);
+        defineGlobals(globals);
 
-        this.tracebacks = new Stack<>();
         this.loopCache = new Stack<>();
 
         this.currentLoop = null;
@@ -99,11 +107,23 @@ public class VirtualMachine {
         this.frame = new CallFrame(closure, 0, 0, "void");
         frames.push(frame);
 
-        NativeContext.init(this);
-
         initialized = true;
     }
 
+    // the global table a program starts from, its own globals then the libraries and the natives
+    // a RegisterMachine starts from the same table
+    public static void defineGlobals(Map<String, Var> globals) {
+        // clean up
+        GLOBAL_VAR_ARGS.clear();
+        // copy globals
+        GLOBAL_VAR_ARGS.putAll(globals);
+        // add libraries
+        GLOBAL_VAR_ARGS
+                .putAll(LibraryClassLoader.LIBRARY_VAR_ARGS);
+        // add natives
+        NativeContext.init(true);
+    }
+
     public static NativeResult run(Closure function, Value[] args) {
         if (function.byteCode.totarity != args.length) {
             return NativeResult.Err("Argument Count", "Expected " + function.byteCode.totarity + " arguments, got " + args.length);
@@ -116,14 +136,14 @@ public class VirtualMachine {
         return virtualMachine.res;
     }
 
-    public void defineNative(String name, Native.Method method, int argc) {
+    public static void defineNative(String name, Native.Method method, int argc) {
         GLOBAL_VAR_ARGS.put(name, new Var(
                 new Value(new Native(name, method, argc)),
                 true
         ));
     }
 
-    public void defineNative(String library, String name, Native.Method method, int argc) {
+    public static void defineNative(String library, String name, Native.Method method, int argc) {
         if (!NATIVE_STD.containsKey(library))
             NATIVE_STD.put(library, new Namespace(library, new HashMap<>()));
         NATIVE_STD.get(library).addField(name, new Value(
@@ -131,20 +151,20 @@ public class VirtualMachine {
         ));
     }
 
-    public void defineVar(String lib, String name, Value val) {
+    public static void defineVar(String lib, String name, Value val) {
         if (!NATIVE_STD.containsKey(lib))
             NATIVE_STD.put(lib, new Namespace(lib, new HashMap<>()));
         NATIVE_STD.get(lib).addField(name, val);
     }
 
-    public void defineNative(String name, Native.Method method, Type[] types) {
+    public static void defineNative(String name, Native.Method method, Type[] types) {
         GLOBAL_VAR_ARGS.put(name, new Var(
                 new Value(new Native(name, method, types.length, types)),
                 true
         ));
     }
 
-    public void defineNative(String library, String name, Native.Method method, Type[] types) {
+    public static void defineNative(String library, String name, Native.Method method, Type[] types) {
         if (!NATIVE_STD.containsKey(library))
             NATIVE_STD.put(library, new Namespace(library, new HashMap<>()));
         NATIVE_STD.get(library).addField(name, new Value(
@@ -153,15 +173,14 @@ public class VirtualMachine {
     }
 
     public VirtualMachine trace(String name) {
-        tracebacks.push(new Traceback(name, name, 0, frame.closure.byteCode.chunk));
+        traceName = name;
+        traceContext = name;
         return this;
     }
 
-    private void popTraceback() {
-        tracebacks.pop();
-    }
-
     void moveIP(int offset) {
+        if (histogram != null && offset != 0)
+            histogram.cut();
         frame.ip += offset;
     }
 
@@ -173,11 +192,33 @@ public class VirtualMachine {
         return stack.pop();
     }
 
-    Stack<Traceback> copyTracebacks() {
-        Stack<Traceback> copy = new Stack<>();
-        for (Traceback traceback : tracebacks)
-            copy.push(traceback);
-        return copy;
+    // built from the frame stack only when an error is reported
+    List<Traceback> traceback() {
+        List<Traceback> traceback = new ArrayList<>();
+        for (int i = 0; i < frames.count; i++) {
+            CallFrame callee = frames.get(i);
+            if (i == 0) {
+                traceback.add(new Traceback(traceName, traceContext, 0, callee.closure.byteCode.chunk));
+            } else {
+                CallFrame caller = frames.get(i - 1);
+                traceback.add(new Traceback(traceName, callee.closure.byteCode.name, caller.ip - 1, caller.closure.byteCode.chunk));
+            }
+        }
+        return traceback;
+    }
+
+    String context() {
+        return frames.count > 1 ? frame.closure.byteCode.name : traceContext;
+    }
+
+    String formatError(String message, String reason) {
+        StringBuilder output = new StringBuilder(message + ": " + reason);
+        List<Traceback> traceback = traceback();
+        for (int i = traceback.size() - 1; i >= 0; i--) {
+            Traceback entry = traceback.get(i);
+            output.append("\n    at ").append(entry.context).append(" (").append(entry.filename).append(":").append(entry.offset).append(")");
+        }
+        return output.toString();
     }
 
     protected void runtimeError(String message, String reason) {
@@ -188,27 +229,22 @@ public class VirtualMachine {
             return;
         }
 
-        String output = "";
-
-        Stack<Traceback> copy = copyTracebacks();
-
-        tracebacks = copy;
-
         if (safe) {
-            SYSTEM_LOGGER.warn(output);
+            SYSTEM_LOGGER.warn(formatError(message, reason));
         } else {
-            while (frames.count > 0) {
-                CallFrame frame = frames.pop();
-                Traceback traceback = copy.pop();
-                if (frame.catchError) {
-                    frames.push(frame);
-                    copy.push(traceback);
-                    tracebacks = copy;
-                    this.frame = frame;
-                    return;
-                }
+            int catcher = frames.count - 1;
+            while (catcher >= 0 && !frames.get(catcher).catchError)
+                catcher--;
+
+            if (catcher >= 0) {
+                frames.setTop(catcher + 1);
+                this.frame = frames.peek();
+                this.frame.jumpPending = false;
+                this.frame.switchPending = null;
+                this.frame.switchReference = null;
+                return;
             }
-            System.err.println(output);
+            System.err.println(formatError(message, reason));
             System.exit(-1);
             resetStack();
         }
@@ -224,6 +260,14 @@ public class VirtualMachine {
         return readConstant().asString();
     }
 
+    int readGlobalSlot() {
+        return frame.closure.byteCode.chunk.globalSlots[readByte()];
+    }
+
+    Chunk chunk() {
+        return frame.closure.byteCode.chunk;
+    }
+
     Value readConstant() {
         return frame.closure.byteCode.chunk.constants().valuesArray[readByte()];
     }
@@ -240,86 +284,72 @@ public class VirtualMachine {
         return !value.asBool() ? 1 : 0;
     }
 
-    VirtualMachineResult runBin(String name, Value arg, Instance instance) {
-        return runBin(name, new Value[]{arg}, instance);
-    }
-
-    VirtualMachineResult runBin(String name, Value[] args, Instance instance) {
-        Value method = instance.binMethods.get(name);
-
-        push(method);
-        for (Value arg : args) {
-            push(arg);
-        }
-
-        BoundMethod bound = new BoundMethod(method.asClosure(), instance.self);
-        if (!callValue(new Value(bound), args, new HashMap<>())) return VirtualMachineResult.ERROR;
-
-        VirtualMachineResult res = run();
-        return res != VirtualMachineResult.ERROR ? VirtualMachineResult.OK : VirtualMachineResult.ERROR;
+    // an overload is called like any other method, the run loop carries on in its frame
+    // and Return leaves the result on the stack where the operator's own result would have gone
+    VirtualMachineResult runBin(Value method, Value arg, Instance instance) {
+        push(instance.receiverSlot());
+        push(arg);
+        if (!call(method.asClosure(), instance.self, 1, Collections.emptyMap()))
+            return VirtualMachineResult.ERROR;
+        return VirtualMachineResult.OK;
     }
 
-    boolean canOverride(Value value, String name) {
-        return value.isInstance && value.asInstance().binMethods.containsKey(name);
+    // the method value's class overloads op with, null when it is not an instance or has none
+    Value operator(Value value, int op) {
+        return value.isInstance() ? value.asInstance().clazz.operators[op] : null;
     }
 
     VirtualMachineResult binary(int op) {
         Value b = pop();
         Value a = pop();
 
+        // two integers stay integers while + - * fit a long
+        if (a.isIntegral() && b.isIntegral()) {
+            long x = a.asLong();
+            long y = b.asLong();
+            switch (op) {
+                case ByteCodeOpCode.Add -> push(Value.add(x, y));
+                case ByteCodeOpCode.Subtract -> push(Value.subtract(x, y));
+                case ByteCodeOpCode.Multiply -> push(Value.multiply(x, y));
+                // an inexact quotient or a zero divisor gives the same double it always did
+                case ByteCodeOpCode.Divide -> push(y != 0 && x % y == 0 ? Value.integer(x / y) : Value.of((double) x / y));
+                case ByteCodeOpCode.Modulo -> push(y != 0 ? Value.integer(x % y) : Value.of(Double.NaN));
+                case ByteCodeOpCode.Power -> push(Value.of(Math.pow(x, y)));
+            }
+            return VirtualMachineResult.OK;
+        }
+
+        Value method = operator(a, op);
+        if (method != null)
+            return runBin(method, b, a.asInstance());
+
         switch (op) {
             case ByteCodeOpCode.Add -> {
-                if (a.isString)
-                    push(new Value(a.asString() + b.asString()));
-                else if (a.isList) {
-                    List<Value> list = new ArrayList<>(a.asList());
-                    list.addAll(b.asList());
-                    push(new Value(list));
-                } else if (canOverride(a, "add"))
-                    return runBin("add", b, a.asInstance());
+                if (a.isString())
+                    push(a.concat(b));
+                else if (a.isList())
+                    push(new Value(PersistentVector.of(a.asList()).appendAll(b.asList())));
                 else
-                    push(new Value(a.asNumber() + b.asNumber()));
-            }
-            case ByteCodeOpCode.Subtract -> {
-                if (canOverride(a, "sub"))
-                    return runBin("sub", b, a.asInstance());
-                push(new Value(a.asNumber() - b.asNumber()));
+                    push(Value.of(a.asNumber() + b.asNumber()));
             }
+            case ByteCodeOpCode.Subtract -> push(Value.of(a.asNumber() - b.asNumber()));
             case ByteCodeOpCode.Multiply -> {
-                if (canOverride(a, "mul"))
-                    return runBin("mul", b, a.asInstance());
-                if (a.isString) {
+                if (a.isString()) {
                     push(new Value(repeat(a.asString(), b.asNumber().intValue())));
-                } else if (a.isList) {
-                    List<Value> repeated = new ArrayList<>();
-                    List<Value> list = a.asList();
-                    for (int i = 0; i < b.asNumber().intValue(); i++)
-                        repeated.addAll(list);
-                    push(new Value(repeated));
+                } else if (a.isList()) {
+                    push(new Value(PersistentVector.of(a.asList()).repeat(b.asNumber().intValue())));
                 } else {
-                    push(new Value(a.asNumber() * b.asNumber()));
+                    push(Value.of(a.asNumber() * b.asNumber()));
                 }
             }
             case ByteCodeOpCode.Divide -> {
-                if (canOverride(a, "div"))
-                    return runBin("div", b, a.asInstance());
-                else if (a.isList) {
-                    List<Value> list = new ArrayList<>(a.asList());
-                    list.remove(b);
-                    push(new Value(list));
-                } else
-                    push(new Value(a.asNumber() / b.asNumber()));
-            }
-            case ByteCodeOpCode.Modulo -> {
-                if (canOverride(a, "mod"))
-                    return runBin("mod", b, a.asInstance());
-                push(new Value(a.asNumber() % b.asNumber()));
-            }
-            case ByteCodeOpCode.Power -> {
-                if (canOverride(a, "fastpow"))
-                    return runBin("fastpow", b, a.asInstance());
-                push(new Value(Math.pow(a.asNumber(), b.asNumber())));
+                if (a.isList())
+                    push(new Value(PersistentVector.of(a.asList()).without(b)));
+                else
+                    push(Value.of(a.asNumber() / b.asNumber()));
             }
+            case ByteCodeOpCode.Modulo -> push(Value.of(a.asNumber() % b.asNumber()));
+            case ByteCodeOpCode.Power -> push(Value.of(Math.pow(a.asNumber(), b.asNumber())));
         }
 
         return VirtualMachineResult.OK;
@@ -328,16 +358,38 @@ public class VirtualMachine {
     VirtualMachineResult unary(int op) {
         Value a = pop();
 
+        if (a.isIntegral() && op != ByteCodeOpCode.Not) {
+            long x = a.asLong();
+            push(op == ByteCodeOpCode.Increment ? Value.add(x, 1) : op == ByteCodeOpCode.Decrement ? Value.subtract(x, 1) : Value.negate(x));
+            return VirtualMachineResult.OK;
+        }
+
         switch (op) {
-            case ByteCodeOpCode.Increment -> push(new Value(a.asNumber() + 1));
-            case ByteCodeOpCode.Decrement -> push(new Value(a.asNumber() - 1));
-            case ByteCodeOpCode.Negate -> push(new Value(-a.asNumber()));
-            case ByteCodeOpCode.Not -> push(new Value(!a.asBool()));
+            case ByteCodeOpCode.Increment -> push(Value.of(a.asNumber() + 1));
+            case ByteCodeOpCode.Decrement -> push(Value.of(a.asNumber() - 1));
+            case ByteCodeOpCode.Negate -> push(Value.of(-a.asNumber()));
+            case ByteCodeOpCode.Not -> push(Value.of(!a.asBool()));
         }
 
         return VirtualMachineResult.OK;
     }
 
+    // what a quickened GetGlobalSlot read, good until the table binds some name to another Var
+    record QuickGlobal(Var var, int version) {
+    }
+
+    VirtualMachineResult quickGetGlobal() {
+        int site = frame.ip - 1;
+        if (chunk().quickOperand(site) instanceof QuickGlobal cached && cached.version == GLOBAL_VAR_ARGS.version()) {
+            frame.ip++;
+            push(cached.var.val);
+            return VirtualMachineResult.OK;
+        }
+        // the generic read quickens the site again with the current Var
+        chunk().dequicken(site, ByteCodeOpCode.GetGlobalSlot);
+        return globalOps(ByteCodeOpCode.GetGlobalSlot);
+    }
+
     VirtualMachineResult globalOps(int op) {
         switch (op) {
             case ByteCodeOpCode.DefineGlobal -> {
@@ -358,6 +410,60 @@ public class VirtualMachine {
                 GLOBAL_VAR_ARGS.put(name, new Var(value, constant, min, max));
                 return VirtualMachineResult.OK;
             }
+            case ByteCodeOpCode.DefineGlobalSlot -> {
+                int slot = readGlobalSlot();
+                Value value = peek(0);
+
+                //noinspection DuplicatedCode
+                boolean constant = readByte() == 1;
+
+                boolean usesRange = readByte() == 1;
+                int min = Integer.MIN_VALUE;
+                int max = Integer.MAX_VALUE;
+                if (usesRange) {
+                    min = readByte();
+                    max = readByte();
+                }
+
+                GLOBAL_VAR_ARGS.put(GlobalTable.name(slot), new Var(value, constant, min, max));
+                return VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.GetGlobalSlot -> {
+                int site = frame.ip - 1;
+                int slot = readGlobalSlot();
+                Var value = GLOBAL_VAR_ARGS.get(slot);
+
+                if (value == null) {
+                    VirtualMachineResult res = getBound(GlobalTable.name(slot), true);
+                    if (res == VirtualMachineResult.OK)
+                        return VirtualMachineResult.OK;
+                    runtimeError("Scope", "Undefined variable");
+                    return VirtualMachineResult.ERROR;
+                }
+
+                if (quicken)
+                    chunk().quicken(site, ByteCodeOpCode.QuickGetGlobal, new QuickGlobal(value, GLOBAL_VAR_ARGS.version()));
+                push(value.val);
+                return VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.SetGlobalSlot -> {
+                int slot = readGlobalSlot();
+                Value value = peek(0);
+
+                if (frame.bound != null) {
+                    VirtualMachineResult res = setBound(GlobalTable.name(slot), value, true);
+                    if (res == VirtualMachineResult.OK)
+                        return VirtualMachineResult.OK;
+                }
+
+                Var var = GLOBAL_VAR_ARGS.get(slot);
+                if (var != null) {
+                    return set(var, value);
+                } else {
+                    runtimeError("Scope", "Undefined variable");
+                    return VirtualMachineResult.ERROR;
+                }
+            }
             case ByteCodeOpCode.GetGlobal -> {
                 String name = readString();
                 Var value = GLOBAL_VAR_ARGS.get(name);
@@ -397,7 +503,7 @@ public class VirtualMachine {
 
     VirtualMachineResult getBound(String name, boolean suppress) {
         if (frame.bound != null) {
-            if (frame.bound.isInstance) {
+            if (frame.bound.isInstance()) {
                 Instance instance = frame.bound.asInstance();
                 Value field = instance.getField(name, true);
                 if (field != null) {
@@ -408,7 +514,7 @@ public class VirtualMachine {
                         runtimeError("Scope", "Undefined attribute");
                     return VirtualMachineResult.ERROR;
                 }
-            } else if (frame.bound.isClass) {
+            } else if (frame.bound.isClass()) {
                 LanguageClass clazz = frame.bound.asClass();
                 Value field = clazz.getField(name, true);
                 if (field != null) {
@@ -419,7 +525,7 @@ public class VirtualMachine {
                         runtimeError("Scope", "Undefined attribute");
                     return VirtualMachineResult.ERROR;
                 }
-            } else if (frame.bound.isNamespace) {
+            } else if (frame.bound.isNamespace()) {
                 Namespace ns = frame.bound.asNamespace();
                 Value field = ns.getField(name, true);
                 if (field != null) {
@@ -442,10 +548,10 @@ public class VirtualMachine {
 
     VirtualMachineResult setBound(String name, Value value, boolean suppress) {
         if (frame.bound != null) {
-            if (frame.bound.isInstance) {
+            if (frame.bound.isInstance()) {
                 Instance instance = frame.bound.asInstance();
                 return boundNeutral(suppress, instance.setField(name, value));
-            } else if (frame.bound.isClass) {
+            } else if (frame.bound.isClass()) {
                 LanguageClass clazz = frame.bound.asClass();
                 return boundNeutral(suppress, clazz.setField(name, value));
             }
@@ -468,11 +574,33 @@ public class VirtualMachine {
     VirtualMachineResult attrOps(int op) {
         switch (op) {
             case ByteCodeOpCode.GetAttr -> {
-                return getBound(readString(), false);
+                int site = frame.ip;
+                String name = readString();
+                if (frame.bound != null && frame.bound.isInstance()) {
+                    Instance instance = frame.bound.asInstance();
+                    int slot = cachedSlot(site, instance, name, true);
+                    if (slot >= 0) {
+                        push(instance.getField(slot));
+                        return VirtualMachineResult.OK;
+                    }
+                }
+                return getBound(name, false);
             }
             case ByteCodeOpCode.SetAttr -> {
-                setBound(readString(), pop(), false);
-                push(new Value());
+                int site = frame.ip;
+                String name = readString();
+                Value value = pop();
+                if (frame.bound != null && frame.bound.isInstance()) {
+                    Instance instance = frame.bound.asInstance();
+                    int slot = cachedSlot(site, instance, name, true);
+                    if (slot >= 0) {
+                        instance.setField(slot, value);
+                        push(Value.nullValue());
+                        return VirtualMachineResult.OK;
+                    }
+                }
+                setBound(name, value, false);
+                push(Value.nullValue());
                 return VirtualMachineResult.OK;
             }
             default -> {
@@ -487,66 +615,239 @@ public class VirtualMachine {
 
         switch (op) {
             case ByteCodeOpCode.EQUAL -> {
-                if (b.isPattern) {
+                if (b.isPattern()) {
                     return matchPattern(a, b.asPattern());
                 }
-                if (canOverride(a, "eq")) {
-                    return runBin("eq", b, a.asInstance());
-                } else if (canOverride(b, "eq")) {
-                    return runBin("eq", a, b.asInstance());
-                }
-                push(new Value(a.equals(b)));
+                Value method = operator(a, op);
+                if (method != null)
+                    return runBin(method, b, a.asInstance());
+                method = operator(b, op);
+                if (method != null)
+                    return runBin(method, a, b.asInstance());
+                push(Value.of(a.equals(b)));
             }
             case ByteCodeOpCode.GreaterThan -> {
-                if (canOverride(b, "lte")) {
-                    return runBin("lte", a, b.asInstance());
+                if (a.isIntegral() && b.isIntegral()) {
+                    push(Value.of(a.asLong() > b.asLong()));
+                    return VirtualMachineResult.OK;
                 }
-                push(new Value(a.asNumber() > b.asNumber()));
+                Value method = operator(b, op);
+                if (method != null)
+                    return runBin(method, a, b.asInstance());
+                push(Value.of(a.asNumber() > b.asNumber()));
             }
             case ByteCodeOpCode.LessThan -> {
-                if (canOverride(a, "lt")) {
-                    return runBin("lt", b, a.asInstance());
+                if (a.isIntegral() && b.isIntegral()) {
+                    push(Value.of(a.asLong() < b.asLong()));
+                    return VirtualMachineResult.OK;
                 }
-                push(new Value(a.asNumber() < b.asNumber()));
+                Value method = operator(a, op);
+                if (method != null)
+                    return runBin(method, b, a.asInstance());
+                push(Value.of(a.asNumber() < b.asNumber()));
+            }
+        }
+
+        return VirtualMachineResult.OK;
+    }
+
+    // an arithmetic or comparison site that has only seen two integers so far
+    void quickenIntegral(int op) {
+        if (!quicken || !peek(0).isIntegral() || !peek(1).isIntegral())
+            return;
+        int quick = switch (op) {
+            case ByteCodeOpCode.Add -> ByteCodeOpCode.QuickIntAdd;
+            case ByteCodeOpCode.Subtract -> ByteCodeOpCode.QuickIntSubtract;
+            case ByteCodeOpCode.LessThan -> ByteCodeOpCode.QuickIntLessThan;
+            default -> ByteCodeOpCode.QuickIntGreaterThan;
+        };
+        chunk().quicken(frame.ip - 1, quick, null);
+    }
+
+    VirtualMachineResult quickIntegral(int op) {
+        Value b = peek(0);
+        Value a = peek(1);
+        if (!a.isIntegral() || !b.isIntegral()) {
+            int generic = switch (op) {
+                case ByteCodeOpCode.QuickIntAdd -> ByteCodeOpCode.Add;
+                case ByteCodeOpCode.QuickIntSubtract -> ByteCodeOpCode.Subtract;
+                case ByteCodeOpCode.QuickIntLessThan -> ByteCodeOpCode.LessThan;
+                default -> ByteCodeOpCode.GreaterThan;
+            };
+            chunk().dequicken(frame.ip - 1, generic);
+            return generic == ByteCodeOpCode.Add || generic == ByteCodeOpCode.Subtract ? binary(generic) : comparison(generic);
+        }
+        pop();
+        pop();
+
+        long x = a.asLong();
+        long y = b.asLong();
+        switch (op) {
+            case ByteCodeOpCode.QuickIntAdd -> push(Value.add(x, y));
+            case ByteCodeOpCode.QuickIntSubtract -> push(Value.subtract(x, y));
+            case ByteCodeOpCode.QuickIntLessThan -> push(Value.of(x < y));
+            case ByteCodeOpCode.QuickIntGreaterThan -> push(Value.of(x > y));
+        }
+        return VirtualMachineResult.OK;
+    }
+
+    // typed forms of the arithmetic and comparison opcodes, emitted when the type checker knows both sides are numbers
+    // an any value can still reach a typed variable, so the tags are checked and anything else takes the generic path
+    VirtualMachineResult numeric(int op) {
+        Value b = peek(0);
+        Value a = peek(1);
+        if (!a.isNumber() || !b.isNumber()) {
+            return switch (op) {
+                case ByteCodeOpCode.NumAdd -> binary(ByteCodeOpCode.Add);
+                case ByteCodeOpCode.NumSubtract -> binary(ByteCodeOpCode.Subtract);
+                case ByteCodeOpCode.NumMultiply -> binary(ByteCodeOpCode.Multiply);
+                case ByteCodeOpCode.LongAdd -> binary(ByteCodeOpCode.Add);
+                case ByteCodeOpCode.LongSubtract -> binary(ByteCodeOpCode.Subtract);
+                case ByteCodeOpCode.LongMultiply -> binary(ByteCodeOpCode.Multiply);
+                case ByteCodeOpCode.NumGreaterThan -> comparison(ByteCodeOpCode.GreaterThan);
+                case ByteCodeOpCode.NumLessThan -> comparison(ByteCodeOpCode.LessThan);
+                default -> lessJump(readByte());
+            };
+        }
+        pop();
+        pop();
+
+        boolean integral = a.isIntegral() && b.isIntegral();
+        switch (op) {
+            case ByteCodeOpCode.NumAdd -> push(integral ? Value.add(a.asLong(), b.asLong()) : Value.of(a.asDouble() + b.asDouble()));
+            case ByteCodeOpCode.NumSubtract -> push(integral ? Value.subtract(a.asLong(), b.asLong()) : Value.of(a.asDouble() - b.asDouble()));
+            case ByteCodeOpCode.NumMultiply -> push(integral ? Value.multiply(a.asLong(), b.asLong()) : Value.of(a.asDouble() * b.asDouble()));
+            case ByteCodeOpCode.LongAdd -> push(integral ? Value.integer(a.asLong() + b.asLong()) : Value.of(a.asDouble() + b.asDouble()));
+            case ByteCodeOpCode.LongSubtract -> push(integral ? Value.integer(a.asLong() - b.asLong()) : Value.of(a.asDouble() - b.asDouble()));
+            case ByteCodeOpCode.LongMultiply -> push(integral ? Value.integer(a.asLong() * b.asLong()) : Value.of(a.asDouble() * b.asDouble()));
+            case ByteCodeOpCode.NumGreaterThan -> push(Value.of(integral ? a.asLong() > b.asLong() : a.asDouble() > b.asDouble()));
+            case ByteCodeOpCode.NumLessThan -> push(Value.of(integral ? a.asLong() < b.asLong() : a.asDouble() < b.asDouble()));
+            case ByteCodeOpCode.NumJumpIfNotLess -> {
+                boolean less = integral ? a.asLong() < b.asLong() : a.asDouble() < b.asDouble();
+                push(Value.of(less));
+                int offset = readByte();
+                if (!less)
+                    moveIP(offset);
             }
         }
+        return VirtualMachineResult.OK;
+    }
+
+    // the JumpIfFalse half of a fused < and jump, the compare operands are on the stack
+    // an lt overload only pushes its frame here, the loop runs it and returnFrame takes the jump
+    VirtualMachineResult lessJump(int offset) {
+        CallFrame caller = frame;
+        int depth = frames.count;
+        VirtualMachineResult res = comparison(ByteCodeOpCode.LessThan);
+        if (res == VirtualMachineResult.ERROR)
+            return res;
+        if (frames.count > depth) {
+            caller.jumpPending = true;
+            caller.jumpOffset = offset;
+            return res;
+        }
+        moveIP(offset * isFalsey(peek(0)));
+        return res;
+    }
+
+    VirtualMachineResult concat() {
+        Value b = peek(0);
+        Value a = peek(1);
+        if (!a.isString())
+            return binary(ByteCodeOpCode.Add);
+        pop();
+        pop();
+        push(a.concat(b));
+        return VirtualMachineResult.OK;
+    }
+
+    // switch or match whose cases are all literals or enum children, the operand table is read once per site into a SwitchTable
+    // an instance with an eq overload still compares against each case in order, the overload decides
+    VirtualMachineResult tableSwitch() {
+        int site = frame.ip - 1;
+        int count = readByte();
+        frame.ip = site + 3 + count * 2;
+        Value reference = pop();
 
+        if (histogram != null)
+            histogram.cut();
+        SwitchTable table = frame.closure.byteCode.chunk.switchTable(site, this::switchKey);
+        if (operator(reference, ByteCodeOpCode.EQUAL) == null) {
+            frame.ip += table.offset(reference);
+            return VirtualMachineResult.OK;
+        }
+        return switchCases(table, reference, 0);
+    }
+
+    // an enum case names its enum and child, the enum is a global by the time the switch runs
+    Value switchKey(Value key) {
+        if (!key.isEnumParent())
+            return key;
+        LanguageEnum named = key.asEnum();
+        Var languageEnum = GLOBAL_VAR_ARGS.get(named.name());
+        if (languageEnum == null || !languageEnum.val.isEnumParent())
+            return key;
+        return languageEnum.val.asEnum().get(named.children().keySet().iterator().next());
+    }
+
+    // ip is just past the instruction, an overload that pushes a frame leaves the rest of the scan to returnFrame
+    VirtualMachineResult switchCases(SwitchTable table, Value reference, int from) {
+        for (int i = from; i < table.count(); i++) {
+            CallFrame caller = frame;
+            int depth = frames.count;
+            push(reference);
+            push(table.key(i));
+            VirtualMachineResult res = comparison(ByteCodeOpCode.EQUAL);
+            if (res == VirtualMachineResult.ERROR)
+                return res;
+            if (frames.count > depth) {
+                caller.switchPending = table;
+                caller.switchReference = reference;
+                caller.switchCase = i;
+                return res;
+            }
+            if (isFalsey(pop()) == 0) {
+                frame.ip += table.caseOffset(i);
+                return VirtualMachineResult.OK;
+            }
+        }
+        frame.ip += table.fallback;
         return VirtualMachineResult.OK;
     }
 
+    // every field is read once, the bindings are only pushed once all the compared fields have matched
     private VirtualMachineResult matchPattern(Value a, Pattern asPattern) {
-        if (!a.isInstance) {
-            push(new Value(false));
+        if (!a.isInstance()) {
+            push(Value.of(false));
             return VirtualMachineResult.OK;
         }
 
         Instance instance = a.asInstance();
         if (!instance.instanceOf(asPattern.value)) {
-            push(new Value(false));
+            push(Value.of(false));
             return VirtualMachineResult.OK;
         }
 
-        for (Map.Entry<String, Value> entry : asPattern.cases.entrySet()) {
-            Value val = instance.getField(entry.getKey(), false);
-            if (val == null) {
-                push(new Value(false));
-                return VirtualMachineResult.OK;
-            } else if (!val.equals(entry.getValue())) {
-                push(new Value(false));
+        Value[] bound = new Value[asPattern.bindingCount];
+        int count = 0;
+        for (int i = 0; i < asPattern.fields.length; i++) {
+            Value val = instance.getField(asPattern.fields[i], false);
+            Value expected = asPattern.expected[i];
+            if (expected == null) {
+                if (val == null) {
+                    runtimeError("Scope", "Undefined attribute");
+                    return VirtualMachineResult.ERROR;
+                }
+                bound[count++] = val;
+            } else if (val == null || !val.equals(expected)) {
+                push(Value.of(false));
                 return VirtualMachineResult.OK;
             }
         }
 
-        for (String binding : asPattern.keys) {
-            Value val = instance.getField(binding, false);
-            if (val == null) {
-                runtimeError("Scope", "Undefined attribute");
-                return VirtualMachineResult.ERROR;
-            } else {
-                push(new Value(new Var(val, true)));
-            }
-        }
-        push(new Value(true));
+        for (Value val : bound)
+            push(new Value(new Var(val, true)));
+        push(Value.of(true));
         return VirtualMachineResult.OK;
     }
 
@@ -560,7 +861,7 @@ public class VirtualMachine {
             return VirtualMachineResult.ERROR;
         }
         if (var.min != Integer.MIN_VALUE || var.max != Integer.MAX_VALUE) {
-            if (val.isNumber) {
+            if (val.isNumber()) {
                 double d = val.asNumber();
                 if (d < var.min || d > var.max) {
                     runtimeError("Range", "Value out of range");
@@ -575,18 +876,22 @@ public class VirtualMachine {
         return VirtualMachineResult.OK;
     }
 
+    VirtualMachineResult getLocal() {
+        int slot = readByte();
+        if (frame.slots + slot >= stack.count) {
+            runtimeError("Scope", "Undefined variable");
+            return VirtualMachineResult.ERROR;
+        }
+
+        Value val = get(slot);
+        push(val.asVar().val);
+        return VirtualMachineResult.OK;
+    }
+
     VirtualMachineResult localOps(int op) {
         switch (op) {
             case ByteCodeOpCode.GetLocal -> {
-                int slot = readByte();
-                if (stack.count - slot <= 0) {
-                    runtimeError("Scope", "Undefined variable");
-                    return VirtualMachineResult.ERROR;
-                }
-
-                Value val = get(slot);
-                push(val.asVar().val);
-                return VirtualMachineResult.OK;
+                return getLocal();
             }
             case ByteCodeOpCode.SetLocal -> {
                 int slot = readByte();
@@ -595,6 +900,27 @@ public class VirtualMachine {
                 Value val = peek(0);
                 return set(var.asVar(), val);
             }
+            // the superinstructions do exactly what their parts would, one dispatch instead of several
+            case ByteCodeOpCode.SetLocalPop -> {
+                int slot = readByte();
+
+                Value var = get(slot);
+                VirtualMachineResult res = set(var.asVar(), peek(0));
+                if (res == VirtualMachineResult.OK)
+                    pop();
+                return res;
+            }
+            case ByteCodeOpCode.AddLocalConstant -> {
+                if (getLocal() == VirtualMachineResult.ERROR)
+                    return VirtualMachineResult.ERROR;
+                push(readConstant());
+                return binary(ByteCodeOpCode.Add);
+            }
+            case ByteCodeOpCode.LocalsLessJump -> {
+                if (getLocal() == VirtualMachineResult.ERROR || getLocal() == VirtualMachineResult.ERROR)
+                    return VirtualMachineResult.ERROR;
+                return lessJump(readByte());
+            }
             case ByteCodeOpCode.DefineLocal -> {
                 Value val = pop();
                 //noinspection DuplicatedCode
@@ -620,6 +946,32 @@ public class VirtualMachine {
         }
     }
 
+    // locals no closure captures hold their value in the slot, none of set()'s constant and range checks apply
+    VirtualMachineResult slotOps(int op) {
+        switch (op) {
+            case ByteCodeOpCode.GetSlot -> push(get(readByte()));
+            case ByteCodeOpCode.SetSlot -> stack.set(frame.slots + readByte(), peek(0));
+            case ByteCodeOpCode.SetSlotPop -> stack.set(frame.slots + readByte(), pop());
+            // the value stays where it is as the local, the copy is the declaration's own result
+            case ByteCodeOpCode.DefineSlot -> {
+                frame.ip += 2;
+                push(peek(0));
+            }
+            case ByteCodeOpCode.KeepSlot -> frame.ip += 2;
+            case ByteCodeOpCode.AddSlotConstant -> {
+                push(get(readByte()));
+                push(readConstant());
+                return binary(ByteCodeOpCode.Add);
+            }
+            case ByteCodeOpCode.SlotsLessJump -> {
+                push(get(readByte()));
+                push(get(readByte()));
+                return lessJump(readByte());
+            }
+        }
+        return VirtualMachineResult.OK;
+    }
+
     VirtualMachineResult loopOps(int op) {
         switch (op) {
             case ByteCodeOpCode.Loop -> {
@@ -654,18 +1006,25 @@ public class VirtualMachine {
         return VirtualMachineResult.OK;
     }
 
-    VirtualMachineResult forLoop() {
+    VirtualMachineResult forLoop(int op) {
         double step = pop().asNumber();
         double end = pop().asNumber();
 
         int slot = readByte();
         int jump = readByte();
 
-        get(slot).asVar().val(
-                new Value(get(slot).asVar().val.asNumber() + step)
-        );
-
-        double i = get(slot).asVar().val.asNumber();
+        // a ForSlot counter is the value in the slot itself, a For counter sits in the Var there
+        Var var = op == ByteCodeOpCode.For ? get(slot).asVar() : null;
+        Value current = var != null ? var.val : get(slot);
+        Value next = current.isIntegral() && step == (long) step
+                ? Value.add(current.asLong(), (long) step)
+                : Value.of(current.asNumber() + step);
+        if (var != null)
+            var.val(next);
+        else
+            stack.set(frame.slots + slot, next);
+
+        double i = next.asNumber();
         moveIP(jump * (((i >= end && step >= 0) || (i <= end && step < 0)) ? 1 : 0));
 
         return VirtualMachineResult.OK;
@@ -697,7 +1056,7 @@ public class VirtualMachine {
                 return VirtualMachineResult.OK;
             }
             case ByteCodeOpCode.FromBytes -> {
-                if (!peek(0).isBytes) {
+                if (!peek(0).isBytes()) {
                     runtimeError("Type", "Expected bytes");
                     return VirtualMachineResult.ERROR;
                 }
@@ -715,23 +1074,43 @@ public class VirtualMachine {
     }
 
     VirtualMachineResult access() {
+        int site = frame.ip;
         String name = readString();
         Value val = pop();
 
-        if (canOverride(val, "access")) {
-            return runBin("access", new Value(name), val.asInstance());
+        switch (val.tag()) {
+            case ValueTag.INSTANCE -> {
+                Instance instance = val.asInstance();
+                Value method = instance.clazz.operators[ByteCodeOpCode.Access];
+                if (method != null) {
+                    return runBin(method, new Value(name), instance);
+                }
+                return access(val, instance, name, site);
+            }
+            case ValueTag.CLASS -> {
+                return access(val, val.asClass(), name);
+            }
+            case ValueTag.NAMESPACE -> {
+                return access(val, val.asNamespace(), name);
+            }
+            case ValueTag.ENUM_PARENT -> {
+                return access(val.asEnum(), name);
+            }
+            default -> {
+                return VirtualMachineResult.ERROR;
+            }
         }
+    }
 
-        if (val.isInstance) {
-            return access(val, val.asInstance(), name);
-        } else if (val.isClass) {
-            return access(val, val.asClass(), name);
-        } else if (val.isNamespace) {
-            return access(val, val.asNamespace(), name);
-        } else if (val.isEnumParent) {
-            return access(val.asEnum(), name);
+    int cachedSlot(int site, Instance instance, String name, boolean internal) {
+        InlineCache cache = frame.closure.byteCode.chunk.inlineCache(site);
+        Shape shape = instance.clazz.shape;
+        int slot = cache.lookup(shape);
+        if (slot == InlineCache.MISS) {
+            slot = shape.visibleSlot(name, internal);
+            cache.update(shape, slot);
         }
-        return VirtualMachineResult.ERROR;
+        return slot;
     }
 
     VirtualMachineResult access(LanguageEnum languageEnum, String name) {
@@ -743,8 +1122,15 @@ public class VirtualMachine {
         return access(val, name, namespace.getField(name, false));
     }
 
-    VirtualMachineResult access(Value val, Instance instance, String name) {
-        return access(val, name, instance.getField(name, false));
+    VirtualMachineResult access(Value val, Instance instance, String name, int site) {
+        int slot = cachedSlot(site, instance, name, false);
+        if (slot >= 0)
+            return access(val, name, instance.getField(slot));
+
+        Value method = instance.getMethod(name, false);
+        if (method != null && isCall(frame.closure.byteCode.chunk.codeArray[frame.ip]))
+            return invoke(method.asClosure(), val);
+        return access(val, name, method);
     }
 
     VirtualMachineResult access(Value val, LanguageClass clazz, String name) {
@@ -757,7 +1143,7 @@ public class VirtualMachine {
                 Value index = pop();
                 Value collection = pop();
 
-                if (collection.isList || collection.isString) {
+                if (collection.isList() || collection.isString()) {
                     List<Value> list = collection.asList();
                     int idx = index.asNumber().intValue();
                     if (idx >= list.size()) {
@@ -771,9 +1157,9 @@ public class VirtualMachine {
                         }
                     }
                     push(list.get(idx));
-                } else if (canOverride(collection, op == ByteCodeOpCode.Get ? "get" : "bracket")) {
-                    return runBin(op == ByteCodeOpCode.Get ? "get" : "bracket", index, collection.asInstance());
-                } else if (collection.isMap) {
+                } else if (operator(collection, op) != null) {
+                    return runBin(operator(collection, op), index, collection.asInstance());
+                } else if (collection.isMap()) {
                     push(collection.get(index));
                 }
                 return VirtualMachineResult.OK;
@@ -795,65 +1181,59 @@ public class VirtualMachine {
     }
 
     VirtualMachineResult bitOps(int instruction) {
-        switch (instruction) {
-            case ByteCodeOpCode.BitAnd -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left & right)
-                ));
-            }
-            case ByteCodeOpCode.BitOr -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left | right)
-                ));
-            }
-            case ByteCodeOpCode.BitXor -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left ^ right)
-                ));
-            }
-            case ByteCodeOpCode.LeftShift -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left << right)
-                ));
-            }
-            case ByteCodeOpCode.RightShift -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left >>> right)
-                ));
-            }
-            case ByteCodeOpCode.SignRightShift -> {
-                Value b = pop();
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), b.asNumber(), (left, right) -> left >> right)
-                ));
-            }
-            case ByteCodeOpCode.BitCompl -> {
-                Value a = pop();
-                push(new Value(
-                        bitOp(a.asNumber(), 0, (left, right) -> ~left)
-                ));
-            }
+        Value b = instruction == ByteCodeOpCode.BitCompl ? Value.integer(0) : pop();
+        Value a = pop();
+
+        // integers need none of the decimal scaling bitOp does for fractions
+        if (a.isIntegral() && b.isIntegral()) {
+            long x = a.asLong();
+            long y = b.asLong();
+            push(Value.integer(switch (instruction) {
+                case ByteCodeOpCode.BitAnd -> x & y;
+                case ByteCodeOpCode.BitOr -> x | y;
+                case ByteCodeOpCode.BitXor -> x ^ y;
+                case ByteCodeOpCode.LeftShift -> x << y;
+                case ByteCodeOpCode.RightShift -> x >>> y;
+                case ByteCodeOpCode.SignRightShift -> x >> y;
+                default -> ~x;
+            }));
+            return VirtualMachineResult.OK;
         }
+
+        BitCall call = switch (instruction) {
+            case ByteCodeOpCode.BitAnd -> (left, right) -> left & right;
+            case ByteCodeOpCode.BitOr -> (left, right) -> left | right;
+            case ByteCodeOpCode.BitXor -> (left, right) -> left ^ right;
+            case ByteCodeOpCode.LeftShift -> (left, right) -> left << right;
+            case ByteCodeOpCode.RightShift -> (left, right) -> left >>> right;
+            case ByteCodeOpCode.SignRightShift -> (left, right) -> left >> right;
+            default -> (left, right) -> ~left;
+        };
+        push(Value.of(bitOp(a.asNumber(), b.asNumber(), call)));
         return VirtualMachineResult.OK;
     }
 
+    // casts to the integer types truncate and wrap to their width, casts to f32 drop back to a double
+    static Value convert(Value value, int bits) {
+        if (!value.isNumber())
+            return value;
+        if (bits == 0)
+            return value.isIntegral() ? Value.of(value.asNumber()) : value;
+        long integer = value.asLong();
+        return Value.integer(switch (bits) {
+            case 8 -> (byte) integer;
+            case 16 -> (short) integer;
+            case 32 -> (int) integer;
+            default -> integer;
+        });
+    }
+
     private VirtualMachineResult access(Value val, String name, Value member) {
         if (member == null) {
             runtimeError("Scope", "No member named " + name);
             return VirtualMachineResult.ERROR;
         }
-        if (member.isClosure) {
+        if (member.isClosure()) {
             member = new Value(new BoundMethod(member.asClosure(), val));
         }
         push(member);
@@ -861,61 +1241,171 @@ public class VirtualMachine {
     }
 
     VirtualMachineResult call() {
+        int site = frame.ip - 1;
         int argc = readByte();
         int kwargc = readByte();
 
         Value callee = pop();
+        Map<String, Value> kwargs = readKwargs(kwargc);
+        int count = placeCallee(callee, argc);
+        if (quicken && kwargc == 0 && count == argc)
+            quickenCall(site, callee, argc);
+        argc = count;
+
+        // Stack:
+        // [CALLEE] [ARGUMENTS]
+
+        if (!callValue(callee, argc, kwargs)) {
+            return VirtualMachineResult.ERROR;
+        }
+        frame = frames.peek();
+        return VirtualMachineResult.OK;
+    }
+
+    // only a call the quick path would make exactly the same way is quickened
+    void quickenCall(int site, Value callee, int argc) {
+        if (callee.tag() == ValueTag.NATIVE_FUNC) {
+            chunk().quicken(site, ByteCodeOpCode.QuickCallNative, callee.asNative());
+        } else if (callee.tag() == ValueTag.CLOSURE) {
+            ByteCode byteCode = callee.asClosure().byteCode;
+            if (argc == byteCode.arity && !byteCode.varargs && !byteCode.kwargs && !byteCode.async)
+                chunk().quicken(site, ByteCodeOpCode.QuickCallClosure, byteCode);
+        }
+    }
+
+    // a call site that has always called the same function, anything else puts the generic Call back
+    VirtualMachineResult quickCall(int op) {
+        int site = frame.ip - 1;
+        Object cached = chunk().quickOperand(site);
+        Value callee = peek(0);
+        boolean hit = op == ByteCodeOpCode.QuickCallClosure
+                ? callee.tag() == ValueTag.CLOSURE && callee.asClosure().byteCode == cached
+                : callee.tag() == ValueTag.NATIVE_FUNC && callee.asNative() == cached;
+        if (!hit) {
+            chunk().dequicken(site, ByteCodeOpCode.Call);
+            return call();
+        }
+
+        int argc = readByte();
+        // a quickened site never passes keyword arguments
+        frame.ip++;
+        pop();
+        int count = placeCallee(callee, argc);
+
+        if (op == ByteCodeOpCode.QuickCallNative) {
+            if (!call(callee.asNative(), count))
+                return VirtualMachineResult.ERROR;
+        } else if (count != argc || frame.optimization > 0) {
+            // a spread argument or a memoized caller goes through the checks of a normal call
+            if (!call(callee.asClosure(), frame.bound, count, Collections.emptyMap()))
+                return VirtualMachineResult.ERROR;
+        } else {
+            addFrame(callee.asClosure(), stack.count - ((ByteCode) cached).totarity - 1, frame.bound);
+        }
+        frame = frames.peek();
+        return VirtualMachineResult.OK;
+    }
+
+    // method call straight from an Access, the receiver takes the callee slot without a BoundMethod
+    VirtualMachineResult invoke(Closure method, Value receiver) {
+        frame.ip++;
+        int argc = readByte();
+        int kwargc = readByte();
+
+        Map<String, Value> kwargs = readKwargs(kwargc);
+        Instance instance = receiver.asInstance();
+        Value slot = instance.self == receiver ? instance.receiverSlot() : new Value(new Var(receiver, true));
+        argc = placeCallee(slot, argc);
+
+        if (!call(method, receiver, argc, kwargs)) {
+            return VirtualMachineResult.ERROR;
+        }
+        frame = frames.peek();
+        return VirtualMachineResult.OK;
+    }
+
+    static boolean isCall(int op) {
+        return op == ByteCodeOpCode.Call || op == ByteCodeOpCode.QuickCallClosure || op == ByteCodeOpCode.QuickCallNative;
+    }
+
+    Map<String, Value> readKwargs(int kwargc) {
+        if (kwargc == 0)
+            return Collections.emptyMap();
 
         Map<String, Value> kwargs = new HashMap<>();
         for (int i = 0; i < kwargc; i++)
             kwargs.put(readString(), pop());
+        return kwargs;
+    }
 
-        Value[] args = new Value[argc];
-        List<Value> argList = new ArrayList<>();
-        for (int i = argc - 1; i >= 0; i--)
-            args[i] = pop();
+    // the arguments stay where they were evaluated, the callee is slid in underneath them
+    int placeCallee(Value callee, int argc) {
+        int base = stack.count - argc;
+        for (int i = base; i < stack.count; i++) {
+            if (stack.get(i).isSpread())
+                return placeSpread(callee, base, argc);
+        }
 
         push(callee);
+        for (int i = stack.count - 1; i > base; i--)
+            stack.set(i, stack.get(i - 1));
+        stack.set(base, callee);
+        return argc;
+    }
 
-        for (Value arg : args) {
-            if (arg.isSpread) {
-                Spread spread = arg.asSpread();
-                for (Value val : spread.values) {
-                    push(val);
-                    argList.add(val);
-                }
+    int placeSpread(Value callee, int base, int argc) {
+        List<Value> argList = new ArrayList<>();
+        for (int i = base; i < base + argc; i++) {
+            Value arg = stack.get(i);
+            if (arg.isSpread()) {
+                argList.addAll(arg.asSpread().values);
             } else {
-                push(arg);
                 argList.add(arg);
             }
         }
 
-        // Stack:
-        // [CALLEE] [GENERICS] [ARGUMENTS] [KWARGS]
+        stack.setTop(base);
+        push(callee);
+        for (Value arg : argList)
+            push(arg);
+        return argList.size();
+    }
 
-        if (!callValue(callee, argList.toArray(new Value[0]), kwargs)) {
-            return VirtualMachineResult.ERROR;
-        }
-        frame = frames.peek();
-        return VirtualMachineResult.OK;
+    Value[] args(int argc) {
+        Value[] args = new Value[argc];
+        for (int i = 0; i < argc; i++)
+            args[i] = stack.get(stack.count - argc + i);
+        return args;
     }
 
     public boolean callValue(Value callee, Value[] args, Map<String, Value> kwargs) {
-        if (callee.isNativeFunc) {
-            return call(callee.asNative(), args);
-        } else if (callee.isClosure) {
-            return call(callee.asClosure(), args, kwargs);
-        } else if (callee.isClass) {
-            return call(callee.asClass(), args, kwargs);
-        } else if (callee.isBoundMethod) {
-            BoundMethod bound = callee.asBoundMethod();
-            stack.set(stack.count - args.length - 1, new Value(new Var(bound.receiver, true)));
-            return call(bound.closure, bound.receiver, args, kwargs);
-        } else if (callee.isEnumChild) {
-            return call(callee.asEnumChild(), args.length);
-        }
-        runtimeError("Type", "Can only call functions and classes");
-        return false;
+        return callValue(callee, args.length, kwargs);
+    }
+
+    boolean callValue(Value callee, int argc, Map<String, Value> kwargs) {
+        switch (callee.tag()) {
+            case ValueTag.NATIVE_FUNC -> {
+                return call(callee.asNative(), argc);
+            }
+            case ValueTag.CLOSURE -> {
+                return call(callee.asClosure(), frame.bound, argc, kwargs);
+            }
+            case ValueTag.CLASS -> {
+                return call(callee.asClass(), argc, kwargs);
+            }
+            case ValueTag.BOUND_METHOD -> {
+                BoundMethod bound = callee.asBoundMethod();
+                stack.set(stack.count - argc - 1, new Value(new Var(bound.receiver, true)));
+                return call(bound.closure, bound.receiver, argc, kwargs);
+            }
+            case ValueTag.ENUM_CHILD -> {
+                return call(callee.asEnumChild(), argc);
+            }
+            default -> {
+                runtimeError("Type", "Can only call functions and classes");
+                return false;
+            }
+        }
     }
 
     boolean call(LanguageEnumChild child, int argCount) {
@@ -935,7 +1425,7 @@ public class VirtualMachine {
         return true;
     }
 
-    boolean call(LanguageClass clazz, Value[] args, Map<String, Value> kwargs) {
+    boolean call(LanguageClass clazz, int argc, Map<String, Value> kwargs) {
         Instance instance = new Instance(clazz, this);
 
         Value value = new Value(instance);
@@ -943,50 +1433,50 @@ public class VirtualMachine {
 
         Closure closure = clazz.constructor.asClosure();
 
-        BoundMethod bound = new BoundMethod(closure, value);
-        return callValue(new Value(bound), args, kwargs);
+        stack.set(stack.count - argc - 1, instance.receiverSlot());
+        return call(closure, value, argc, kwargs);
     }
 
-    boolean call(Closure closure, Value[] args, Map<String, Value> kwargs) {
-        return call(closure, frame.bound, args, kwargs);
+    public boolean call(Closure closure, Value binding, Value[] args, Map<String, Value> kwargs) {
+        return call(closure, binding, args.length, kwargs);
     }
 
-    public boolean call(Closure closure, Value binding, Value[] args, Map<String, Value> kwargs) {
+    boolean call(Closure closure, Value binding, int argc, Map<String, Value> kwargs) {
+        ByteCode byteCode = closure.byteCode;
+        Cache memoKey = null;
         if (frame.optimization > 0) {
-            Value val = MEMO_CACHE.get(closure.byteCode.name, args);
+            memoKey = new Cache(byteCode, args(argc));
+            Value val = MEMO_CACHE.get(memoKey);
             if (val != null) {
-                for (int i = 0; i <= args.length + kwargs.size(); i++)
-                    pop();
+                stack.setTop(stack.count - argc - 1);
                 push(val);
                 return true;
             }
-            MEMO_CACHE.stackCache(closure.byteCode.name, args);
         }
 
-        List<Value> extraArgs = new ArrayList<>();
-        if (args.length < closure.byteCode.arity) {
-            if (args.length + closure.byteCode.defaultCount < closure.byteCode.arity) {
-                runtimeError("Argument Count", "Expected " + closure.byteCode.arity + " but got " + args.length);
+        if (argc < byteCode.arity) {
+            if (argc + byteCode.defaultCount < byteCode.arity) {
+                runtimeError("Argument Count", "Expected " + byteCode.arity + " but got " + argc);
                 return false;
             }
-            for (int i = args.length; i < closure.byteCode.arity; i++)
-                push(closure.byteCode.defaults.get(i));
-        } else if (args.length > closure.byteCode.arity) {
-            if (closure.byteCode.varargs) {
-                List<Value> argsList = new ArrayList<>();
-                for (int i = closure.byteCode.arity; i < args.length; i++)
-                    argsList.add(pop());
-                for (int i = argsList.size() - 1; i >= 0; i--)
-                    extraArgs.add(argsList.get(i));
+            for (int i = argc; i < byteCode.arity; i++)
+                push(byteCode.defaults.get(i));
+        } else if (argc > byteCode.arity) {
+            if (byteCode.varargs) {
+                int extra = argc - byteCode.arity;
+                List<Value> extraArgs = new ArrayList<>(extra);
+                for (int i = stack.count - extra; i < stack.count; i++)
+                    extraArgs.add(stack.get(i));
+                stack.setTop(stack.count - extra);
                 push(new Value(extraArgs));
             } else {
-                runtimeError("Argument Count", "Expected " + closure.byteCode.arity + " but got " + args.length);
+                runtimeError("Argument Count", "Expected " + byteCode.arity + " but got " + argc);
                 return false;
             }
         }
 
-        Map<Value, Value> keywordArgs = new HashMap<>();
-        if (closure.byteCode.kwargs) {
+        if (byteCode.kwargs) {
+            Map<Value, Value> keywordArgs = new ValueMap(kwargs.size());
             for (Map.Entry<String, Value> entry : kwargs.entrySet()) {
                 String name = entry.getKey();
                 keywordArgs.put(new Value(name), entry.getValue());
@@ -994,18 +1484,28 @@ public class VirtualMachine {
             push(new Value(keywordArgs));
         }
 
-        Traceback traceback = new Traceback(tracebacks.peek().filename, closure.byteCode.name, frame.ip - 1, frame.closure.byteCode.chunk);
-        if (closure.byteCode.async) {
-            VirtualMachine thread = new VirtualMachine(closure.byteCode.copy());
-            thread.tracebacks.push(traceback);
+        if (byteCode.async) {
+            // the thread shares the captured Vars and starts from a copy of the globals,
+            // the table is cleared by every new machine
+            Closure copy = new Closure(byteCode.copy());
+            System.arraycopy(closure.upvalues, 0, copy.upvalues, 0, copy.upvalues.length);
+            VirtualMachine thread = new VirtualMachine(copy, new HashMap<>(GLOBAL_VAR_ARGS));
+            thread.traceName = traceName;
+            thread.traceContext = byteCode.name;
+
+            // the arguments move to the thread's stack, the call itself evaluates to null
+            int base = stack.count - byteCode.totarity;
+            for (int i = base; i < stack.count; i++)
+                thread.push(stack.get(i));
+            stack.setTop(base - 1);
+            push(Value.nullValue());
 
             executorService.submit(() -> {
                 thread.run();
             });
         } else {
-            tracebacks.push(traceback);
-
-            addFrame(closure, stack.count - closure.byteCode.totarity - 1, binding);
+            addFrame(closure, stack.count - byteCode.totarity - 1, binding);
+            frame.memoKey = memoKey;
         }
         return true;
     }
@@ -1024,15 +1524,15 @@ public class VirtualMachine {
         frame = newFrame;
     }
 
-    boolean call(Native nativeFunc, Value[] args) {
-        NativeResult result = nativeFunc.call(args);
+    boolean call(Native nativeFunc, int argc) {
+        NativeResult result = nativeFunc.call(args(argc));
 
         if (!result.ok()) {
             runtimeError(result.name(), result.reason());
             return false;
         }
 
-        stack.setTop(stack.count - args.length - 1);
+        stack.setTop(stack.count - argc - 1);
         push(result.value());
         return true;
     }
@@ -1063,7 +1563,7 @@ public class VirtualMachine {
                 return VirtualMachineResult.OK;
             }
             case ByteCodeOpCode.Deref -> {
-                if (!peek(0).isRef) {
+                if (!peek(0).isRef()) {
                     runtimeError("Type", "Can't dereference non-ref");
                     return VirtualMachineResult.ERROR;
                 }
@@ -1071,7 +1571,7 @@ public class VirtualMachine {
                 return VirtualMachineResult.OK;
             }
             case ByteCodeOpCode.SetRef -> {
-                if (!peek(0).isRef) {
+                if (!peek(0).isRef()) {
                     runtimeError("Type", "Can't set non-ref");
                     return VirtualMachineResult.ERROR;
                 }
@@ -1123,24 +1623,24 @@ public class VirtualMachine {
             case ByteCodeOpCode.Pattern -> {
                 int fieldCount = readByte();
 
-                Map<String, Value> cases = new HashMap<>();
-                Map<String, String> matches = new HashMap<>();
-                List<String> keys = new ArrayList<>();
-                for (int i = 0; i < fieldCount; i++) {
-                    String name = readString();
+                // names come last field first, matching the order the values pop off the stack
+                String[] fields = new String[fieldCount];
+                Value[] expected = new Value[fieldCount];
+                String[] bindings = new String[fieldCount];
+                for (int i = fieldCount - 1; i >= 0; i--) {
+                    fields[i] = readString();
                     Value val = pop();
 
-                    if (val.isPatternBinding) {
-                        matches.put(name, val.asPatternBinding());
-                        keys.add(0, name);
+                    if (val.isPatternBinding()) {
+                        bindings[i] = val.asPatternBinding();
                     } else {
-                        cases.put(name, val);
+                        expected[i] = val;
                     }
                 }
 
                 Value pattern = pop();
 
-                push(new Value(new Pattern(pattern, cases, keys.toArray(new String[0]), matches)));
+                push(new Value(new Pattern(pattern, fields, expected, bindings)));
 
                 return VirtualMachineResult.OK;
             }
@@ -1148,276 +1648,203 @@ public class VirtualMachine {
         }
     }
 
+    // the current frame's code, constants, ip and slot base are kept in locals and reloaded only when the frame changes
+    // the opcodes that dominate real programs run right here and go round the loop without producing a result
+    // everything else, and any fast path whose guard fails, writes ip back to the frame and goes through execute
     public VirtualMachineResult run() {
         frame = frames.peek();
         int exitLevel = frames.count - 1;
 
+        CallFrame current = frame;
+        Chunk chunk = current.closure.byteCode.chunk;
+        int[] code = chunk.codeArray;
+        Value[] constants = chunk.constants().valuesArray;
+        int base = current.slots;
+        int ip = current.ip;
+
         while (true) {
-            int instruction = readByte();
-            VirtualMachineResult res;
+            int instruction = code[ip++];
+            if (histogram != null)
+                histogram.record(current, instruction);
             switch (instruction) {
-                case ByteCodeOpCode.Return -> {
-                    Value result = pop();
-                    if (frame.catchError) result = new Value(new Result(result));
-                    CallFrame frame = frames.pop();
-                    if (frames.count == 0) {
-                        if (sim)
-                            this.res = NativeResult.Ok(result);
-                        res = VirtualMachineResult.EXIT;
-                        break;
-                    }
-
-                    boolean isConstructor = frame.closure.byteCode.name.equals("<make>");
-                    Value bound = frame.bound;
-
-                    stack.setTop(frame.slots);
-                    this.frame = frames.peek();
-                    popTraceback();
-
-                    if (isConstructor) {
-                        push(bound);
-                    } else {
-                        push(result);
-                        if (frame.optimization == 2) {
-                            MEMO_CACHE.storeCache(result);
-                        }
-                    }
-
-                    if (exitLevel == frames.count) {
-                        res = VirtualMachineResult.EXIT;
-                        break;
-                    }
-
-                    if (frame.addPeek) {
-                        this.frame.ip = frame.ip;
-                    }
-
-                    res = VirtualMachineResult.OK;
-                }
                 case ByteCodeOpCode.Constant -> {
-                    push(readConstant());
-                    res = VirtualMachineResult.OK;
+                    push(constants[code[ip++]]);
+                    continue;
                 }
-                case ByteCodeOpCode.Assert -> {
-                    Value value = pop();
-                    if (isFalsey(value) == 1) {
-                        runtimeError("Assertion", "Assertion failed");
-                        res = VirtualMachineResult.ERROR;
-                        break;
-                    }
-                    push(value);
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.Null -> {
+                    push(Value.nullValue());
+                    continue;
                 }
-                case ByteCodeOpCode.Pattern, ByteCodeOpCode.PatternVars -> res = pattern(instruction);
-                case ByteCodeOpCode.Throw -> {
-                    Value type = pop();
-                    Value reason = pop();
-                    runtimeError(type.asString(), reason.asString());
-                    res = VirtualMachineResult.ERROR;
+                case ByteCodeOpCode.Pop -> {
+                    pop();
+                    continue;
                 }
-                case ByteCodeOpCode.Import -> {
-                    String name = readString();
-                    String varName = readString();
-
-                    Value f = pop();
-                    if (!f.isFunc) {
-                        if (!NATIVE_STD.containsKey(name)) {
-                            runtimeError("Import", "Library '" + name + "' not found");
-                            res = VirtualMachineResult.ERROR;
-                            break;
-                        }
-                        Value lib = new Value(NATIVE_STD.get(name));
-                        GLOBAL_VAR_ARGS.put(varName, new Var(
-                                lib,
-                                true
-                        ));
-                        push(lib);
-                        res = VirtualMachineResult.OK;
-                        break;
-                    }
-
-                    ByteCode func = f.asFunc();
-
-                    VirtualMachine runner = new VirtualMachine(func);
-                    runner.trace(name);
-                    VirtualMachineResult importres = runner.run();
-                    if (importres == VirtualMachineResult.ERROR) {
-                        res = VirtualMachineResult.ERROR;
-                        break;
+                case ByteCodeOpCode.GetLocal -> {
+                    int slot = code[ip];
+                    if (base + slot < stack.count) {
+                        ip++;
+                        push(stack.get(base + slot).asVar().val);
+                        continue;
                     }
-
-                    Value space = new Value(runner.asNamespace(name));
-                    GLOBAL_VAR_ARGS.put(varName, new Var(
-                            space,
-                            true
-                    ));
-                    push(space);
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.Enum -> {
-                    Value enumerator = readConstant();
-                    GLOBAL_VAR_ARGS.put(enumerator.asEnum().name(), new Var(
-                            enumerator,
-                            true
-                    ));
-                    push(enumerator);
-
-                    boolean isPublic = readByte() == 1;
-                    if (isPublic) {
-                        LanguageEnum enumObj = enumerator.asEnum();
-                        for (Map.Entry<String, LanguageEnumChild> name : enumObj.children().entrySet()) {
-                            GLOBAL_VAR_ARGS.put(name.getKey(), new Var(
-                                    new Value(name.getValue()),
-                                    true
-                            ));
-                        }
+                case ByteCodeOpCode.SetLocal, ByteCodeOpCode.SetLocalPop -> {
+                    Var var = stack.get(base + code[ip]).asVar();
+                    if (!var.constant && var.min == Integer.MIN_VALUE && var.max == Integer.MAX_VALUE) {
+                        ip++;
+                        var.val(instruction == ByteCodeOpCode.SetLocal ? peek(0) : pop());
+                        continue;
                     }
-
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.Copy -> {
-                    push(pop().shallowCopy());
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.GetSlot -> {
+                    push(stack.get(base + code[ip++]));
+                    continue;
                 }
-                case ByteCodeOpCode.Iter -> res = iterator();
-                case ByteCodeOpCode.Spread -> {
-                    push(new Value(new Spread(pop().asList())));
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.SetSlot -> {
+                    stack.set(base + code[ip++], peek(0));
+                    continue;
                 }
-                case ByteCodeOpCode.Ref, ByteCodeOpCode.Deref, ByteCodeOpCode.SetRef -> res = refOps(instruction);
-                case ByteCodeOpCode.Add, ByteCodeOpCode.Subtract, ByteCodeOpCode.Multiply, ByteCodeOpCode.Divide, ByteCodeOpCode.Modulo, ByteCodeOpCode.Power ->
-                        res = binary(instruction);
-                case ByteCodeOpCode.Increment, ByteCodeOpCode.Decrement, ByteCodeOpCode.Negate, ByteCodeOpCode.Not -> res = unary(instruction);
-                case ByteCodeOpCode.FromBytes, ByteCodeOpCode.ToBytes -> res = byteOps(instruction);
-                case ByteCodeOpCode.EQUAL, ByteCodeOpCode.GreaterThan, ByteCodeOpCode.LessThan -> res = comparison(instruction);
-                case ByteCodeOpCode.Null -> {
-                    push(new Value());
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.SetSlotPop -> {
+                    stack.set(base + code[ip++], pop());
+                    continue;
                 }
-                case ByteCodeOpCode.Get, ByteCodeOpCode.Index -> res = collections(instruction);
-                case ByteCodeOpCode.Pop -> {
-                    pop();
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.AddSlotConstant -> {
+                    Value a = stack.get(base + code[ip]);
+                    Value b = constants[code[ip + 1]];
+                    if (a.isIntegral() && b.isIntegral()) {
+                        ip += 2;
+                        push(Value.add(a.asLong(), b.asLong()));
+                        continue;
+                    }
                 }
-                case ByteCodeOpCode.DefineGlobal, ByteCodeOpCode.GetGlobal, ByteCodeOpCode.SetGlobal -> res = globalOps(instruction);
-                case ByteCodeOpCode.GetLocal, ByteCodeOpCode.SetLocal, ByteCodeOpCode.DefineLocal -> res = localOps(instruction);
-                case ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue, ByteCodeOpCode.Jump -> res = jumpOps(instruction);
-                case ByteCodeOpCode.Loop, ByteCodeOpCode.StartCache, ByteCodeOpCode.CollectLoop, ByteCodeOpCode.FlushLoop -> res = loopOps(instruction);
-                case ByteCodeOpCode.For -> res = forLoop();
-                case ByteCodeOpCode.Call -> res = call();
-                case ByteCodeOpCode.Closure -> {
-                    ByteCode func = readConstant().asFunc();
-                    int defaultCount = readByte();
-                    Closure closure = new Closure(func);
-
-                    if (func.name == null) func.name = tracebacks.peek().context;
-
-                    Value[] defaults = new Value[func.arity];
-                    for (int i = func.arity - 1; i >= func.arity - defaultCount; i--) {
-                        defaults[i] = pop();
-                        func.defaultCount++;
+                case ByteCodeOpCode.SlotsLessJump -> {
+                    Value a = stack.get(base + code[ip]);
+                    Value b = stack.get(base + code[ip + 1]);
+                    if (a.isIntegral() && b.isIntegral()) {
+                        boolean less = a.asLong() < b.asLong();
+                        int offset = code[ip + 2];
+                        ip += 3;
+                        push(Value.of(less));
+                        if (!less) {
+                            ip += offset;
+                            if (histogram != null && offset != 0)
+                                histogram.cut();
+                        }
+                        continue;
                     }
-                    func.defaults = new ArrayList<>(Arrays.asList(defaults));
-
-                    Value closed = new Value(closure);
-                    push(closed);
-
-                    for (int i = 0; i < closure.upvalueCount; i++) {
-                        int isLocal = readByte();
-                        int index = readByte();
-
-                        switch (isLocal) {
-                            case 0 -> closure.upvalues[i] = frame.closure.upvalues[index];
-                            case 1 -> closure.upvalues[i] = captureUpvalue(frame.slots + index);
-                            case 2 -> {
-                                String name = frame.closure.byteCode.chunk.constants().valuesArray[index].asString();
-                                if (Objects.equals(name, func.name)) {
-                                    closure.upvalues[i] = new Var(closed, true);
-                                } else {
-                                    closure.upvalues[i] = GLOBAL_VAR_ARGS.get(name);
-                                }
+                }
+                case ByteCodeOpCode.LocalsLessJump -> {
+                    int slotA = code[ip];
+                    int slotB = code[ip + 1];
+                    if (base + slotA < stack.count && base + slotB < stack.count) {
+                        Value a = stack.get(base + slotA).asVar().val;
+                        Value b = stack.get(base + slotB).asVar().val;
+                        if (a.isIntegral() && b.isIntegral()) {
+                            boolean less = a.asLong() < b.asLong();
+                            int offset = code[ip + 2];
+                            ip += 3;
+                            push(Value.of(less));
+                            if (!less) {
+                                ip += offset;
+                                if (histogram != null && offset != 0)
+                                    histogram.cut();
                             }
+                            continue;
                         }
                     }
-
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.GetAttr, ByteCodeOpCode.SetAttr -> res = attrOps(instruction);
-                case ByteCodeOpCode.GetUpvalue, ByteCodeOpCode.SetUpvalue -> res = upvalueOps(instruction);
-                case ByteCodeOpCode.BitAnd, ByteCodeOpCode.BitOr, ByteCodeOpCode.BitXor, ByteCodeOpCode.LeftShift, ByteCodeOpCode.RightShift, ByteCodeOpCode.SignRightShift, ByteCodeOpCode.BitCompl ->
-                        res = bitOps(instruction);
-                case ByteCodeOpCode.Chain -> {
-                    Value b = pop();
-                    Value a = pop();
-                    if (a.isNull) {
-                        push(b);
-                    } else {
-                        push(a);
+                case ByteCodeOpCode.NumJumpIfNotLess -> {
+                    Value b = peek(0);
+                    Value a = peek(1);
+                    if (a.isIntegral() && b.isIntegral()) {
+                        pop();
+                        pop();
+                        boolean less = a.asLong() < b.asLong();
+                        int offset = code[ip++];
+                        push(Value.of(less));
+                        if (!less) {
+                            ip += offset;
+                            if (histogram != null && offset != 0)
+                                histogram.cut();
+                        }
+                        continue;
                     }
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.MakeArray -> {
-                    int count = readByte();
-                    List<Value> array = new ArrayList<>();
-                    for (int i = 0; i < count; i++)
-                        array.add(pop());
-                    push(new Value(array));
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.ForSlot -> {
+                    Value step = peek(0);
+                    Value end = peek(1);
+                    Value counter = stack.get(base + code[ip]);
+                    if (counter.isIntegral() && step.isNumber() && end.isNumber() && step.asDouble() == (long) step.asDouble()) {
+                        pop();
+                        pop();
+                        long s = (long) step.asDouble();
+                        double e = end.asDouble();
+                        Value next = Value.add(counter.asLong(), s);
+                        stack.set(base + code[ip++], next);
+                        int offset = code[ip++];
+                        double i = next.asDouble();
+                        if ((i >= e && s >= 0) || (i <= e && s < 0)) {
+                            ip += offset;
+                            if (histogram != null && offset != 0)
+                                histogram.cut();
+                        }
+                        continue;
+                    }
                 }
-                case ByteCodeOpCode.MakeMap -> {
-                    int count = readByte();
-                    Map<Value, Value> map = new HashMap<>();
-                    for (int i = 0; i < count; i++) {
-                        Value value = pop();
-                        Value key = pop();
-                        map.put(key, value);
+                case ByteCodeOpCode.GetUpvalue -> {
+                    Var var = current.closure.upvalues[code[ip]];
+                    if (var != null) {
+                        ip++;
+                        push(var.val);
+                        continue;
                     }
-                    push(new Value(map));
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.Class -> {
-                    String name = readString();
-                    boolean hasSuper = readByte() == 1;
-                    LanguageClass superClass = hasSuper ? pop().asClass() : null;
-
-                    int attributeCount = readByte();
-                    Map<String, ClassAttribute> attributes = new HashMap<>();
-                    for (int i = 0; i < attributeCount; i++) {
-                        String attrname = readString();
-                        boolean isprivate = readByte() == 1;
-                        boolean isstatic = readByte() == 1;
-                        attributes.put(attrname, new ClassAttribute(pop(), isstatic, isprivate));
+                case ByteCodeOpCode.QuickGetGlobal -> {
+                    if (chunk.quickOperand(ip - 1) instanceof QuickGlobal cached && cached.version == GLOBAL_VAR_ARGS.version()) {
+                        ip++;
+                        push(cached.var.val);
+                        continue;
                     }
-
-                    List<String> genericNames = new ArrayList<>();
-                    int genericCount = readByte();
-                    for (int i = 0; i < genericCount; i++)
-                        genericNames.add(readString());
-
-
-                    push(new Value(new LanguageClass(name, attributes, genericNames, superClass)));
-                    res = VirtualMachineResult.OK;
                 }
-                case ByteCodeOpCode.Method -> {
-                    defineMethod(readString());
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.QuickIntAdd, ByteCodeOpCode.QuickIntSubtract, ByteCodeOpCode.QuickIntLessThan,
+                     ByteCodeOpCode.QuickIntGreaterThan, ByteCodeOpCode.NumAdd, ByteCodeOpCode.NumSubtract,
+                     ByteCodeOpCode.NumLessThan, ByteCodeOpCode.NumGreaterThan -> {
+                    Value b = peek(0);
+                    Value a = peek(1);
+                    if (a.isIntegral() && b.isIntegral()) {
+                        pop();
+                        pop();
+                        long x = a.asLong();
+                        long y = b.asLong();
+                        push(switch (instruction) {
+                            case ByteCodeOpCode.QuickIntAdd, ByteCodeOpCode.NumAdd -> Value.add(x, y);
+                            case ByteCodeOpCode.QuickIntSubtract, ByteCodeOpCode.NumSubtract -> Value.subtract(x, y);
+                            case ByteCodeOpCode.QuickIntLessThan, ByteCodeOpCode.NumLessThan -> Value.of(x < y);
+                            default -> Value.of(x > y);
+                        });
+                        continue;
+                    }
                 }
-                case ByteCodeOpCode.MakeVar -> {
-                    int slot = readByte();
-                    boolean constant = readByte() == 1;
-
-                    Value at = get(slot);
-
-                    stack.set(frame.slots + slot, new Value(new Var(at, constant)));
-                    res = VirtualMachineResult.OK;
+                case ByteCodeOpCode.Jump, ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue, ByteCodeOpCode.Loop -> {
+                    int offset = code[ip++];
+                    boolean taken = switch (instruction) {
+                        case ByteCodeOpCode.JumpIfFalse -> !peek(0).asBool();
+                        case ByteCodeOpCode.JumpIfTrue -> peek(0).asBool();
+                        default -> true;
+                    };
+                    if (taken) {
+                        ip += instruction == ByteCodeOpCode.Loop ? -offset : offset;
+                        if (histogram != null && offset != 0)
+                            histogram.cut();
+                    }
+                    continue;
+                }
+                default -> {
                 }
-                case ByteCodeOpCode.Access -> res = access();
-                case ByteCodeOpCode.DropGlobal, ByteCodeOpCode.DropLocal, ByteCodeOpCode.DropUpvalue -> res = freeOps(instruction);
-                case ByteCodeOpCode.Destruct -> res = destruct();
-                case ByteCodeOpCode.Header -> res = header();
-                default -> throw new RuntimeException("Unknown opcode: " + instruction);
             }
 
+            frame.ip = ip;
+            VirtualMachineResult res = execute(instruction, exitLevel);
+
             if (res == VirtualMachineResult.EXIT) {
                 return VirtualMachineResult.OK;
             } else if (res == VirtualMachineResult.ERROR) {
@@ -1427,37 +1854,372 @@ public class VirtualMachine {
                         return VirtualMachineResult.OK;
                     }
 
+                    Cache memoKey = frame.memoKey;
                     stack.setTop(frame.slots);
                     frame = frames.peek();
-                    popTraceback();
 
                     Value result = new Value(new Result(lastError.getFirst(), lastError.getLast()));
                     push(result);
-                    if (frame.optimization == 2) {
-                        MEMO_CACHE.storeCache(result);
+                    if (memoKey != null) {
+                        MEMO_CACHE.store(memoKey, result);
                     }
 
                     if (exitLevel == frames.count) {
                         return VirtualMachineResult.OK;
                     }
-                    continue;
-                }
-                if (safe) {
-                    while (frames.count > exitLevel) {
-                        tracebacks.pop();
-                        frames.pop();
+                } else {
+                    if (safe) {
+                        while (frames.count > exitLevel) {
+                            frames.pop();
+                        }
+                        frame = frames.peek();
+                        stack.setTop(frames.peek(-1).slots);
                     }
-                    frame = frames.peek();
-                    stack.setTop(frames.peek(-1).slots);
+                    return VirtualMachineResult.ERROR;
+                }
+            }
+
+            if (frame != current) {
+                current = frame;
+                chunk = current.closure.byteCode.chunk;
+                code = chunk.codeArray;
+                constants = chunk.constants().valuesArray;
+                base = current.slots;
+            }
+            ip = current.ip;
+        }
+    }
+
+    // every opcode the run loop does not finish itself, ip is in frame.ip while this runs
+    VirtualMachineResult execute(int instruction, int exitLevel) {
+        VirtualMachineResult res;
+        switch (instruction) {
+            case ByteCodeOpCode.Return, ByteCodeOpCode.ReturnConstant -> res = returnFrame(instruction, exitLevel);
+            case ByteCodeOpCode.Constant -> {
+                push(readConstant());
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Assert -> {
+                Value value = pop();
+                if (isFalsey(value) == 1) {
+                    runtimeError("Assertion", "Assertion failed");
+                    res = VirtualMachineResult.ERROR;
+                    break;
+                }
+                push(value);
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Pattern, ByteCodeOpCode.PatternVars -> res = pattern(instruction);
+            case ByteCodeOpCode.Throw -> {
+                Value type = pop();
+                Value reason = pop();
+                runtimeError(type.asString(), reason.asString());
+                res = VirtualMachineResult.ERROR;
+            }
+            case ByteCodeOpCode.Import -> res = importModule();
+            case ByteCodeOpCode.Enum -> res = defineEnum();
+            case ByteCodeOpCode.Copy -> {
+                push(pop().shallowCopy());
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Iter -> res = iterator();
+            case ByteCodeOpCode.Convert -> {
+                push(convert(pop(), readByte()));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.MakeIter -> {
+                push(new Value(ValueIterator.of(pop())));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Spread -> {
+                push(new Value(new Spread(pop().asList())));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Ref, ByteCodeOpCode.Deref, ByteCodeOpCode.SetRef -> res = refOps(instruction);
+            case ByteCodeOpCode.Add, ByteCodeOpCode.Subtract -> {
+                quickenIntegral(instruction);
+                res = binary(instruction);
+            }
+            case ByteCodeOpCode.Multiply, ByteCodeOpCode.Divide, ByteCodeOpCode.Modulo, ByteCodeOpCode.Power -> res = binary(instruction);
+            case ByteCodeOpCode.Increment, ByteCodeOpCode.Decrement, ByteCodeOpCode.Negate, ByteCodeOpCode.Not -> res = unary(instruction);
+            case ByteCodeOpCode.FromBytes, ByteCodeOpCode.ToBytes -> res = byteOps(instruction);
+            case ByteCodeOpCode.EQUAL -> res = comparison(instruction);
+            case ByteCodeOpCode.GreaterThan, ByteCodeOpCode.LessThan -> {
+                quickenIntegral(instruction);
+                res = comparison(instruction);
+            }
+            case ByteCodeOpCode.QuickIntAdd, ByteCodeOpCode.QuickIntSubtract, ByteCodeOpCode.QuickIntLessThan,
+                 ByteCodeOpCode.QuickIntGreaterThan -> res = quickIntegral(instruction);
+            case ByteCodeOpCode.QuickGetGlobal -> res = quickGetGlobal();
+            case ByteCodeOpCode.QuickCallClosure, ByteCodeOpCode.QuickCallNative -> res = quickCall(instruction);
+            case ByteCodeOpCode.NumAdd, ByteCodeOpCode.NumSubtract, ByteCodeOpCode.NumMultiply, ByteCodeOpCode.NumGreaterThan,
+                 ByteCodeOpCode.NumLessThan, ByteCodeOpCode.NumJumpIfNotLess, ByteCodeOpCode.LongAdd,
+                 ByteCodeOpCode.LongSubtract, ByteCodeOpCode.LongMultiply -> res = numeric(instruction);
+            case ByteCodeOpCode.StrConcat -> res = concat();
+            case ByteCodeOpCode.TableSwitch -> res = tableSwitch();
+            case ByteCodeOpCode.Null -> {
+                push(Value.nullValue());
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Get, ByteCodeOpCode.Index -> res = collections(instruction);
+            case ByteCodeOpCode.Pop -> {
+                pop();
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.DefineGlobal, ByteCodeOpCode.GetGlobal, ByteCodeOpCode.SetGlobal,
+                    ByteCodeOpCode.DefineGlobalSlot, ByteCodeOpCode.GetGlobalSlot, ByteCodeOpCode.SetGlobalSlot -> res = globalOps(instruction);
+            case ByteCodeOpCode.GetLocal, ByteCodeOpCode.SetLocal, ByteCodeOpCode.DefineLocal, ByteCodeOpCode.SetLocalPop,
+                 ByteCodeOpCode.AddLocalConstant, ByteCodeOpCode.LocalsLessJump -> res = localOps(instruction);
+            case ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue, ByteCodeOpCode.Jump -> res = jumpOps(instruction);
+            case ByteCodeOpCode.Loop, ByteCodeOpCode.StartCache, ByteCodeOpCode.CollectLoop, ByteCodeOpCode.FlushLoop -> res = loopOps(instruction);
+            case ByteCodeOpCode.GetSlot, ByteCodeOpCode.SetSlot, ByteCodeOpCode.SetSlotPop, ByteCodeOpCode.DefineSlot,
+                 ByteCodeOpCode.KeepSlot, ByteCodeOpCode.AddSlotConstant, ByteCodeOpCode.SlotsLessJump -> res = slotOps(instruction);
+            case ByteCodeOpCode.For, ByteCodeOpCode.ForSlot -> res = forLoop(instruction);
+            case ByteCodeOpCode.Call -> res = call();
+            case ByteCodeOpCode.Closure -> res = closure();
+            case ByteCodeOpCode.GetAttr, ByteCodeOpCode.SetAttr -> res = attrOps(instruction);
+            case ByteCodeOpCode.GetUpvalue, ByteCodeOpCode.SetUpvalue -> res = upvalueOps(instruction);
+            case ByteCodeOpCode.BitAnd, ByteCodeOpCode.BitOr, ByteCodeOpCode.BitXor, ByteCodeOpCode.LeftShift, ByteCodeOpCode.RightShift, ByteCodeOpCode.SignRightShift, ByteCodeOpCode.BitCompl ->
+                    res = bitOps(instruction);
+            case ByteCodeOpCode.Chain -> {
+                Value b = pop();
+                Value a = pop();
+                if (a.isNull()) {
+                    push(b);
+                } else {
+                    push(a);
                 }
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.MakeArray -> {
+                int count = readByte();
+                // list literals of only integers or only fractions keep them unboxed
+                boolean numeric = true;
+                for (int i = stack.count - count; i < stack.count && numeric; i++)
+                    numeric = NumberList.sameKind(stack.get(stack.count - count), stack.get(i));
+                List<Value> array = numeric ? new NumberList(count) : new ArrayList<>(count);
+                for (int i = 0; i < count; i++)
+                    array.add(pop());
+                push(new Value(array));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.MakeMap -> {
+                int count = readByte();
+                // pairs are read in push order, putIfAbsent keeps the winner the old pop-and-put loop picked
+                int base = stack.count - count * 2;
+                Map<Value, Value> map = new ValueMap(count);
+                for (int i = base; i < stack.count; i += 2)
+                    map.putIfAbsent(stack.get(i), stack.get(i + 1));
+                stack.setTop(base);
+                push(new Value(map));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Class -> res = defineClass();
+            case ByteCodeOpCode.Method -> {
+                defineMethod(readString());
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.MakeVar -> {
+                int slot = readByte();
+                boolean constant = readByte() == 1;
+
+                Value at = get(slot);
+
+                stack.set(frame.slots + slot, new Value(new Var(at, constant)));
+                res = VirtualMachineResult.OK;
+            }
+            case ByteCodeOpCode.Access -> res = access();
+            case ByteCodeOpCode.DropGlobal, ByteCodeOpCode.DropLocal, ByteCodeOpCode.DropUpvalue -> res = freeOps(instruction);
+            case ByteCodeOpCode.Destruct -> res = destruct();
+            case ByteCodeOpCode.Header -> res = header();
+            default -> throw new RuntimeException("Unknown opcode: " + instruction);
+        }
+        return res;
+    }
+
+    VirtualMachineResult returnFrame(int instruction, int exitLevel) {
+        Value result = instruction == ByteCodeOpCode.ReturnConstant ? readConstant() : pop();
+        if (frame.catchError) result = new Value(new Result(result));
+        CallFrame frame = frames.pop();
+        if (frames.count == 0) {
+            if (sim)
+                this.res = NativeResult.Ok(result);
+            return VirtualMachineResult.EXIT;
+        }
+
+        boolean isConstructor = frame.closure.byteCode.name.equals("<make>");
+        Value bound = frame.bound;
+
+        stack.setTop(frame.slots);
+        this.frame = frames.peek();
+
+        if (isConstructor) {
+            push(bound);
+        } else {
+            push(result);
+            if (frame.memoKey != null) {
+                MEMO_CACHE.store(frame.memoKey, result);
+            }
+        }
+
+        if (this.frame.jumpPending) {
+            this.frame.jumpPending = false;
+            moveIP(this.frame.jumpOffset * isFalsey(result));
+        }
+
+        if (this.frame.switchPending != null) {
+            SwitchTable table = this.frame.switchPending;
+            Value reference = this.frame.switchReference;
+            this.frame.switchPending = null;
+            this.frame.switchReference = null;
+            pop();
+            if (isFalsey(result) == 0) {
+                moveIP(table.caseOffset(this.frame.switchCase));
+            } else if (switchCases(table, reference, this.frame.switchCase + 1) == VirtualMachineResult.ERROR) {
                 return VirtualMachineResult.ERROR;
             }
         }
+
+        if (exitLevel == frames.count) {
+            return VirtualMachineResult.EXIT;
+        }
+
+        if (frame.addPeek) {
+            this.frame.ip = frame.ip;
+        }
+
+        return VirtualMachineResult.OK;
+    }
+
+    VirtualMachineResult importModule() {
+        String name = readString();
+        String varName = readString();
+
+        Value f = pop();
+        if (!f.isFunc()) {
+            if (!NATIVE_STD.containsKey(name)) {
+                runtimeError("Import", "Library '" + name + "' not found");
+                return VirtualMachineResult.ERROR;
+            }
+            Value lib = new Value(NATIVE_STD.get(name));
+            GLOBAL_VAR_ARGS.put(varName, new Var(
+                    lib,
+                    true
+            ));
+            push(lib);
+            return VirtualMachineResult.OK;
+        }
+
+        Namespace namespace = MODULES.get(name);
+        if (namespace == null) {
+            ByteCode func = f.asFunc();
+            if (lazyImports) {
+                namespace = new Namespace(name, ns -> runModule(name, func, ns));
+            } else {
+                namespace = runModule(name, func, null);
+                if (namespace == null) {
+                    return VirtualMachineResult.ERROR;
+                }
+            }
+            MODULES.put(name, namespace);
+        }
+
+        Value space = new Value(namespace);
+        GLOBAL_VAR_ARGS.put(varName, new Var(
+                space,
+                true
+        ));
+        push(space);
+        return VirtualMachineResult.OK;
+    }
+
+    VirtualMachineResult defineEnum() {
+        Value enumerator = readConstant();
+        GLOBAL_VAR_ARGS.put(enumerator.asEnum().name(), new Var(
+                enumerator,
+                true
+        ));
+        push(enumerator);
+
+        boolean isPublic = readByte() == 1;
+        if (isPublic) {
+            LanguageEnum enumObj = enumerator.asEnum();
+            for (Map.Entry<String, LanguageEnumChild> name : enumObj.children().entrySet()) {
+                GLOBAL_VAR_ARGS.put(name.getKey(), new Var(
+                        new Value(name.getValue()),
+                        true
+                ));
+            }
+        }
+
+        return VirtualMachineResult.OK;
+    }
+
+    VirtualMachineResult defineClass() {
+        String name = readString();
+        boolean hasSuper = readByte() == 1;
+        LanguageClass superClass = hasSuper ? pop().asClass() : null;
+
+        int attributeCount = readByte();
+        Map<String, ClassAttribute> attributes = new HashMap<>();
+        for (int i = 0; i < attributeCount; i++) {
+            String attrname = readString();
+            boolean isprivate = readByte() == 1;
+            boolean isstatic = readByte() == 1;
+            attributes.put(attrname, new ClassAttribute(pop(), isstatic, isprivate));
+        }
+
+        List<String> genericNames = new ArrayList<>();
+        int genericCount = readByte();
+        for (int i = 0; i < genericCount; i++)
+            genericNames.add(readString());
+
+
+        push(new Value(new LanguageClass(name, attributes, genericNames, superClass)));
+        return VirtualMachineResult.OK;
+    }
+
+    VirtualMachineResult closure() {
+        ByteCode func = readConstant().asFunc();
+        int defaultCount = readByte();
+        Closure closure = new Closure(func);
+
+        if (func.name == null) func.name = context();
+
+        Value[] defaults = new Value[func.arity];
+        for (int i = func.arity - 1; i >= func.arity - defaultCount; i--) {
+            defaults[i] = pop();
+            func.defaultCount++;
+        }
+        func.defaults = new ArrayList<>(Arrays.asList(defaults));
+
+        Value closed = new Value(closure);
+        push(closed);
+
+        for (int i = 0; i < closure.upvalueCount; i++) {
+            int isLocal = readByte();
+            int index = readByte();
+
+            switch (isLocal) {
+                case 0 -> closure.upvalues[i] = frame.closure.upvalues[index];
+                case 1 -> closure.upvalues[i] = captureUpvalue(frame.slots + index);
+                case 2 -> {
+                    String name = frame.closure.byteCode.chunk.constants().valuesArray[index].asString();
+                    if (Objects.equals(name, func.name)) {
+                        closure.upvalues[i] = new Var(closed, true);
+                    } else {
+                        closure.upvalues[i] = GLOBAL_VAR_ARGS.get(name);
+                    }
+                }
+            }
+        }
+
+        return VirtualMachineResult.OK;
     }
 
     VirtualMachineResult destruct() {
         Namespace v = pop().asNamespace();
-        push(new Value());
+        push(Value.nullValue());
         int args = readByte();
         String[] names = new String[args];
         for (int i = 0; i < args; i++)
@@ -1482,7 +2244,6 @@ public class VirtualMachine {
             args[i] = readString();
 
         int rArgc = switch (command) {
-            case HeadCode.OPTIMIZE -> 0;
             case HeadCode.MAIN_CLASS, HeadCode.MAIN_FUNCTION -> 1;
             default -> -1;
         };
@@ -1493,6 +2254,10 @@ public class VirtualMachine {
 
         switch (command) {
             case HeadCode.OPTIMIZE -> {
+                if (!MEMO_CACHE.configure(args)) {
+                    runtimeError("Argument", "Expected lru, tinylfu, a size or a function name and size");
+                    return VirtualMachineResult.ERROR;
+                }
                 if (frame.optimization == 0)
                     frame.optimization = 1;
             }
@@ -1506,7 +2271,7 @@ public class VirtualMachine {
             }
         }
 
-        push(new Value());
+        push(Value.nullValue());
         return VirtualMachineResult.OK;
     }
 
@@ -1519,7 +2284,7 @@ public class VirtualMachine {
 
         if (mainFunction != null) {
             Var var = GLOBAL_VAR_ARGS.get(mainFunction);
-            if (var == null || !var.val.isClosure) {
+            if (var == null || !var.val.isClosure()) {
                 runtimeError("Scope", "Main function not found");
             }
 
@@ -1529,21 +2294,21 @@ public class VirtualMachine {
 
             push(val);
 
-            boolean res = call(closure, new Value[]{val}, new HashMap<>());
+            boolean res = call(closure, frame.bound, 1, Collections.emptyMap());
             if (!res) {
                 return;
             }
             run();
         } else if (mainClass != null) {
             Var var = GLOBAL_VAR_ARGS.get(mainClass);
-            if (var == null || !var.val.isClass) {
+            if (var == null || !var.val.isClass()) {
                 runtimeError("Scope", "Main class not found");
             }
 
             assert var != null;
             LanguageClass clazz = var.val.asClass();
             Value method = clazz.getField("main", true);
-            if (method == null || !method.isClosure) {
+            if (method == null || !method.isClosure()) {
                 runtimeError("Scope", "Main method not found");
             }
             assert method != null;
@@ -1552,7 +2317,7 @@ public class VirtualMachine {
             push(new Value(closure));
             push(val);
 
-            boolean res = call(closure, new Value(clazz), new Value[]{val}, new HashMap<>());
+            boolean res = call(closure, new Value(clazz), 1, Collections.emptyMap());
             if (!res) {
                 return;
             }
@@ -1565,23 +2330,42 @@ public class VirtualMachine {
         int variable = readByte();
         int jump = readByte();
 
-        List<Value> values = get(iterated).asVar().val.asList();
-        if (values.size() == 0) {
+        ValueIterator iterator = get(iterated).asVar().val.asIterator();
+        if (!iterator.hasNext()) {
             moveIP(jump);
             return VirtualMachineResult.OK;
         }
 
-        get(variable).asVar().val(values.get(0));
-        values.remove(0);
+        get(variable).asVar().val(iterator.next());
         return VirtualMachineResult.OK;
     }
 
     public Namespace asNamespace(String name) {
-        return new Namespace(name, GLOBAL_VAR_ARGS, exports == null ? new ArrayList<>(GLOBAL_VAR_ARGS.keySet()) : exports);
+        return new Namespace(name, new HashMap<>(GLOBAL_VAR_ARGS), exports == null ? GLOBAL_VAR_ARGS.keySet() : exports);
+    }
+
+    // runs a module body in its own machine, the importer's globals are put back once it is done
+    // fills target when the namespace was handed out before the module ran, null if the module failed
+    static Namespace runModule(String name, ByteCode func, Namespace target) {
+        Map<String, Var> importer = new HashMap<>(GLOBAL_VAR_ARGS);
+        VirtualMachine current = instance;
+
+        VirtualMachine runner = new VirtualMachine(func);
+        runner.trace(name);
+        VirtualMachineResult result = runner.run();
+        Namespace namespace = result == VirtualMachineResult.ERROR ? null : runner.asNamespace(name);
+
+        GLOBAL_VAR_ARGS.clear();
+        GLOBAL_VAR_ARGS.putAll(importer);
+        instance = current;
+
+        if (namespace != null && target != null)
+            target.define(namespace.getValues(), namespace.publics());
+        return namespace;
     }
 
     public String repeat(String str, int times) {
-        return new String(new char[times]).replace("\0", str);
+        return times > 0 ? str.repeat(times) : "";
     }
 
     public static VirtualMachine getInstance() {
@@ -54,6 +54,9 @@ public class LibraryClassLoader {
         JAVA_TO_CUSTOM.put("byte[]", Types.BYTES);
 
         JAVA_TO_CUSTOM.forEach((s, type) -> CUSTOM_TO_JAVA.put(type.name, s));
+        // registered after the reverse mapping so "any" still converts to Object
+        JAVA_TO_CUSTOM.put("Value", Types.ANY);
+        JAVA_TO_CUSTOM.put("CharSequence", Types.STRING);
 
         LIBRARY_LOADER = new LibraryClassLoader();
     }
@@ -101,7 +104,7 @@ public class LibraryClassLoader {
 
                         try {
                             // this is kinda bad code more like a temp fix for value matching
-                            Object[] value = mapCustomToJava(stack);
+                            Object[] value = mapCustomToJava(method.getParameterTypes(), stack);
                             for (int i = 0; i < value.length; i++) {
                                 final Object object = value[i];
 
@@ -151,6 +154,17 @@ public class LibraryClassLoader {
         return arguments;
     }
 
+    // Value parameters get the language value itself, a java copy of a collection could not be mutated
+    public Object[] mapCustomToJava(final Class<?>[] parameters, final Value... stack) {
+        final Object[] arguments = new Object[stack.length];
+
+        for (int i = 0; i < stack.length; i++) {
+            arguments[i] = parameters[i] == Value.class ? stack[i] : stack[i].asObject();
+        }
+
+        return arguments;
+    }
+
     public Value[] mapJavaToCustom(final Object... stack) {
         final Value[] arguments = new Value[stack.length];
 
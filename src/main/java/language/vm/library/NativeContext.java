@@ -6,6 +6,7 @@ import language.backend.compiler.bytecode.types.GenericType;
 import language.backend.compiler.bytecode.types.Type;
 import language.backend.compiler.bytecode.types.Types;
 import language.backend.compiler.bytecode.types.objects.ClassObjectType;
+import language.backend.compiler.bytecode.values.RangeList;
 import language.backend.compiler.bytecode.values.Value;
 import language.backend.compiler.bytecode.values.bytecode.Native;
 import language.backend.compiler.bytecode.values.bytecode.NativeResult;
@@ -59,10 +60,11 @@ public class NativeContext {
 
     Map<String, Type> fields = new HashMap<>();
     
-    private final VirtualMachine virtualMachine;
+    // true defines the natives in the VM's global table, false only records their types for the compiler
+    private final boolean runtime;
 
-    public NativeContext(VirtualMachine virtualMachine) {
-        this.virtualMachine = virtualMachine;
+    public NativeContext(boolean runtime) {
+        this.runtime = runtime;
 
         this.initNativeSTD();
     }
@@ -174,7 +176,7 @@ public class NativeContext {
             try {
                 boolean created = file.createNewFile();
                 FileOutputStream fos = new FileOutputStream(file);
-                if (obj.isBytes) {
+                if (obj.isBytes()) {
                     fos.write(obj.asBytes());
                 }
                 else {
@@ -280,10 +282,7 @@ public class NativeContext {
             double start = args[0].asNumber();
             double end = args[1].asNumber();
             double step = args[2].asNumber();
-            List<Double> list = new ArrayList<>();
-            for (double i = start; i < end; i += step)
-                list.add(i);
-            return Ok(list);
+            return Ok(new Value(RangeList.range(start, end, step)));
         }, Types.LIST, Types.FLOAT, Types.FLOAT, Types.FLOAT);
         func("linear", (args) -> {
             double start = args[0].asNumber();
@@ -293,10 +292,7 @@ public class NativeContext {
             double m = args[3].asNumber();
             double b = args[4].asNumber();
 
-            List<Double> list = new ArrayList<>();
-            for (double i = start; i < end; i += step)
-                list.add(m * i + b);
-            return Ok(list);
+            return Ok(new Value(RangeList.linear(start, end, step, m, b)));
         }, Types.LIST, Types.FLOAT, Types.FLOAT, Types.FLOAT, Types.FLOAT, Types.FLOAT);
         func("quadratic", (args) -> {
             double start = args[0].asNumber();
@@ -307,10 +303,7 @@ public class NativeContext {
             double b = args[4].asNumber();
             double c = args[5].asNumber();
 
-            List<Double> list = new ArrayList<>();
-            for (double i = start; i < end; i += step)
-                list.add(a * i * i + b * i + c);
-            return Ok(list);
+            return Ok(new Value(RangeList.quadratic(start, end, step, a, b, c)));
         }, Types.LIST, Types.FLOAT, Types.FLOAT, Types.FLOAT, Types.FLOAT, Types.FLOAT, Types.FLOAT);
         define("asm", stack -> {
 
@@ -323,7 +316,7 @@ public class NativeContext {
         // IO Function
 
         define("printback", (args) -> {
-            SYSTEM_LOGGER.out(args[0]);
+            SYSTEM_LOGGER.out(args[0].asPrinted());
             return NativeResult.Ok(args[0]);
         }, Types.ANY, 1);
 
@@ -361,7 +354,7 @@ public class NativeContext {
             byte[] bytes = new byte[list.size()];
             for (int i = 0; i < list.size(); i++) {
                 Value v = list.get(i);
-                if (!v.isNumber || v.asNumber().byteValue() != v.asNumber())
+                if (!v.isNumber() || v.asNumber().byteValue() != v.asNumber())
                     return NativeResult.Err("Type", "List must contain only bytes");
                 bytes[i] = v.asNumber().byteValue();
             }
@@ -383,18 +376,20 @@ public class NativeContext {
             }
             return NativeResult.Ok(new Value(list));
         }, Types.LIST, Types.STRING, Types.STRING);
+        // indices count code points like s[i] and size do, a view or a rope is sliced without another copy
         define("substr", (args) -> {
-            String str = args[0].asString();
+            Value str = args[0];
+            int length = str.length();
             int start = args[1].asNumber().intValue();
             int end = args[2].asNumber().intValue();
 
-            while (start < 0) start = str.length() + start;
-            while (end < 0) end = str.length() + end;
+            while (start < 0) start = length + start;
+            while (end < 0) end = length + end;
 
-            if (start > str.length()) start = str.length();
-            if (end > str.length()) end = str.length();
+            if (start > length) start = length;
+            if (end > length) end = length;
 
-            return NativeResult.Ok(new Value(str.substring(start, end)));
+            return NativeResult.Ok(str.substring(start, end));
         }, Types.STRING, Types.STRING, Types.INT, Types.INT);
         define("join", (args) -> {
             Value str = args[0];
@@ -545,28 +540,28 @@ public class NativeContext {
     }
 
     public void define(String name, Native.Method method, Type returnType, int argc) {
-        if (virtualMachine == null) {
+        if (!runtime) {
             Type[] types = new Type[argc];
             for (int i = 0; i < argc; i++)
                 types[i] = Types.ANY;
             GLOBAL_TYPES.put(name, new ClassObjectType(returnType, types, new GenericType[0], false));
         } else
-            virtualMachine.defineNative(name, method, argc);
+            VirtualMachine.defineNative(name, method, argc);
     }
 
     public void define(String name, Native.Method method, Type returnType, Type... types) {
-        if (virtualMachine == null)
+        if (!runtime)
             GLOBAL_TYPES.put(name, new ClassObjectType(returnType, types, new GenericType[0], false));
         else
-            virtualMachine.defineNative(name, method, types);
+            VirtualMachine.defineNative(name, method, types);
     }
 
     // tuple(1, 2, 3) -> (int, int, int), tuple(1, 2, "3") -> (int, int, String)
     public void define(String name, Native.Method method, ClassObjectType type) {
-        if (virtualMachine == null)
+        if (!runtime)
             GLOBAL_TYPES.put(name, type);
         else
-            virtualMachine.defineNative(name, method, type.varargs ? -1 : type.parameterTypes.length);
+            VirtualMachine.defineNative(name, method, type.varargs ? -1 : type.parameterTypes.length);
     }
 
     protected static final NativeResult Ok = NativeResult.Ok();
@@ -584,20 +579,20 @@ public class NativeContext {
     }
 
     protected void func(String name, Native.Method method, Type returnType, int argc) {
-        if (virtualMachine == null) {
+        if (!runtime) {
             Type[] types = new Type[argc];
             for (int i = 0; i < argc; i++)
                 types[i] = Types.ANY;
             fields.put(name, new ClassObjectType(returnType, types, new GenericType[0], false));
         } else
-            virtualMachine.defineNative("native-std", name, method, argc);
+            VirtualMachine.defineNative("native-std", name, method, argc);
     }
 
     protected void func(String name, Native.Method method, Type returnType, Type... types) {
-        if (virtualMachine == null)
+        if (!runtime)
             fields.put(name, new ClassObjectType(returnType, types, new GenericType[0], false));
         else
-            virtualMachine.defineNative("native-std", name, method, types);
+            VirtualMachine.defineNative("native-std", name, method, types);
     }
 
     private NativeResult processOut(Process pr) throws InterruptedException, IOException {
@@ -620,10 +615,10 @@ public class NativeContext {
     }
 
     protected void var(String name, Value val, Type type) {
-        if (virtualMachine == null)
+        if (!runtime)
             fields.put(name, type);
         else
-            virtualMachine.defineVar("native-std", name, val);
+            VirtualMachine.defineVar("native-std", name, val);
     }
 
     protected void var(String name, Object val, Type type) {
@@ -631,8 +626,8 @@ public class NativeContext {
     }
 
 
-    public static void init(VirtualMachine virtualMachine) {
-        new NativeContext(virtualMachine);
+    public static void init(boolean runtime) {
+        new NativeContext(runtime);
     }
 
 }
@@ -1,5 +1,6 @@
 package language.vm.library.impl;
 
+import language.backend.compiler.bytecode.values.Value;
 import language.vm.library.LibraryClass;
 import language.vm.library.LibraryMethod;
 
@@ -9,18 +10,18 @@ public class StdSystem {
     private static final boolean DEBUG = false;
 
     @LibraryMethod
-    public void println(final Object message) {
-        System.out.println(message);
+    public void println(final Value message) {
+        System.out.println(message.asPrinted());
     }
 
     @LibraryMethod
-    public void print(final Object message) {
-        System.out.print(message);
+    public void print(final Value message) {
+        System.out.print(message.asPrinted());
     }
 
     @LibraryMethod
-    public void err(final Object message) {
-        System.err.println(message);
+    public void err(final Value message) {
+        System.err.println(message.asPrinted());
     }
 
     @LibraryMethod
@@ -29,8 +30,8 @@ public class StdSystem {
     }
 
     @LibraryMethod
-    public String str(final Object value) {
-        return value.toString();
+    public String str(final Value value) {
+        return value.asPrinted().toString();
     }
 
     @LibraryMethod
@@ -10,17 +10,13 @@ import java.util.List;
 public class StdList {
 
     @LibraryMethod
-    public int size(Object list) {
-        final Value value = (Value) list;
-        return value.asList().size();
+    public int size(final Value list) {
+        return list.asList().size();
     }
 
     @LibraryMethod
-    public void append(final Object listRaw, final Object element) {
-        Value list = Value.fromObject(listRaw);
-        Value value = Value.fromObject(element);
-
-        list.add(value);
+    public void append(final Value list, final Value element) {
+        list.append(element);
     }
 
     //define("contains", args -> {
@@ -50,9 +46,7 @@ public class StdList {
     //            return NativeResult.Ok();
     //        }, Types.VOID, Types.LIST, Types.ANY);
     @LibraryMethod
-    public Object pop(final Object listRaw, int index) {
-        Value list = Value.fromObject(listRaw);
-
+    public Object pop(final Value list, int index) {
         if (index < 0 || index >= list.asList().size()) {
             throw new IllegalStateException("index out of bounds for list pop");
         }
@@ -93,16 +87,12 @@ public class StdList {
     //        }, Types.VOID, Types.LIST, Types.ANY, Types.INT);
 
     @LibraryMethod
-    public void setIndex(final Object list, final Object element, final int index) {
-        Value listVal = Value.fromObject(list);
-        Value indexVal = Value.fromObject(index);
-        Value elementVal = Value.fromObject(element);
-
-        if (indexVal.asNumber() >= listVal.asList().size()) {
+    public void setIndex(final Value list, final Value element, final int index) {
+        if (index >= list.asList().size()) {
             throw new IllegalStateException("Index out of bounds for list!");
         }
 
-        listVal.set(indexVal.asNumber(), elementVal);
+        list.set((double) index, element);
     }
 
     //        define("setIndex", (args) -> {
@@ -119,9 +109,7 @@ public class StdList {
     //        }, Types.VOID, Types.LIST, Types.ANY, Types.INT);
 
     @LibraryMethod
-    public List<Value> sublist(final Object listRaw, int start, int end) {
-        Value list = Value.fromObject(listRaw);
-
+    public List<Value> sublist(final Value list, int start, int end) {
         if (list.asList().size() < end || start < 0 || end < start) {
             throw new IllegalStateException("index out of bounds for sublist!");
         }
@@ -8,15 +8,13 @@ import language.vm.library.LibraryMethod;
 public class StdMap {
 
     @LibraryMethod
-    public void set(final Object map, final Object key, final Object value) {
-        Value.fromObject(map)
-                .asMap().put(Value.fromObject(key), Value.fromObject(value));
+    public void set(final Value map, final Object key, final Object value) {
+        map.asMap().put(Value.fromObject(key), Value.fromObject(value));
     }
 
     @LibraryMethod
-    public void delete(final Object map, final Object key) {
-        Value.fromObject(map)
-                .asMap().remove(Value.fromObject(key));
+    public void delete(final Value map, final Object key) {
+        map.asMap().remove(Value.fromObject(key));
     }
 
     //        define("overset", (args) -> {
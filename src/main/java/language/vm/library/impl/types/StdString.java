@@ -1,5 +1,6 @@
 package language.vm.library.impl.types;
 
+import language.backend.compiler.bytecode.values.Value;
 import language.vm.library.LibraryClass;
 import language.vm.library.LibraryMethod;
 
@@ -17,15 +18,17 @@ public class StdString {
     //            return NativeResult.Ok(new Value(list));
     //        }, Types.LIST, Types.STRING, Types.STRING);
 
+    // indices count code points like s[i] and size do, a view or a rope is sliced without another copy
     @LibraryMethod
-    public String substr(final String str, int start, int end) {
-        while (start < 0) start = str.length() + start;
-        while (end < 0) end = str.length() + end;
+    public CharSequence substr(final Value str, int start, int end) {
+        int length = str.length();
+        while (start < 0) start = length + start;
+        while (end < 0) end = length + end;
 
-        if (start > str.length()) start = str.length();
-        if (end > str.length()) end = str.length();
+        if (start > length) start = length;
+        if (end > length) end = length;
 
-        return str.substring(start, end);
+        return str.subSequence(start, end);
     }
 
     //        define("substr", (args) -> {
@@ -0,0 +1,54 @@
+package testing;
+
+import dtool.DtoolRuntime;
+import dtool.io.ProjectFolder;
+import language.backend.compiler.CompileType;
+import language.backend.compiler.bytecode.headers.MemoCache;
+import language.vm.VirtualMachine;
+
+import java.lang.management.ManagementFactory;
+
+public class IR_BenchmarkRuntime {
+
+    // usage: IR_BenchmarkRuntime [project] [main] [rounds]
+    public static void main(String[] args) {
+        final String project = args.length > 0 ? args[0] : "test_space_ir";
+        final String main = args.length > 1 ? args[1] : "fib";
+        final int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        DtoolRuntime benchmark = DtoolRuntime
+                .create(ProjectFolder.of(project));
+
+        benchmark.init();
+        benchmark.setMain(main);
+        // frontend
+        benchmark.processLexer();
+        benchmark.processParser();
+        // backend
+        benchmark.processPreCompiler();
+        benchmark.processCompiler(CompileType.CUSTOM_IR);
+        // finish
+        benchmark.processFinalize();
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (int round = 1; round <= rounds; round++) {
+            final long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+            final long start = System.nanoTime();
+
+            benchmark.runTest(new String[]{"benchmark"});
+
+            final long elapsed = System.nanoTime() - start;
+            final long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+            System.out.printf("[benchmark] %s round %d: %.2f ms, %.2f MB allocated%n",
+                    main, round, elapsed / 1_000_000.0, allocated / (1024.0 * 1024.0));
+        }
+
+        final MemoCache memo = VirtualMachine.MEMO_CACHE;
+        if (memo.hits() + memo.misses() > 0)
+            System.out.printf("[benchmark] %s memo: %s%n", main, memo.stats());
+    }
+
+}
@@ -0,0 +1,65 @@
+package testing;
+
+import language.backend.compiler.bytecode.ByteCodeOpCode;
+import language.vm.OpcodeHistogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// ranks superinstruction candidates from histograms recorded with project.histogram = "file"
+// a sequence of n opcodes seen c times would save c * (n - 1) dispatches as one instruction
+public class IR_OpcodeMiner {
+
+    // only the last opcode of a fused sequence may leave the straight line
+    private static final Set<Integer> CONTROL = Set.of(
+            ByteCodeOpCode.Jump, ByteCodeOpCode.JumpIfFalse, ByteCodeOpCode.JumpIfTrue, ByteCodeOpCode.Loop,
+            ByteCodeOpCode.NumJumpIfNotLess, ByteCodeOpCode.TableSwitch, ByteCodeOpCode.For, ByteCodeOpCode.ForSlot, ByteCodeOpCode.Iter,
+            ByteCodeOpCode.Call, ByteCodeOpCode.Return, ByteCodeOpCode.Throw, ByteCodeOpCode.Import);
+
+    // usage: IR_OpcodeMiner [histogram files...] [top]
+    public static void main(String[] args) throws IOException {
+        int top = 20;
+        Map<String, Long> counts = new HashMap<>();
+        for (String arg : args) {
+            if (arg.matches("\\d+")) {
+                top = Integer.parseInt(arg);
+                continue;
+            }
+            for (String line : Files.readAllLines(Path.of(arg))) {
+                String[] parts = line.split("\t", 2);
+                if (parts.length == 2)
+                    counts.merge(parts[1], Long.parseLong(parts[0]), Long::sum);
+            }
+        }
+
+        long dispatches = 0;
+        List<Map.Entry<String, Long>> candidates = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            String[] ops = entry.getKey().split(" ");
+            if (ops.length == 1) {
+                dispatches += entry.getValue();
+                continue;
+            }
+            boolean straight = true;
+            for (int i = 0; i < ops.length - 1 && straight; i++)
+                straight = !CONTROL.contains(OpcodeHistogram.opcode(ops[i]));
+            if (straight)
+                candidates.add(Map.entry(entry.getKey(), entry.getValue() * (ops.length - 1)));
+        }
+        candidates.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+
+        System.out.printf("%d dispatches recorded%n", dispatches);
+        System.out.printf("%12s %7s  %s%n", "saved", "share", "sequence");
+        for (int i = 0; i < Math.min(top, candidates.size()); i++) {
+            Map.Entry<String, Long> candidate = candidates.get(i);
+            System.out.printf("%12d %6.2f%%  %s%n", candidate.getValue(),
+                    dispatches > 0 ? candidate.getValue() * 100.0 / dispatches : 0.0, candidate.getKey());
+        }
+    }
+}